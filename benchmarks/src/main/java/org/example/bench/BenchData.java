@@ -0,0 +1,106 @@
+package org.example.bench;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.example.domain.ReportEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * BenchData generates the inputs the benchmarks run against.
+ * - Input workbooks in the layout the readers expect (BRnum, Pdf_URL, Report Html Address),
+ * written with SXSSF so even 1M rows are generated in constant memory.
+ * - Report entries shaped like real results (mostly successes, some failures with a reason).
+ * Everything is deterministic, so runs are comparable.
+ */
+
+final class BenchData {
+
+    private BenchData() {
+    }
+
+    /**
+     * Writes an input workbook with {@code rows} data rows below the header.
+     */
+    static void writeInput(Path file, int rows) {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(200)) {
+            Sheet sh = wb.createSheet("Input");
+            Row header = sh.createRow(0);
+            header.createCell(0).setCellValue("BRnum");
+            header.createCell(1).setCellValue("Pdf_URL");
+            header.createCell(2).setCellValue("Report Html Address");
+            for (int i = 1; i <= rows; i++) {
+                Row r = sh.createRow(i);
+                r.createCell(0).setCellValue(brNum(i));
+                r.createCell(1).setCellValue("https://host" + (i % 50) + ".example.com/reports/" + i + ".pdf");
+                r.createCell(2).setCellValue("https://host" + (i % 50) + ".example.com/reports/" + i + ".html");
+            }
+            try (OutputStream os = Files.newOutputStream(file)) {
+                wb.write(os);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param from first sequence number (entries get BRnums from {@code from} on, so batches do not collide)
+     * @param n    number of entries
+     */
+    static List<ReportEntity> entries(int from, int n) {
+        List<ReportEntity> out = new ArrayList<>(n);
+        for (int i = from; i < from + n; i++) {
+            boolean ok = i % 10 != 0;
+            out.add(ReportEntity.builder()
+                    .BRnum(brNum(i))
+                    .url(url("https://host" + (i % 50) + ".example.com/reports/" + i + ".pdf"))
+                    .urlUsed(ok ? "Primary URL" : "")
+                    .status(ok ? "success" : "error")
+                    .reason(ok ? null : "Both Primary and Backup failed")
+                    .errorMessage(ok ? null : "HTTP error 404")
+                    .build());
+        }
+        return out;
+    }
+
+    static String brNum(int i) {
+        return "BR" + (1_000_000 + i);
+    }
+
+    static Path tempDir(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void deleteTree(Path dir) {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static URL url(String s) {
+        try {
+            return URI.create(s).toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(s, e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.bench;
+
+import com.sun.net.httpserver.HttpServer;
+import org.example.service.downloader.HttpClientPdfDownloader;
+import org.example.service.downloader.PdfDownloader;
+import org.example.service.downloader.SimplePdfDownloader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads one PDF of {@code sizeKb} KiB from an in-process {@link HttpServer} on the loopback
+ * interface, so the numbers show the downloader's own overhead (connection handling, sniffing,
+ * FileChannel write, atomic move) rather than the network.
+ * - simple: {@link SimplePdfDownloader} (HttpURLConnection)
+ * - httpclient: {@link HttpClientPdfDownloader} (java.net.http, blocking call)
+ * The stub sends no validators, so no conditional requests or cache hits are involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// without TCP_NODELAY the stub's small responses stall on delayed ACKs (~40 ms per request)
+@Fork(value = 1, jvmArgsAppend = {"-Dsun.net.httpserver.nodelay=true", "-Dlogback.configurationFile=logback-bench.xml"})
+public class DownloaderBenchmark {
+
+    @Param({"16", "1024", "16384"})
+    public int sizeKb;
+
+    @Param({"simple", "httpclient"})
+    public String downloader;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Path dir;
+    private Path target;
+    private URL url;
+    private PdfDownloader pdfDownloader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] body = pdfBody(sizeKb * 1024);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverThreads = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverThreads);
+        server.createContext("/", ex -> {
+            ex.getResponseHeaders().add("Content-Type", "application/pdf");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+
+        url = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/report.pdf").toURL();
+        dir = BenchData.tempDir("bench-download");
+        target = dir.resolve("file_1.pdf");
+        pdfDownloader = "httpclient".equals(downloader) ? new HttpClientPdfDownloader() : new SimplePdfDownloader();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+        BenchData.deleteTree(dir);
+    }
+
+    @Benchmark
+    public PdfDownloader.DownloadResult download() {
+        PdfDownloader.DownloadResult res = pdfDownloader.download("BR1", url, null, target);
+        if (!res.success()) throw new IllegalStateException("Download failed: " + res.errorMessage());
+        return res;
+    }
+
+    /**
+     * A minimal valid-looking, unencrypted PDF padded to {@code size} bytes.
+     */
+    private static byte[] pdfBody(int size) {
+        byte[] head = "%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = "\ntrailer\n<< /Root 1 0 R >>\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] body = new byte[Math.max(size, head.length + tail.length)];
+        for (int i = head.length; i < body.length - tail.length; i++) body[i] = (byte) ('a' + i % 26);
+        System.arraycopy(head, 0, body, 0, head.length);
+        System.arraycopy(tail, 0, body, body.length - tail.length, tail.length);
+        return body;
+    }
+}
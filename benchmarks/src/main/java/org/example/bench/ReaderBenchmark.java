@@ -0,0 +1,68 @@
+package org.example.bench;
+
+import org.example.service.reader.ExcelReader;
+import org.example.service.reader.FastExcelReader;
+import org.example.service.reader.PoiExcelReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reads a generated input workbook of {@code rows} rows end to end.
+ * - fast: {@link FastExcelReader#streamRows}, the streaming reader used by the application
+ * - poi: {@link PoiExcelReader#readRows}, which loads the whole sheet (expect it to need a large heap at 1M rows)
+ * Time per read of the whole file; divide by rows for per-row cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlogback.configurationFile=logback-bench.xml"})
+public class ReaderBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"fast", "poi"})
+    public String reader;
+
+    private Path dir;
+    private Path input;
+    private ExcelReader excelReader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dir = BenchData.tempDir("bench-reader");
+        input = dir.resolve("input.xlsx");
+        BenchData.writeInput(input, rows);
+        excelReader = "poi".equals(reader) ? new PoiExcelReader() : new FastExcelReader();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchData.deleteTree(dir);
+    }
+
+    @Benchmark
+    public void readAll(Blackhole bh) {
+        try (Stream<ExcelReader.InputRow> s = excelReader.streamRows(input)) {
+            s.forEach(bh::consume);
+        }
+    }
+}
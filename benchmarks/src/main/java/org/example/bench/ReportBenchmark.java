@@ -0,0 +1,128 @@
+package org.example.bench;
+
+import org.example.domain.ReportEntity;
+import org.example.service.report.CsvReportRepository;
+import org.example.service.report.JsonLinesReportRepository;
+import org.example.service.report.PoiReportRepository;
+import org.example.service.report.ReportRepository;
+import org.example.service.report.SidecarReportRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Report repository operations against a report that already holds {@code existing} entries.
+ * - append: one batch of {@code batch} entries (a journal drain), followed by {@code compact}, as at the
+ * end of a run
+ * - loadExistingBRnums: the start-of-run scan for rows to skip
+ * - exportXlsx: writing the styled workbook from the report, which the line backends (jsonl, csv) only do on demand
+ * Each append invocation starts from a fresh copy of the pre-built report (copying is not measured).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dlogback.configurationFile=logback-bench.xml"})
+public class ReportBenchmark {
+
+    @Param({"0", "1000", "10000", "100000"})
+    public int existing;
+
+    @Param({"poi", "sidecar", "jsonl", "csv"})
+    public String repo;
+
+    @Param({"50"})
+    public int batch;
+
+    private Path dir;
+    private Path template;
+    private Path report;
+    private ReportRepository repository;
+    private List<ReportEntity> entries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dir = BenchData.tempDir("bench-report");
+        String name = switch (repo) {
+            case "jsonl" -> "Report.jsonl";
+            case "csv" -> "Report.csv";
+            default -> "Report.xlsx";
+        };
+        template = dir.resolve("template").resolve(name);
+        report = dir.resolve("run").resolve(name);
+        repository = switch (repo) {
+            case "poi" -> new PoiReportRepository();
+            case "jsonl" -> new JsonLinesReportRepository();
+            case "csv" -> new CsvReportRepository();
+            default -> new SidecarReportRepository();
+        };
+
+        repository.ensureReport(template);
+        // built in chunks like real runs; the POI backend rewrites the file per append
+        for (int from = 0; from < existing; from += 10_000) {
+            repository.append(template, BenchData.entries(from, Math.min(10_000, existing - from)));
+        }
+        repository.compact(template);
+        entries = BenchData.entries(existing, batch);
+    }
+
+    /**
+     * Restores the pre-built report (and any sidecar files next to it) before each append.
+     */
+    @Setup(Level.Invocation)
+    public void freshReport() throws IOException {
+        Path runDir = report.getParent();
+        BenchData.deleteTree(runDir);
+        Files.createDirectories(runDir);
+        try (Stream<Path> files = Files.list(template.getParent())) {
+            for (Path f : files.toList()) {
+                Files.copy(f, runDir.resolve(f.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchData.deleteTree(dir);
+    }
+
+    @Benchmark
+    public Path append() {
+        repository.append(report, entries);
+        repository.compact(report);
+        return report;
+    }
+
+    @Benchmark
+    public Set<String> loadExistingBRnums() {
+        return repository.loadExistingBRnums(template);
+    }
+
+    @Benchmark
+    public long exportXlsx() {
+        return repository.exportXlsx(template, dir.resolve("export").resolve("Report.xlsx"));
+    }
+}
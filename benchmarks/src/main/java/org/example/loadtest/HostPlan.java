@@ -0,0 +1,160 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HostPlan decides which simulated host gets which {@link HostProfile}, spread by weight ("ok:60,slow:10,...").
+ * Host i is the loopback address 127.1.x.y where the OS routes all of 127/8 to lo, else 127.0.0.1.
+ */
+
+public final class HostPlan {
+
+    /**
+     * A mix with mostly healthy hosts and some of every hostile kind except STALL (which costs a read
+     * timeout per attempt and is best run on its own).
+     */
+    public static final String DEFAULT_PROFILES =
+            "ok:120,slow:20,throttled:12,flaky:10,redirect:12,huge:1,html:8,not-found:6,reset:6,down:5";
+
+    private final HostProfile[] profiles;
+    private final boolean distinctAddresses;
+
+    private HostPlan(HostProfile[] profiles, boolean distinctAddresses) {
+        this.profiles = profiles;
+        this.distinctAddresses = distinctAddresses;
+    }
+
+    /**
+     * @param hosts number of simulated hosts
+     * @param spec  comma-separated profile:weight pairs, e.g. {@link #DEFAULT_PROFILES}
+     */
+    public static HostPlan of(int hosts, String spec) {
+        if (hosts < 1) throw new IllegalArgumentException("hosts must be >= 1");
+        Map<HostProfile, Integer> weights = parseSpec(spec);
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) throw new IllegalArgumentException("No profile has a positive weight: " + spec);
+
+        // smooth weighted round robin: each profile gets its share and the shares are interleaved
+        HostProfile[] order = weights.keySet().toArray(HostProfile[]::new);
+        int[] current = new int[order.length];
+        HostProfile[] assigned = new HostProfile[hosts];
+        for (int h = 0; h < hosts; h++) {
+            int best = 0;
+            for (int i = 0; i < order.length; i++) {
+                current[i] += weights.get(order[i]);
+                if (current[i] > current[best]) best = i;
+            }
+            current[best] -= total;
+            assigned[h] = order[best];
+        }
+        return new HostPlan(assigned, hosts > 1 && loopbackAliasesWork());
+    }
+
+    public int hosts() {
+        return profiles.length;
+    }
+
+    public HostProfile profile(int host) {
+        return profiles[host];
+    }
+
+    /**
+     * @return false if every host shares 127.0.0.1 because loopback aliases are not routed here
+     */
+    public boolean distinctAddresses() {
+        return distinctAddresses;
+    }
+
+    /**
+     * Address of host {@code i}.
+     */
+    public String address(int host) {
+        if (!distinctAddresses) return "127.0.0.1";
+        return "127.1." + host / 250 + "." + (host % 250 + 1);
+    }
+
+    /**
+     * Host count per profile, in declaration order.
+     */
+    public Map<HostProfile, Integer> hostsPerProfile() {
+        Map<HostProfile, Integer> out = new EnumMap<>(HostProfile.class);
+        for (HostProfile p : profiles) out.merge(p, 1, Integer::sum);
+        return out;
+    }
+
+    /**
+     * Index of the host a request path belongs to ("/h{index}/...").
+     *
+     * @return the index, or -1 if the path does not name a known host
+     */
+    int hostOfPath(String path) {
+        if (path == null || !path.startsWith("/h")) return -1;
+        int end = path.indexOf('/', 2);
+        if (end < 0) return -1;
+        try {
+            int host = Integer.parseInt(path.substring(2, end));
+            return host < profiles.length ? host : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static Map<HostProfile, Integer> parseSpec(String spec) {
+        Map<HostProfile, Integer> weights = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            if (part.isBlank()) continue;
+            String[] kv = part.split(":");
+            if (kv.length != 2) throw new IllegalArgumentException("Expected profile:weight, got '" + part + "'");
+            try {
+                weights.merge(HostProfile.parse(kv[0]), Integer.parseInt(kv[1].trim()), Integer::sum);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Bad profile entry '" + part + "' (profiles: "
+                        + Arrays.stream(HostProfile.values()).map(HostProfile::label).toList() + ")", e);
+            }
+        }
+        weights.values().removeIf(w -> w <= 0);
+        return weights;
+    }
+
+    /**
+     * A port on loopback that nothing listens on (bound and released, so the OS will not hand it out
+     * again soon).
+     */
+    static int deadPort() {
+        try (ServerSocket s = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return s.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean loopbackAliasesWork() {
+        try (ServerSocket s = new ServerSocket()) {
+            s.bind(new InetSocketAddress(0));
+            try (Socket c = new Socket()) {
+                c.connect(new InetSocketAddress("127.1.0.2", s.getLocalPort()), 500);
+                return true;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        hostsPerProfile().forEach((p, n) -> parts.add(p.label() + "=" + n));
+        return String.join(", ", parts);
+    }
+}
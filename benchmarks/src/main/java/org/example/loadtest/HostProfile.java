@@ -0,0 +1,55 @@
+package org.example.loadtest;
+
+import java.util.Locale;
+
+/**
+ * HostProfile is how a simulated host behaves towards every request it gets.
+ * Profiles that should end in a stored PDF (possibly after retries) have {@code expectSuccess};
+ * the others must end as an error row in the report, whatever the downloader tries.
+ * - OK: answers at once with a PDF
+ * - SLOW: trickles the PDF in small chunks (slow origin or congested link)
+ * - THROTTLED: every other request gets 429 Too Many Requests
+ * - FLAKY: the first request for each file gets 503, later ones the PDF
+ * - REDIRECT: 302 to another path on the same host, which serves the PDF
+ * - HUGE: a very large PDF
+ * - HTML: 200 with an HTML page instead of a PDF (soft 404, login wall)
+ * - NOT_FOUND: 404
+ * - RESET: sends headers and half the body, then drops the connection
+ * - STALL: sends headers and a few bytes, then goes silent until the client gives up (slow: read timeouts)
+ * - DOWN: nothing listens on the port (connection refused)
+ */
+
+public enum HostProfile {
+    OK(true),
+    SLOW(true),
+    THROTTLED(true),
+    FLAKY(true),
+    REDIRECT(true),
+    HUGE(true),
+    HTML(false),
+    NOT_FOUND(false),
+    RESET(false),
+    STALL(false),
+    DOWN(false);
+
+    private final boolean expectSuccess;
+
+    HostProfile(boolean expectSuccess) {
+        this.expectSuccess = expectSuccess;
+    }
+
+    public boolean expectSuccess() {
+        return expectSuccess;
+    }
+
+    /**
+     * @param name profile name, case-insensitive, '-' allowed for '_' (e.g. "not-found")
+     */
+    public static HostProfile parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    public String label() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,304 @@
+package org.example.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HostileServer is a local stand-in for the servers the downloader meets in production: one
+ * {@link HttpServer} answering for every simulated host of a {@link HostPlan}, each according to its
+ * {@link HostProfile}. It counts requests, statuses and connections for the load-test summary.
+ */
+
+public final class HostileServer implements AutoCloseable {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final int TRICKLE_CHUNK = 1024;
+    private static final byte[] PDF_HEAD = "%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PDF_TAIL = "\ntrailer\n<< /Root 1 0 R >>\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FILLER = filler();
+    private static final byte[] HTML = ("<!DOCTYPE html><html><head><title>Annual report</title></head>"
+            + "<body><p>Please log in to download this report.</p></body></html>").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * How the profiles behave in detail.
+     *
+     * @param fileBytes size of a normal PDF
+     * @param hugeBytes size of a HUGE host's PDF
+     * @param trickle   pause between 1 KiB chunks on SLOW hosts
+     * @param stall     how long STALL hosts stay silent (should exceed the downloader's read timeout)
+     */
+    public record Behaviour(int fileBytes, long hugeBytes, Duration trickle, Duration stall) {
+    }
+
+    private final HostPlan plan;
+    private final Behaviour behaviour;
+    private final HttpServer server;
+    private final ExecutorService threads;
+    private final int deadPort;
+
+    private final AtomicIntegerArray hostRequests;
+    private final Set<String> seenPaths = ConcurrentHashMap.newKeySet();
+    private final Map<HostProfile, LongAdder> requests = new EnumMap<>(HostProfile.class);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder requestCount = new LongAdder();
+    private final Set<InetSocketAddress> clients = ConcurrentHashMap.newKeySet();
+
+    private HostileServer(HostPlan plan, Behaviour behaviour) throws IOException {
+        this.plan = plan;
+        this.behaviour = behaviour;
+        this.hostRequests = new AtomicIntegerArray(plan.hosts());
+        for (HostProfile p : HostProfile.values()) requests.put(p, new LongAdder());
+        this.deadPort = HostPlan.deadPort();
+        this.server = HttpServer.create(new InetSocketAddress(0), 4096);
+        // platform threads: on virtual threads the server would compete with the downloads for carriers
+        this.threads = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(threads);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts a server for the given plan on a free port.
+     */
+    public static HostileServer start(HostPlan plan, Behaviour behaviour) {
+        // small responses otherwise wait on delayed ACKs (~40 ms each)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        // one server plays every host: its default cap of 200 idle connections would close kept-alive
+        // connections that the real hosts, each with their own cap, would keep
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "100000");
+        try {
+            HostileServer s = new HostileServer(plan, behaviour);
+            s.server.start();
+            return s;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * URL of file {@code name} on host {@code host}.
+     */
+    public String url(int host, String name) {
+        int p = plan.profile(host) == HostProfile.DOWN ? deadPort : port();
+        return "http://" + plan.address(host) + ":" + p + "/h" + host + "/" + name + ".pdf";
+    }
+
+    /**
+     * Size of the PDF a successful download from {@code host} stores.
+     */
+    public long fileSize(int host) {
+        return plan.profile(host) == HostProfile.HUGE ? behaviour.hugeBytes() : behaviour.fileBytes();
+    }
+
+    public Map<HostProfile, Long> requestsPerProfile() {
+        Map<HostProfile, Long> out = new EnumMap<>(HostProfile.class);
+        requests.forEach((p, n) -> {
+            if (n.sum() > 0) out.put(p, n.sum());
+        });
+        return out;
+    }
+
+    public Map<Integer, Long> responsesPerStatus() {
+        Map<Integer, Long> out = new TreeMap<>();
+        statuses.forEach((s, n) -> out.put(s, n.sum()));
+        return out;
+    }
+
+    public long bytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long requests() {
+        return requestCount.sum();
+    }
+
+    /**
+     * Connections clients opened, counted by their source address and port (ports are not reused
+     * within a run short of the ephemeral range, ~28k connections).
+     */
+    public long connections() {
+        return clients.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    // ---------------------------------------------------------------- handling
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            requestCount.increment();
+            clients.add(ex.getRemoteAddress());
+            String path = ex.getRequestURI().getPath();
+            int host = plan.hostOfPath(path);
+            if (host < 0) {
+                send(ex, 404, "text/plain", "unknown host path".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            HostProfile profile = plan.profile(host);
+            requests.get(profile).increment();
+            int nth = hostRequests.incrementAndGet(host);
+
+            switch (profile) {
+                case OK, HUGE -> sendPdf(ex, fileSize(host), Duration.ZERO);
+                case SLOW -> sendPdf(ex, behaviour.fileBytes(), behaviour.trickle());
+                case THROTTLED -> {
+                    if (nth % 2 == 1) {
+                        ex.getResponseHeaders().add("Retry-After", "1");
+                        send(ex, 429, "text/plain", "slow down".getBytes(StandardCharsets.US_ASCII));
+                    } else {
+                        sendPdf(ex, behaviour.fileBytes(), Duration.ZERO);
+                    }
+                }
+                case FLAKY -> {
+                    if (seenPaths.add(path)) {
+                        send(ex, 503, "text/plain", "try again".getBytes(StandardCharsets.US_ASCII));
+                    } else {
+                        sendPdf(ex, behaviour.fileBytes(), Duration.ZERO);
+                    }
+                }
+                case REDIRECT -> {
+                    if (path.contains("/moved/")) {
+                        sendPdf(ex, behaviour.fileBytes(), Duration.ZERO);
+                    } else {
+                        String target = "/h" + host + "/moved" + path.substring(path.indexOf('/', 2));
+                        ex.getResponseHeaders().add("Location",
+                                "http://" + ex.getRequestHeaders().getFirst("Host") + target);
+                        send(ex, 302, "text/plain", new byte[0]);
+                    }
+                }
+                case HTML -> send(ex, 200, "text/html; charset=utf-8", HTML);
+                case NOT_FOUND -> send(ex, 404, "text/html; charset=utf-8", HTML);
+                case RESET -> cut(ex, behaviour.fileBytes(), behaviour.fileBytes() / 2, Duration.ZERO);
+                case STALL -> cut(ex, behaviour.fileBytes(), TRICKLE_CHUNK, behaviour.stall());
+                case DOWN -> send(ex, 503, "text/plain", new byte[0]);
+            }
+        }
+    }
+
+    private void send(HttpExchange ex, int status, String type, byte[] body) throws IOException {
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        ex.getResponseHeaders().add("Content-Type", type);
+        if (head(ex)) {
+            ex.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+            bytesSent.add(body.length);
+        }
+    }
+
+    /**
+     * Streams a PDF of {@code size} bytes, pausing {@code trickle} after every 1 KiB if non-zero.
+     */
+    private void sendPdf(HttpExchange ex, long size, Duration trickle) throws IOException {
+        statuses.computeIfAbsent(200, s -> new LongAdder()).increment();
+        ex.getResponseHeaders().add("Content-Type", "application/pdf");
+        if (head(ex)) {
+            ex.getResponseHeaders().add("Content-Length", String.valueOf(size));
+            ex.sendResponseHeaders(200, -1);
+            return;
+        }
+        ex.sendResponseHeaders(200, size);
+        try (OutputStream os = ex.getResponseBody()) {
+            writePdf(os, size, size, trickle);
+        }
+    }
+
+    /**
+     * Announces {@code size} bytes, sends {@code sent} of them, waits {@code silence}, then drops the
+     * connection (an exception out of the handler makes the server close it without finishing the body).
+     */
+    private void cut(HttpExchange ex, long size, long sent, Duration silence) throws IOException {
+        statuses.computeIfAbsent(200, s -> new LongAdder()).increment();
+        ex.getResponseHeaders().add("Content-Type", "application/pdf");
+        ex.sendResponseHeaders(200, size);
+        OutputStream os = ex.getResponseBody();
+        writePdf(os, size, sent, Duration.ZERO);
+        os.flush();
+        pause(silence);
+        throw new IOException("connection dropped on purpose");
+    }
+
+    private void writePdf(OutputStream os, long size, long limit, Duration trickle) throws IOException {
+        long pos = 0;
+        int chunk = trickle.isZero() ? CHUNK : TRICKLE_CHUNK;
+        while (pos < limit) {
+            int n = (int) Math.min(chunk, limit - pos);
+            for (int i = 0; i < n; ) {
+                long at = pos + i;
+                int len;
+                if (at < PDF_HEAD.length) {
+                    len = Math.min(n - i, PDF_HEAD.length - (int) at);
+                    os.write(PDF_HEAD, (int) at, len);
+                } else if (at >= size - PDF_TAIL.length) {
+                    int off = (int) (at - (size - PDF_TAIL.length));
+                    len = Math.min(n - i, PDF_TAIL.length - off);
+                    os.write(PDF_TAIL, off, len);
+                } else {
+                    len = (int) Math.min(n - i, Math.min(FILLER.length, size - PDF_TAIL.length - at));
+                    os.write(FILLER, 0, len);
+                }
+                i += len;
+            }
+            pos += n;
+            bytesSent.add(n);
+            if (!trickle.isZero()) {
+                os.flush();
+                pause(trickle);
+            }
+        }
+    }
+
+    private static boolean head(HttpExchange ex) {
+        return "HEAD".equalsIgnoreCase(ex.getRequestMethod());
+    }
+
+    private static void pause(Duration d) throws IOException {
+        if (d.isZero()) return;
+        try {
+            Thread.sleep(d);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+    }
+
+    private static byte[] filler() {
+        byte[] b = new byte[CHUNK];
+        for (int i = 0; i < b.length; i++) b[i] = (byte) ('a' + i % 26);
+        return b;
+    }
+}
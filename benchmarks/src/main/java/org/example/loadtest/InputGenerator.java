@@ -0,0 +1,103 @@
+package org.example.loadtest;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * InputGenerator writes an input workbook for a {@link HostileServer}, in the layout the readers expect.
+ * Row i downloads from host {@code i % hosts}; a share of the rows also gets a backup URL on another host.
+ * The returned {@link Workload} says what each row should end as.
+ */
+
+public final class InputGenerator {
+
+    private InputGenerator() {
+    }
+
+    /**
+     * @param file          workbook to write
+     * @param rows          data rows
+     * @param server        server the URLs point at
+     * @param plan          hosts and their profiles
+     * @param fallbackShare fraction of rows with a backup URL (0..1)
+     * @return which hosts each row uses
+     */
+    public static Workload write(Path file, int rows, HostileServer server, HostPlan plan, double fallbackShare) {
+        int[] primary = new int[rows];
+        int[] fallback = new int[rows];
+        Random rnd = new Random(42);
+
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(200)) {
+            Sheet sh = wb.createSheet("Input");
+            Row header = sh.createRow(0);
+            header.createCell(0).setCellValue("BRnum");
+            header.createCell(1).setCellValue("Pdf_URL");
+            header.createCell(2).setCellValue("Report Html Address");
+
+            for (int i = 0; i < rows; i++) {
+                primary[i] = i % plan.hosts();
+                fallback[i] = plan.hosts() > 1 && rnd.nextDouble() < fallbackShare
+                        ? (primary[i] + 1 + rnd.nextInt(plan.hosts() - 1)) % plan.hosts()
+                        : -1;
+
+                Row r = sh.createRow(i + 1);
+                r.createCell(0).setCellValue(Workload.brNum(i));
+                r.createCell(1).setCellValue(server.url(primary[i], "report_" + i));
+                if (fallback[i] >= 0) r.createCell(2).setCellValue(server.url(fallback[i], "backup_" + i));
+            }
+            try (OutputStream os = Files.newOutputStream(file)) {
+                wb.write(os);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Workload(plan, primary, fallback);
+    }
+
+    /**
+     * The generated rows: primary and backup host per row (backup -1 if none).
+     */
+    public record Workload(HostPlan plan, int[] primary, int[] fallback) {
+
+        public int rows() {
+            return primary.length;
+        }
+
+        public static String brNum(int row) {
+            return "LT" + (100_000 + row);
+        }
+
+        /**
+         * @return row index of a BRnum written by the generator, or -1
+         */
+        public int rowOf(String brNum) {
+            if (brNum == null || !brNum.startsWith("LT")) return -1;
+            try {
+                int row = Integer.parseInt(brNum.substring(2)) - 100_000;
+                return row >= 0 && row < rows() ? row : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * @return true if the primary or the backup host should deliver the file
+         */
+        public boolean expectSuccess(int row) {
+            return plan.profile(primary[row]).expectSuccess()
+                    || fallback[row] >= 0 && plan.profile(fallback[row]).expectSuccess();
+        }
+
+        public HostProfile primaryProfile(int row) {
+            return plan.profile(primary[row]);
+        }
+    }
+}
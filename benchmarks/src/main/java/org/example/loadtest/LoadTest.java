@@ -0,0 +1,234 @@
+package org.example.loadtest;
+
+import org.example.service.core.ConverterService;
+import org.example.service.core.RunMetrics;
+import org.example.service.core.RunOptions;
+import org.example.service.downloader.HttpClientPdfDownloader;
+import org.example.service.downloader.PdfDownloader;
+import org.example.service.downloader.SimplePdfDownloader;
+import org.example.service.reader.ExcelReader;
+import org.example.service.reader.FastExcelReader;
+import org.example.service.reader.PoiExcelReader;
+import org.example.service.report.CsvReportRepository;
+import org.example.service.report.JsonLinesReportRepository;
+import org.example.service.report.PoiReportRepository;
+import org.example.service.report.ReportRepository;
+import org.example.service.report.SidecarReportRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * LoadTest runs {@link ConverterService#execute()} end to end against a {@link HostileServer}, offline:
+ * 1) Plan the simulated hosts and their profiles ({@link HostPlan}).
+ * 2) Start the stand-in server and generate the input workbook ({@link InputGenerator}).
+ * 3) Run the service with the chosen options, downloader and report backend.
+ * 4) Check the report and the downloaded files ({@link ReportCheck}).
+ * 5) Print throughput, tail latency, server-side counts and the correctness verdict.
+ * Exits with 1 if a correctness check failed.
+ * Usage (after building the benchmarks module):
+ * java -cp benchmarks/target/benchmarks.jar org.example.loadtest.LoadTest --rows=20000 --hosts=2000
+ * Options are --name=value; run with --help for the list.
+ */
+
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("rows", "5000");
+        DEFAULTS.put("hosts", "1000");
+        DEFAULTS.put("profiles", HostPlan.DEFAULT_PROFILES);
+        DEFAULTS.put("fallback", "0.1");
+        DEFAULTS.put("size-kb", "64");
+        DEFAULTS.put("huge-mb", "8");
+        DEFAULTS.put("trickle-ms", "20");
+        DEFAULTS.put("stall-s", "40");
+        DEFAULTS.put("mode", "VIRTUAL");
+        DEFAULTS.put("max-in-flight", "32");
+        DEFAULTS.put("host-order", "ROUND_ROBIN");
+        DEFAULTS.put("host-batch", "8");
+        DEFAULTS.put("max-queued", "1024");
+        DEFAULTS.put("downloader", "simple");
+        DEFAULTS.put("reader", "fast");
+        DEFAULTS.put("repo", "sidecar");
+        DEFAULTS.put("dir", "");
+        DEFAULTS.put("keep", "false");
+        DEFAULTS.put("verbose", "false");
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opt = parse(args);
+        if (opt == null) {
+            usage();
+            return;
+        }
+        boolean verbose = Boolean.parseBoolean(opt.get("verbose"));
+        // must be set before the first logger is created; the service logs every row at INFO
+        if (!verbose) System.setProperty("logback.configurationFile", "logback-loadtest.xml");
+
+        int rows = Integer.parseInt(opt.get("rows"));
+        HostPlan plan = HostPlan.of(Integer.parseInt(opt.get("hosts")), opt.get("profiles"));
+        HostileServer.Behaviour behaviour = new HostileServer.Behaviour(
+                Math.max(1024, Integer.parseInt(opt.get("size-kb")) * 1024),
+                Math.max(1024, Long.parseLong(opt.get("huge-mb")) * 1024 * 1024),
+                Duration.ofMillis(Long.parseLong(opt.get("trickle-ms"))),
+                Duration.ofSeconds(Long.parseLong(opt.get("stall-s"))));
+
+        boolean tempDir = opt.get("dir").isEmpty();
+        Path dir = tempDir ? Files.createTempDirectory("loadtest") : Files.createDirectories(Path.of(opt.get("dir")));
+        Path input = dir.resolve("input.xlsx");
+        Path downloads = dir.resolve("download");
+        Path xlsx = downloads.resolve("Report.xlsx");
+        Path report = switch (opt.get("repo")) {
+            case "jsonl" -> downloads.resolve("Report.jsonl");
+            case "csv" -> downloads.resolve("Report.csv");
+            default -> xlsx;
+        };
+        Files.createDirectories(downloads);
+
+        boolean passed;
+        try (HostileServer server = HostileServer.start(plan, behaviour)) {
+            out("== Load test: %d rows over %d hosts (%s), server port %d", rows, plan.hosts(),
+                    plan.distinctAddresses() ? "127.1.x.y each" : "all on 127.0.0.1", server.port());
+            out("   hosts per profile: %s", plan);
+            InputGenerator.Workload workload = InputGenerator.write(input, rows, server, plan,
+                    Double.parseDouble(opt.get("fallback")));
+
+            RunOptions options = RunOptions.builder()
+                    .executionMode(RunOptions.ExecutionMode.valueOf(opt.get("mode").toUpperCase(Locale.ROOT)))
+                    .maxInFlight(Integer.parseInt(opt.get("max-in-flight")))
+                    .adaptiveConcurrency(true)
+                    .hostOrder(RunOptions.HostOrder.valueOf(opt.get("host-order").toUpperCase(Locale.ROOT).replace('-', '_')))
+                    .hostBatchSize(Integer.parseInt(opt.get("host-batch")))
+                    .maxQueued(Integer.parseInt(opt.get("max-queued")))
+                    .metricsLogInterval(verbose ? Duration.ofSeconds(10) : Duration.ZERO)
+                    .jmx(false)
+                    .contentStore(true)
+                    .build();
+            ReportRepository repository = repository(opt.get("repo"));
+            ConverterService service = new ConverterService(input, report, downloads, reader(opt.get("reader")),
+                    downloader(opt.get("downloader")), repository, options);
+            out("   mode=%s maxInFlight=%d hostOrder=%s downloader=%s reader=%s repo=%s, files %s (huge %s)",
+                    options.getExecutionMode(), options.getMaxInFlight(), options.getHostOrder(), opt.get("downloader"),
+                    opt.get("reader"), opt.get("repo"), mib(behaviour.fileBytes()), mib(behaviour.hugeBytes()));
+
+            long start = System.nanoTime();
+            service.execute();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            // the line backends have no workbook of their own; the check reads the exported one
+            if (!report.equals(xlsx)) repository.exportXlsx(report, xlsx);
+            ReportCheck.Result check = ReportCheck.verify(xlsx, downloads, workload,
+                    Set.of((long) behaviour.fileBytes(), behaviour.hugeBytes()));
+            printResults(rows, seconds, service.metrics(), server, check);
+            passed = check.passed();
+        } finally {
+            if (tempDir && !Boolean.parseBoolean(opt.get("keep"))) deleteTree(dir);
+            else out("   files kept in %s", dir.toAbsolutePath());
+        }
+        if (!passed) System.exit(1);
+    }
+
+    private static void printResults(int rows, double seconds, RunMetrics m, HostileServer server, ReportCheck.Result c) {
+        out("");
+        out("-- Throughput");
+        out("   elapsed %.1f s, %.1f rows/s, %s/s downloaded (%s)", seconds, rows / seconds,
+                mib((long) (m.getBytesDownloaded() / seconds)), mib(m.getBytesDownloaded()));
+        out("-- Download latency (every attempt)");
+        out("   p50 %.0f ms, p95 %.0f ms, p99 %.0f ms", m.getLatencyP50Ms(), m.getLatencyP95Ms(), m.getLatencyP99Ms());
+        out("   journal flush p99 %.1f ms, report write %d ms", m.getJournalFlushP99Ms(), m.getReportWriteMs());
+        out("-- Server");
+        out("   requests per profile: %s", server.requestsPerProfile());
+        out("   responses per status: %s, %s sent", server.responsesPerStatus(), mib(server.bytesSent()));
+        long requests = server.requests();
+        out("   %d requests over %d connections: %.0f%% reused (client estimate %.0f%%)", requests, server.connections(),
+                requests == 0 ? 0 : 100.0 * (requests - server.connections()) / requests, m.getConnectionReuseRatio() * 100);
+        out("-- Outcomes by primary-host profile");
+        c.perProfile().forEach((p, t) -> out("   %-10s %6d rows, %6d ok, %6d failed%s %s", p.label(), t.rows, t.succeeded,
+                t.failed, p.expectSuccess() ? "" : " (expected)", t.reasons.isEmpty() ? "" : t.reasons));
+        out("-- Correctness");
+        out("   report rows %d of %d (missing %d, duplicates %d, unknown %d)", c.reportRows(), rows, c.missing(),
+                c.duplicates(), c.unknown());
+        out("   successes %d, false successes %d, missed successes %d (retries exhausted / breaker open)",
+                c.successes(), c.falseSuccesses(), c.missedSuccesses());
+        out("   files %d, bad files %d", c.files(), c.badFiles());
+        c.examples().forEach(e -> out("   ! %s", e));
+        out("== %s", c.passed() ? "PASS" : "FAIL");
+    }
+
+    private static ExcelReader reader(String name) {
+        return switch (name) {
+            case "fast" -> new FastExcelReader();
+            case "poi" -> new PoiExcelReader();
+            default -> throw new IllegalArgumentException("reader must be fast or poi");
+        };
+    }
+
+    private static PdfDownloader downloader(String name) {
+        return switch (name) {
+            // as configured in Main
+            case "simple" -> new SimplePdfDownloader(Duration.ofSeconds(2), 0.95);
+            case "httpclient" -> new HttpClientPdfDownloader();
+            default -> throw new IllegalArgumentException("downloader must be simple or httpclient");
+        };
+    }
+
+    private static ReportRepository repository(String name) {
+        return switch (name) {
+            case "sidecar" -> new SidecarReportRepository();
+            case "poi" -> new PoiReportRepository();
+            case "jsonl" -> new JsonLinesReportRepository();
+            case "csv" -> new CsvReportRepository();
+            default -> throw new IllegalArgumentException("repo must be sidecar, poi, jsonl or csv");
+        };
+    }
+
+    /**
+     * @return options with defaults filled in, or null if help was asked for
+     */
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opt = new LinkedHashMap<>(DEFAULTS);
+        for (String a : args) {
+            if (a.equals("--help") || a.equals("-h")) return null;
+            if (!a.startsWith("--")) throw new IllegalArgumentException("Expected --name=value, got '" + a + "'");
+            int eq = a.indexOf('=');
+            String key = eq < 0 ? a.substring(2) : a.substring(2, eq);
+            if (!DEFAULTS.containsKey(key)) throw new IllegalArgumentException("Unknown option --" + key + " (try --help)");
+            opt.put(key, eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        return opt;
+    }
+
+    private static void usage() {
+        out("Usage: LoadTest [--name=value ...]");
+        DEFAULTS.forEach((k, v) -> out("  --%-14s default: %s", k, v.isEmpty() ? "(temp dir, deleted afterwards)" : v));
+        out("Profiles: ok, slow, throttled, flaky, redirect, huge, html, not-found, reset, stall, down");
+    }
+
+    private static String mib(long bytes) {
+        if (bytes < 1024 * 1024) return String.format("%.0f KiB", bytes / 1024.0);
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024));
+    }
+
+    private static void out(String format, Object... args) {
+        System.out.println(String.format(format, args));
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.loadtest;
+
+import org.dhatim.fastexcel.reader.ReadableWorkbook;
+import org.dhatim.fastexcel.reader.Row;
+import org.dhatim.fastexcel.reader.Sheet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * ReportCheck compares the report and the download directory of a load-test run with what the
+ * {@link InputGenerator.Workload} says should have happened.
+ * Hard errors (the run is wrong):
+ * - input rows missing from the report, BRnums reported twice, BRnums that were never in the input
+ * - rows marked "success" although neither of their hosts can deliver a PDF
+ * - stored files that are not complete PDFs of a size the server sends, or fewer files than successes
+ * Soft findings (the run was unlucky, e.g. retries exhausted or a breaker open):
+ * - rows that could have succeeded but failed, counted per profile and reason
+ */
+
+public final class ReportCheck {
+
+    private ReportCheck() {
+    }
+
+    /**
+     * Outcome per primary-host profile.
+     */
+    public static final class ProfileTally {
+        public int rows;
+        public int succeeded;
+        public int failed;
+        public final Map<String, Integer> reasons = new TreeMap<>();
+    }
+
+    /**
+     * @param reportRows     data rows in the report
+     * @param missing        input rows not in the report
+     * @param duplicates     BRnums reported more than once
+     * @param unknown        reported BRnums not in the input
+     * @param falseSuccesses rows marked success that must have failed
+     * @param missedSuccesses rows that should have succeeded but failed
+     * @param successes      rows marked success
+     * @param files          PDFs in the download directory
+     * @param badFiles       files that are truncated, not PDFs or of an unexpected size
+     * @param perProfile     outcomes by the profile of the row's primary host
+     * @param examples       a few hard errors, for the log
+     */
+    public record Result(int reportRows, int missing, int duplicates, int unknown, int falseSuccesses,
+                         int missedSuccesses, int successes, int files, int badFiles,
+                         Map<HostProfile, ProfileTally> perProfile, List<String> examples) {
+
+        public boolean passed() {
+            return missing == 0 && duplicates == 0 && unknown == 0 && falseSuccesses == 0
+                    && badFiles == 0 && files >= successes;
+        }
+    }
+
+    /**
+     * @param report      Report.xlsx after the run (compacted)
+     * @param downloadDir directory the PDFs were stored in
+     * @param workload    what was generated
+     * @param validSizes  sizes a stored PDF may have
+     */
+    public static Result verify(Path report, Path downloadDir, InputGenerator.Workload workload, Set<Long> validSizes) {
+        int[] seen = new int[workload.rows()];
+        Map<HostProfile, ProfileTally> perProfile = new EnumMap<>(HostProfile.class);
+        List<String> examples = new ArrayList<>();
+        int reportRows = 0, duplicates = 0, unknown = 0, falseSuccesses = 0, missedSuccesses = 0, successes = 0;
+        int files = 0, badFiles = 0;
+        boolean namedFiles = false;
+
+        try (ReadableWorkbook wb = new ReadableWorkbook(report.toFile());
+             Stream<Row> rows = firstSheet(wb).openStream()) {
+            Map<String, Integer> col = new TreeMap<>();
+            for (Row r : (Iterable<Row>) rows::iterator) {
+                if (col.isEmpty()) {
+                    for (int c = 0; c < r.getCellCount(); c++) col.put(r.getCellText(c), c);
+                    continue;
+                }
+                reportRows++;
+                String br = text(r, col.get("BRnum"));
+                String status = text(r, col.get("Status"));
+                String reason = text(r, col.get("Reason"));
+                int row = workload.rowOf(br);
+                if (row < 0) {
+                    unknown++;
+                    example(examples, "unknown BRnum " + br);
+                    continue;
+                }
+                if (++seen[row] > 1) {
+                    duplicates++;
+                    example(examples, "duplicate " + br);
+                    continue;
+                }
+                boolean ok = "success".equals(status);
+                ProfileTally t = perProfile.computeIfAbsent(workload.primaryProfile(row), p -> new ProfileTally());
+                t.rows++;
+                if (ok) {
+                    t.succeeded++;
+                    successes++;
+                    // content store: the row names its file, which may be shared with other rows
+                    String file = text(r, col.get("File"));
+                    if (!file.isEmpty()) {
+                        namedFiles = true;
+                        files++;
+                        Path f = downloadDir.resolve(file);
+                        if (!Files.isRegularFile(f) || !completePdf(f, validSizes)) {
+                            badFiles++;
+                            example(examples, "bad file " + file + " of " + br);
+                        }
+                    }
+                } else {
+                    t.failed++;
+                    t.reasons.merge(reason.isEmpty() ? "(no reason)" : reason, 1, Integer::sum);
+                }
+                if (ok && !workload.expectSuccess(row)) {
+                    falseSuccesses++;
+                    example(examples, br + " marked success but its hosts are " + workload.primaryProfile(row).label()
+                            + (workload.fallback()[row] >= 0 ? "/" + workload.plan().profile(workload.fallback()[row]).label() : ""));
+                }
+                if (!ok && workload.expectSuccess(row)) missedSuccesses++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int missing = 0;
+        for (int i = 0; i < seen.length; i++) {
+            if (seen[i] == 0) {
+                missing++;
+                example(examples, "missing " + InputGenerator.Workload.brNum(i));
+            }
+        }
+
+        // without file names (content store off), every PDF in the directory is checked
+        if (!namedFiles) {
+            try (Stream<Path> list = Files.list(downloadDir)) {
+                for (Path f : list.filter(p -> p.getFileName().toString().endsWith(".pdf")).toList()) {
+                    files++;
+                    if (!completePdf(f, validSizes)) {
+                        badFiles++;
+                        example(examples, "bad file " + f.getFileName());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return new Result(reportRows, missing, duplicates, unknown, falseSuccesses, missedSuccesses, successes,
+                files, badFiles, perProfile, examples);
+    }
+
+    private static Sheet firstSheet(ReadableWorkbook wb) {
+        return wb.getSheets().findFirst().orElseThrow(() -> new IllegalStateException("Report has no sheet"));
+    }
+
+    private static String text(Row r, Integer col) {
+        if (col == null || col >= r.getCellCount()) return "";
+        String s = r.getCellText(col);
+        return s != null ? s.trim() : "";
+    }
+
+    private static boolean completePdf(Path f, Set<Long> validSizes) throws IOException {
+        long size = Files.size(f);
+        if (!validSizes.contains(size)) return false;
+        byte[] head = new byte[5];
+        byte[] tail = new byte[6];
+        try (InputStream in = Files.newInputStream(f)) {
+            if (in.readNBytes(head, 0, head.length) != head.length) return false;
+            in.skipNBytes(size - head.length - tail.length);
+            if (in.readNBytes(tail, 0, tail.length) != tail.length) return false;
+        }
+        return new String(head, StandardCharsets.US_ASCII).equals("%PDF-")
+                && new String(tail, StandardCharsets.US_ASCII).equals("%%EOF\n");
+    }
+
+    private static void example(List<String> examples, String s) {
+        if (examples.size() < 10) examples.add(s);
+    }
+}
@@ -1,11 +1,13 @@
 package org.example.app;
 
 import org.example.service.core.ConverterService;
-import org.example.service.reader.PoiExcelReader;
-import org.example.service.report.PoiReportRepository;
+import org.example.service.core.RunOptions;
+import org.example.service.reader.FastExcelReader;
+import org.example.service.report.SidecarReportRepository;
 import org.example.service.downloader.SimplePdfDownloader;
 
 import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Entry point for the application.
@@ -24,13 +26,23 @@ public class Main {
         //Path to the output report Excel file that will be created/updated.
         Path reportFile = downloadDir.resolve("Report.xlsx");
 
+        // Downloads are blocking network I/O, so run them on virtual threads bounded by a permit limit.
+        RunOptions options = RunOptions.builder()
+                .executionMode(RunOptions.ExecutionMode.VIRTUAL)
+                .maxInFlight(32)
+                // Resolve all hosts up front, so rows pointing at hosts that no longer exist fail at once.
+                .dnsWarmup(true)
+                .build();
+
         ConverterService service = new ConverterService(
                 excelPath,
                 reportFile,
                 downloadDir,
-                new PoiExcelReader(),
-                new SimplePdfDownloader(),
-                new PoiReportRepository()
+                new FastExcelReader(),
+                // Hedge: start the backup URL if the primary is silent for 2 s (or its p95, if slower).
+                new SimplePdfDownloader(Duration.ofSeconds(2), 0.95),
+                new SidecarReportRepository(),
+                options
         );
 
         service.execute();
@@ -39,7 +51,6 @@ public class Main {
 
 // TODO: Check if URL is not too large
 // TODO: Check if URL is corrupted
-// TODO: Check if PDF is not encrypted
 // TODO: Krav spec
 // TODO: Readme.md
 // TODO: Downlaod status to report (look in metadata dataset)
@@ -13,6 +13,12 @@ import java.net.URL;
  * - status: success or error
  * - reason: optional description of why an error occurred
  * - errorMessage: technical error details (e.g., exception message)
+ * - cacheHit: true if the server answered 304 Not Modified and the earlier download was reused
+ * - retries: how many times the row was tried again after a transient failure
+ * - breaker: circuit breaker state of the row's hosts when it finished, if any was not closed
+ * - size: bytes of the stored PDF (or, from a link check, the size the server announced); null if unknown
+ * - sha256: hex SHA-256 of the downloaded PDF (with the content store, the key it is stored under); null if unknown
+ * - file: where the PDF of this BRnum can be opened, relative to the download directory (content store only)
  */
 
 @Builder
@@ -28,6 +34,12 @@ public class ReportEntity {
     private String status;
     private String reason;
     private String errorMessage;
+    private boolean cacheHit;
+    private int retries;
+    private String breaker;
+    private Long size;
+    private String sha256;
+    private String file;
 
     @Override
     public String toString() {
@@ -38,6 +50,12 @@ public class ReportEntity {
                 ", status='" + status + '\'' +
                 ", reason='" + reason + '\'' +
                 ", errorMessage='" + errorMessage + '\'' +
+                ", cacheHit=" + cacheHit +
+                ", retries=" + retries +
+                ", breaker='" + breaker + '\'' +
+                ", size=" + size +
+                ", sha256='" + sha256 + '\'' +
+                ", file='" + file + '\'' +
                 '}';
     }
 }
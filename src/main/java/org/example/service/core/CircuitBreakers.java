@@ -0,0 +1,236 @@
+package org.example.service.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * CircuitBreakers keeps one breaker per host so rows for a host that is known to be down fail fast
+ * instead of each waiting out the connect timeout.
+ * - CLOSED: requests pass; {@code failureThreshold} consecutive host failures (timeouts, connection
+ * errors, 5xx) open the breaker. Any answer from the host, even a 404, counts as the host being up.
+ * - OPEN: requests are refused until {@code openDuration} has passed.
+ * - HALF_OPEN: a single probe request is let through; success closes the breaker, failure opens it again.
+ * A threshold &lt;= 0 disables the breakers (every request passes).
+ */
+
+class CircuitBreakers {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakers.class);
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * @param failureThreshold consecutive failures that open a host's breaker (&lt;= 0 disables)
+     * @param openDuration     how long an open breaker refuses requests before a probe is allowed
+     */
+    CircuitBreakers(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Answer of {@link #acquire}: go ahead, go ahead as the half-open probe, or fail fast.
+     */
+    enum Permit {
+        ALLOWED,
+        PROBE,
+        DENIED
+    }
+
+    Permit acquire(String host) {
+        if (failureThreshold <= 0) return Permit.ALLOWED;
+        return breaker(host).acquire();
+    }
+
+    /**
+     * Records the outcome of requests made to a host.
+     *
+     * @param hostFailure true if the host did not answer usefully (timeout, connection error, 5xx)
+     * @param permit      what {@link #acquire} returned for these requests
+     */
+    void record(String host, boolean hostFailure, Permit permit) {
+        if (failureThreshold <= 0) return;
+        breaker(host).record(hostFailure, permit == Permit.PROBE);
+    }
+
+    /**
+     * Returns a probe permit that ended up unused (e.g. the other URL of the row succeeded first).
+     */
+    void abandonProbe(String host) {
+        if (failureThreshold <= 0) return;
+        breaker(host).abandonProbe();
+    }
+
+    State state(String host) {
+        Breaker b = breakers.get(host);
+        return b == null ? State.CLOSED : b.state();
+    }
+
+    /**
+     * @return milliseconds until an open breaker will let a probe through (0 if not open)
+     */
+    long retryAfterMs(String host) {
+        Breaker b = breakers.get(host);
+        return b == null ? 0 : b.remainingOpenMs();
+    }
+
+    /**
+     * Breakers that have tripped at least once, most trips first.
+     */
+    List<BreakerStats> snapshot() {
+        return breakers.entrySet().stream()
+                .map(e -> e.getValue().stats(e.getKey()))
+                .filter(s -> s.trips() > 0)
+                .sorted(Comparator.comparingInt(BreakerStats::trips).reversed())
+                .toList();
+    }
+
+    private Breaker breaker(String host) {
+        return breakers.computeIfAbsent(host, Breaker::new);
+    }
+
+    /**
+     * One host's breaker. Guarded by a ReentrantLock rather than synchronized, and nothing is logged
+     * while holding it, so virtual threads never pin their carrier waiting here.
+     */
+    private final class Breaker {
+        private final String host;
+        private final ReentrantLock lock = new ReentrantLock();
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean probing;
+        private int trips;
+        private long fastFailed;
+
+        Breaker(String host) {
+            this.host = host;
+        }
+
+        Permit acquire() {
+            lock.lock();
+            try {
+                if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+                    state = State.HALF_OPEN;
+                    probing = false;
+                }
+                if (state == State.CLOSED) return Permit.ALLOWED;
+                if (state != State.HALF_OPEN || probing) {
+                    fastFailed++;
+                    return Permit.DENIED;
+                }
+                probing = true;
+            } finally {
+                lock.unlock();
+            }
+            log.info("[BREAKER] {} half-open, sending a probe", host);
+            return Permit.PROBE;
+        }
+
+        void record(boolean failure, boolean probe) {
+            String opened = null;
+            boolean closed = false;
+            lock.lock();
+            try {
+                if (probe) {
+                    probing = false;
+                    if (failure) {
+                        opened = open("probe failed");
+                    } else {
+                        state = State.CLOSED;
+                        consecutiveFailures = 0;
+                        closed = true;
+                    }
+                } else if (state == State.CLOSED) {
+                    // late results of requests started before the breaker opened do not move it
+                    if (!failure) {
+                        consecutiveFailures = 0;
+                    } else if (++consecutiveFailures >= failureThreshold) {
+                        opened = open(consecutiveFailures + " consecutive failures");
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (opened != null) log.warn("[BREAKER] {} OPEN for {} ms ({})", host, openNanos / 1_000_000, opened);
+            if (closed) log.info("[BREAKER] {} closed, probe succeeded", host);
+        }
+
+        void abandonProbe() {
+            lock.lock();
+            try {
+                probing = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        State state() {
+            lock.lock();
+            try {
+                return state;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long remainingOpenMs() {
+            lock.lock();
+            try {
+                if (state != State.OPEN) return 0;
+                return Math.max(0, (openNanos - (System.nanoTime() - openedAt)) / 1_000_000);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        BreakerStats stats(String host) {
+            lock.lock();
+            try {
+                return new BreakerStats(host, state, trips, fastFailed);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Opens the breaker (lock held).
+         *
+         * @return the reason, for logging once the lock is released
+         */
+        private String open(String why) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            trips++;
+            return why;
+        }
+    }
+
+    /**
+     * @param host       host name
+     * @param state      state at the time of the snapshot
+     * @param trips      times the breaker opened
+     * @param fastFailed requests refused while open
+     */
+    record BreakerStats(String host, State state, int trips, long fastFailed) {
+        @Override
+        public String toString() {
+            return host + "(" + state + ", trips=" + trips + ", fastFailed=" + fastFailed + ")";
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.example.service.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrencyLimiter decides how many downloads may be in flight. The limit grows while download times
+ * stay near their recent low and shrinks when they rise or downloads fail, within [min, max].
+ */
+
+class ConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    /**
+     * Recent latency may exceed the baseline by this factor before the limit shrinks.
+     */
+    private static final double TOLERANCE = 1.5;
+
+    private static final double SHORT_ALPHA = 0.25;
+    private static final double SMOOTHING = 0.5;
+    private static final double DROP_FACTOR = 0.9;
+
+    private static final long LOG_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_HISTORY = 200;
+
+    private final int min;
+    private final int max;
+    private final int initial;
+    private final long createdNs = System.nanoTime();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile int limit;
+    private double estimate;
+    private double shortRttNs;
+    private double longRttNs;
+    private long lastDropNs;
+    private long lastUpdateNs;
+    private long samples;
+    private long drops;
+    private int lowest;
+    private int highest;
+    private int lastLogged;
+    private long lastLogNs;
+    private final List<Point> history = new ArrayList<>();
+
+    /**
+     * @param initial starting limit
+     * @param min     lowest limit
+     * @param max     highest limit
+     */
+    ConcurrencyLimiter(int initial, int min, int max) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.initial = Math.clamp(initial, this.min, this.max);
+        this.limit = this.initial;
+        this.estimate = this.initial;
+        this.lowest = this.initial;
+        this.highest = this.initial;
+        this.lastLogged = this.initial;
+        history.add(new Point(0, this.initial));
+    }
+
+    /**
+     * Limiter that always allows {@code limit} tasks.
+     */
+    static ConcurrencyLimiter fixed(int limit) {
+        return new ConcurrencyLimiter(limit, limit, limit);
+    }
+
+    boolean adaptive() {
+        return min < max;
+    }
+
+    /**
+     * @return current limit on tasks in flight
+     */
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * Feeds back one finished download.
+     *
+     * @param rttNs    time the download took
+     * @param dropped  true if it timed out, was refused or throttled (429/5xx)
+     * @param inFlight downloads still in flight when it finished (including this one)
+     */
+    void onSample(long rttNs, boolean dropped, int inFlight) {
+        if (!adaptive()) return;
+        int before;
+        int after;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            before = limit;
+            samples++;
+            if (dropped) {
+                // one decrease per round trip, however many downloads of that round fail
+                if (drops > 0 && now - lastDropNs < shortRttNs) return;
+                lastDropNs = now;
+                drops++;
+                estimate = Math.max(min, estimate * DROP_FACTOR);
+            } else {
+                if (rttNs <= 0) return;
+                shortRttNs = shortRttNs == 0 ? rttNs : shortRttNs + SHORT_ALPHA * (rttNs - shortRttNs);
+                // the baseline approximates latency without queueing: the lowest recent average seen
+                // (warm-up samples are slow, so it starts high and comes down)
+                if (longRttNs == 0 || shortRttNs < longRttNs) longRttNs = shortRttNs;
+                if (lastUpdateNs != 0 && now - lastUpdateNs < shortRttNs) return;
+                lastUpdateNs = now;
+                // at the floor the latency is as unqueued as it gets: if it is still high, the network
+                // or the files changed, so take it as the new baseline instead of staying stuck
+                if (estimate <= min) longRttNs = shortRttNs;
+
+                double gradient = Math.clamp(TOLERANCE * longRttNs / shortRttNs, 0.5, 1.0);
+                // grow only while latency holds; and not when app-limited, since a limit that is not
+                // used says nothing about capacity
+                double growth = gradient >= 1.0 && inFlight * 2 >= estimate ? Math.sqrt(estimate) : 0;
+                double target = estimate * gradient + growth;
+                estimate = Math.clamp(estimate * (1 - SMOOTHING) + target * SMOOTHING, min, max);
+            }
+            limit = (int) estimate;
+            after = limit;
+            if (after != before) record(now, after);
+        } finally {
+            lock.unlock();
+        }
+        if (after != before) maybeLog(now, after, dropped);
+    }
+
+    /**
+     * Current state and the history of limit changes.
+     */
+    Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(limit, initial, min, max, lowest, highest, samples, drops,
+                    (long) (shortRttNs / 1_000_000), (long) (longRttNs / 1_000_000), List.copyOf(history));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    /**
+     * Appends to the history (lock held). When full, every other point is dropped, so the history
+     * keeps covering the whole run at a coarser resolution.
+     */
+    private void record(long now, int value) {
+        lowest = Math.min(lowest, value);
+        highest = Math.max(highest, value);
+        if (history.size() >= MAX_HISTORY) {
+            for (int i = history.size() - 2; i > 0; i -= 2) history.remove(i);
+        }
+        history.add(new Point((now - createdNs) / 1_000_000, value));
+    }
+
+    private void maybeLog(long now, int value, boolean dropped) {
+        int from;
+        long shortMs;
+        long longMs;
+        lock.lock();
+        try {
+            if (now - lastLogNs < LOG_INTERVAL_NS) return;
+            lastLogNs = now;
+            from = lastLogged;
+            lastLogged = value;
+            shortMs = (long) (shortRttNs / 1_000_000);
+            longMs = (long) (longRttNs / 1_000_000);
+        } finally {
+            lock.unlock();
+        }
+        log.info("[LIMIT] Concurrency {} -> {} ({}; latency recent={} ms, baseline={} ms)",
+                from, value, dropped ? "drop" : "latency gradient", shortMs, longMs);
+    }
+
+    /**
+     * @param atMs  milliseconds since the limiter was created
+     * @param limit limit from then on
+     */
+    record Point(long atMs, int limit) {
+        @Override
+        public String toString() {
+            return limit + "@" + atMs / 100 / 10.0 + "s";
+        }
+    }
+
+    /**
+     * @param limit     current limit
+     * @param initial   starting limit
+     * @param min       lowest allowed limit
+     * @param max       highest allowed limit
+     * @param lowest    lowest limit reached
+     * @param highest   highest limit reached
+     * @param samples   downloads fed back
+     * @param drops     decreases caused by drops
+     * @param recentMs  recent average download time
+     * @param baselineMs baseline download time
+     * @param history   limit changes over time (thinned out on long runs)
+     */
+    record Stats(int limit, int initial, int min, int max, int lowest, int highest, long samples, long drops,
+                 long recentMs, long baselineMs, List<Point> history) {
+
+        /**
+         * At most {@code maxPoints} points of the history, evenly spread, always ending with the last change.
+         */
+        List<Point> trail(int maxPoints) {
+            if (history.size() <= maxPoints) return history;
+            List<Point> out = new ArrayList<>(maxPoints);
+            double step = (history.size() - 1) / (double) (maxPoints - 1);
+            for (int i = 0; i < maxPoints; i++) out.add(history.get((int) Math.round(i * step)));
+            return out;
+        }
+
+        @Override
+        public String toString() {
+            if (min == max) return "fixed at " + limit;
+            return initial + " -> " + limit + " (range " + lowest + ".." + highest + " of " + min + ".." + max
+                    + ", " + drops + " drop cuts, latency recent=" + recentMs + " ms, baseline=" + baselineMs + " ms)";
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.service.core;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConnectionReuse estimates how many downloads ran on a kept-alive connection, since neither
+ * HttpURLConnection nor HttpClient tells, by replaying the JDK's per-host keep-alive cache.
+ */
+
+class ConnectionReuse {
+
+    static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final long idleTimeoutNs;
+    private final int maxIdlePerHost;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ArrayDeque<Long>> idle = new HashMap<>();
+
+    private long reused;
+    private long opened;
+
+    ConnectionReuse() {
+        this(DEFAULT_IDLE_TIMEOUT, Integer.getInteger("http.maxConnections", 5));
+    }
+
+    /**
+     * @param idleTimeout    how long an idle connection is kept
+     * @param maxIdlePerHost idle connections kept per host
+     */
+    ConnectionReuse(Duration idleTimeout, int maxIdlePerHost) {
+        this.idleTimeoutNs = idleTimeout.toNanos();
+        this.maxIdlePerHost = Math.max(1, maxIdlePerHost);
+    }
+
+    /**
+     * An attempt on the host starts.
+     *
+     * @return true if it is counted as reusing an idle connection
+     */
+    boolean acquire(String host) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            ArrayDeque<Long> pool = idle.get(host);
+            // oldest first: drop the expired ones, then take the most recently used
+            while (pool != null && !pool.isEmpty() && now - pool.peekFirst() > idleTimeoutNs) pool.pollFirst();
+            if (pool != null && !pool.isEmpty()) {
+                pool.pollLast();
+                reused++;
+                return true;
+            }
+            opened++;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * An attempt on the host has ended.
+     *
+     * @param reused    what {@link #acquire} answered for it
+     * @param attempted true if it sent a request
+     * @param keptAlive true if its connection went back to the pool (no transient failure)
+     */
+    void release(String host, boolean reused, boolean attempted, boolean keptAlive) {
+        if (attempted && !keptAlive) return;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (!attempted) {
+                if (reused) this.reused--;
+                else opened--;
+                if (!reused) return;
+            }
+            ArrayDeque<Long> pool = idle.computeIfAbsent(host, h -> new ArrayDeque<>());
+            pool.addLast(now);
+            if (pool.size() > maxIdlePerHost) pool.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long reused() {
+        lock.lock();
+        try {
+            return reused;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long opened() {
+        lock.lock();
+        try {
+            return opened;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,19 +1,28 @@
 package org.example.service.core;
 
 import org.slf4j.MDC;
-import org.example.domain.ReportEntity;
+import org.example.service.downloader.BandwidthShaper;
+import org.example.service.downloader.PdfStore;
 import org.example.service.downloader.PdfDownloader;
 import org.example.service.reader.ExcelReader;
+import org.example.service.report.ReportMerger;
 import org.example.service.report.ReportRepository;
+import org.example.service.report.ResultJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * ------------------------------------------------------------------------------------------------
@@ -28,12 +37,20 @@ import java.util.concurrent.*;
  * ------------------------------------------------------------------------------------------------
  * Flow:
  * 1) {@link ReportRepository#ensureReport(java.nio.file.Path)}.
- * 2) {@link ReportRepository#loadExistingBRnums(java.nio.file.Path)}.
- * 3) {@link ExcelReader#readRows(java.nio.file.Path)}.
+ * 2) {@link ReportRepository#loadExistingBRnums(java.nio.file.Path)}, optionally followed by the
+ * {@link HostWarmup} (DNS pre-resolution of the hosts still to download, connection warm-up) and the
+ * {@link LinkProbe} (HEAD probe of the rows to download, the largest files are started first).
+ * 3) {@link ExcelReader#streamRows(java.nio.file.Path)}, run through the staged {@link DownloadPipeline}:
  * 4) Skip rows whose BRnum is already present.
- * 5) {@link PdfDownloader#download(String, java.net.URL, java.net.URL, java.nio.file.Path)}.
- * 6) Build {@link org.example.domain.ReportEntity}.
- * 7) {@link ReportRepository#append(java.nio.file.Path, java.util.List)}.
+ * 5) {@link PdfDownloader#download(String, java.net.URL, java.net.URL, java.nio.file.Path)},
+ * retried with backoff on transient failures ({@link RetryPolicy}, {@link CircuitBreakers}).
+ * 6) Build {@link org.example.domain.ReportEntity} and journal it in batches ({@link ResultJournal}).
+ * 7) {@link ResultJournal#drainTo} -> {@link ReportRepository#append(java.nio.file.Path, java.util.List)}.
+ * 8) {@link ReportRepository#compact(java.nio.file.Path)}; a shard's own report only with
+ * {@link ReportRepository#compactIfDue(java.nio.file.Path)}, since the merge reads its pending rows.
+ * With checkLinksOnly the rows are only probed, and the results go to {@link #LINK_REPORT} instead.
+ * With shardCount > 1 the flow runs once per {@link Shard} this process claims ({@link ShardLeases}), each
+ * in its own directory, and the shard reports are merged into the report ({@link ReportMerger}).
  * ------------------------------------------------------------------------------------------------
  * Collaborators:
  * - {@link ExcelReader} (input)
@@ -44,6 +61,12 @@ import java.util.concurrent.*;
 
 public class ConverterService {
 
+    /**
+     * File name of the link-check report, written next to the report (with the report's extension if the
+     * report is not a workbook, e.g. "LinkCheck.jsonl").
+     */
+    public static final String LINK_REPORT = "LinkCheck.xlsx";
+
     private final Path excelPath;
     private final Path reportFile;
     private final Path downloadDir;
@@ -52,6 +75,20 @@ public class ConverterService {
     private final PdfDownloader pdfDownloader;
     private final ReportRepository reportRepository;
 
+    private final RunOptions options;
+    private final ResultJournal journal;
+    // part of the input this instance runs, null for all of it
+    private final Shard shard;
+    // report the shard reports are merged into, null unless this is a shard run
+    private final Path mergedReport;
+
+    // limiter of the run in progress, null between runs
+    private volatile ConcurrencyLimiter limiter;
+    // metrics of the run in progress or the last run
+    private volatile RunMetrics metrics;
+    // shard run in progress, null if none
+    private volatile ConverterService shardRun;
+
     private static final Logger log = LoggerFactory.getLogger(ConverterService.class);
 
     /**
@@ -72,6 +109,40 @@ public class ConverterService {
             ExcelReader excelReader,
             PdfDownloader pdfDownloader,
             ReportRepository reportRepository
+    ) {
+        this(excelPath, reportFile, downloadDir, excelReader, pdfDownloader, reportRepository, RunOptions.defaults());
+    }
+
+    /**
+     * Initializes service with dependencies and explicit run options.
+     *
+     * @param options tunables for this run (see {@link RunOptions})
+     */
+    public ConverterService(
+            Path excelPath,
+            Path reportFile,
+            Path downloadDir,
+            ExcelReader excelReader,
+            PdfDownloader pdfDownloader,
+            ReportRepository reportRepository,
+            RunOptions options
+    ) {
+        this(excelPath, reportFile, downloadDir, excelReader, pdfDownloader, reportRepository, options, null, null);
+    }
+
+    /**
+     * Run of one shard: its own report and download directory, and only the rows it owns.
+     */
+    private ConverterService(
+            Path excelPath,
+            Path reportFile,
+            Path downloadDir,
+            ExcelReader excelReader,
+            PdfDownloader pdfDownloader,
+            ReportRepository reportRepository,
+            RunOptions options,
+            Shard shard,
+            Path mergedReport
     ) {
         this.excelPath = excelPath;
         this.reportFile = reportFile;
@@ -79,6 +150,10 @@ public class ConverterService {
         this.excelReader = excelReader;
         this.pdfDownloader = pdfDownloader;
         this.reportRepository = reportRepository;
+        this.options = options;
+        this.journal = new ResultJournal(reportFile);
+        this.shard = shard;
+        this.mergedReport = mergedReport;
     }
 
 
@@ -86,15 +161,17 @@ public class ConverterService {
      * Executes the main workflow of the application.
      * Steps:
      * 1) Ensure report exists.
-     * 2) Load existing BRnums.
-     * 3) Read input rows from Excel.
-     * 4) Filter rows to process.
-     * 5) Create thread pool.
-     * 6) Submit download tasks.
-     * 7) Collect results.
-     * 8) Append new entries to report.
-     * 9) Log summary.
-     * 10) Shutdown thread pool.
+     * 2) Load existing BRnums (report + journal of an interrupted run); with dnsWarmup, resolve the
+     * hosts of the remaining rows ({@link HostWarmup}); with probeSizes, probe their sizes and move
+     * the largest to the front ({@link LinkProbe}).
+     * 3) Create executor (platform thread pool or virtual threads).
+     * 4-7) Run the {@link DownloadPipeline}: stream input rows from Excel, filter rows to process,
+     * download them and collect results into the journal as they finish, all stages at once.
+     * 8) Drain the journal into the report.
+     * 9) Compact pending entries into the report (a shard's report only once enough have piled up).
+     * 10) Log summary.
+     * 11) Shutdown executor.
+     * With checkLinksOnly, only {@link #checkLinks()} runs; with shardCount > 1, {@link #runShards()}.
      */
     public void execute() {
         MDC.put("tid", String.valueOf(Thread.currentThread().threadId()));
@@ -104,24 +181,59 @@ public class ConverterService {
         long startNs = System.nanoTime();
 
         try {
-            ensureReport();
-            Set<String> existing = loadExistingBRnums();
-            List<ExcelReader.InputRow> allRows = readInputRows();
-            List<ExcelReader.InputRow> workRows = prepareWork(allRows, existing);
-
-            if (workRows.isEmpty()) {
-                log.info("Nothing to do. Exiting.");
+            if (options.isCheckLinksOnly()) {
+                checkLinks();
                 return;
             }
+            if (shard == null && options.getShardCount() > 1) {
+                runShards();
+                return;
+            }
+            ensureReport();
+            Set<String> inReport = loadExistingBRnums();
+            Set<String> existing = withJournaled(inReport, journal);
+            DnsCache dns = options.isDnsWarmup() ? warmUp(existing) : null;
+            LinkProbe.Ranking ranking = options.isProbeSizes() ? probeSizes(existing) : null;
+
+            BandwidthShaper.global().setLimit(options.getMaxBytesPerSecond());
+            if (options.getMaxBytesPerSecond() > 0) {
+                log.info("Bandwidth cap: {}/s", RunMetrics.humanBytes(options.getMaxBytesPerSecond()));
+            }
 
             int poolSize = pickPoolSize();
-            ThreadPoolExecutor pool = buildPool(poolSize);
+            ConcurrencyLimiter runLimiter = buildLimiter(poolSize);
+            limiter = runLimiter;
+            ExecutorService pool = buildExecutor(runLimiter.adaptive() ? Math.max(poolSize, options.getMaxInFlight()) : poolSize);
+            RunMetrics runMetrics = RunMetrics.start(options.getMetricsLogInterval(), options.isJmx());
+            metrics = runMetrics;
+            PdfStore store = options.isContentStore() ? new PdfStore(downloadDir) : null;
 
             try {
-                RunResults results = runDownloads(workRows, pool);
-                appendIfAny(results.collected());
-                logSummary(results, pool, poolSize, Duration.ofNanos(System.nanoTime() - startNs));
+                DownloadPipeline.Results results;
+                try (Stream<ExcelReader.InputRow> allRows = ranking != null ? ranking.reorder(readInputRows()) : readInputRows();
+                     ResultSink sink = new ResultSink(journal, options.getJournalBatchSize(), options.getJournalFlushInterval(),
+                             runMetrics)) {
+                    results = new DownloadPipeline(options, downloadDir, pdfDownloader, pool, runLimiter, sink, runMetrics, dns,
+                            store)
+                            .run(allRows, wanted(existing));
+                }
+
+                long writeStart = System.nanoTime();
+                drainJournal(inReport);
+                // also when nothing was downloaded: the drain may have added the rows of an interrupted run
+                compactAfterRun();
+
+                if (results.ok() + results.fail() == 0) {
+                    log.info("Nothing to do. Exiting.");
+                    return;
+                }
+
+                runMetrics.recordReportWrite(System.nanoTime() - writeStart);
+                runMetrics.close();
+                logSummary(results, runMetrics, store, pool, Duration.ofNanos(System.nanoTime() - startNs));
             } finally {
+                limiter = null;
+                runMetrics.close();
                 shutdownPool(pool);
             }
         } finally {
@@ -130,6 +242,145 @@ public class ConverterService {
     }
 
 
+    /**
+     * Current limit on concurrent downloads of the run in progress.
+     *
+     * @return the limit, or 0 if no run is in progress
+     */
+    public int concurrencyLimit() {
+        ConverterService s = shardRun;
+        if (s != null) return s.concurrencyLimit();
+        ConcurrencyLimiter l = limiter;
+        return l != null ? l.limit() : 0;
+    }
+
+    /**
+     * Change the cap on the download rate of this process while a run goes on (also possible via JMX).
+     *
+     * @param bytesPerSecond new cap, 0 for none
+     */
+    public void setBandwidthLimit(long bytesPerSecond) {
+        BandwidthShaper.global().setLimit(bytesPerSecond);
+    }
+
+    /**
+     * Metrics of the run in progress, or of the last run once it has finished.
+     *
+     * @return the metrics, or null if {@link #execute()} has not been called
+     */
+    public RunMetrics metrics() {
+        ConverterService s = shardRun;
+        return s != null && s.metrics() != null ? s.metrics() : metrics;
+    }
+
+    /**
+     * Write the report as a styled workbook, for report backends that do not keep one (JSON Lines, CSV).
+     * Entries still in the journal of an interrupted run are not included until a run drains it.
+     *
+     * @param xlsxFile workbook to write, e.g. Report.xlsx next to the report
+     * @return number of entries exported
+     */
+    public long exportXlsx(Path xlsxFile) {
+        return reportRepository.exportXlsx(reportFile, xlsxFile);
+    }
+
+    /**
+     * Fold all pending entries into the report now. A run does this at its end; this is for rows a merge
+     * of shard reports left pending ({@link #mergeShards()}).
+     */
+    public void compactReport() {
+        long t0 = System.nanoTime();
+        reportRepository.compact(reportFile);
+        log.info("[REPORT] Compaction finished in {} ms", (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /**
+     * Merge the reports of the shards finished so far into the report. Only adds what is not in the report
+     * yet, so it can be run while shards are still running and again once they are done.
+     */
+    public void mergeShards() {
+        mergeShards(new ShardLeases(Shard.root(downloadDir), options.getShardCount(), options.getLeaseTimeout()), false);
+    }
+
+    /**
+     * Sharded run: claim shards and run each like a normal run; the process that finds every shard done
+     * afterwards merges the shard reports. With shardIndex -1 this process keeps claiming free shards (and
+     * shards whose owner stopped sending heartbeats) until none is left, so a few processes can work through
+     * more shards than there are processes.
+     */
+    private void runShards() {
+        int count = options.getShardCount();
+        ShardLeases leases = new ShardLeases(Shard.root(downloadDir), count, options.getLeaseTimeout());
+        log.info("[SHARD] Sharded run: {} shards by {}, this process is {}", count, options.getShardBy(), leases.owner());
+
+        if (options.getShardIndex() >= 0) {
+            Shard s = new Shard(options.getShardIndex(), count);
+            ShardLeases.Lease lease = leases.claim(s);
+            if (lease == null) log.info("[SHARD] {} is done or held by another process", s);
+            else runShard(lease);
+        } else {
+            ShardLeases.Lease lease;
+            while (!Thread.currentThread().isInterrupted() && (lease = leases.claimNext()) != null) runShard(lease);
+        }
+
+        List<Shard> open = leases.unfinished();
+        if (!open.isEmpty()) {
+            log.info("[SHARD] {} of {} shards not done yet {}; the process finishing the last one merges",
+                    open.size(), count, open);
+            return;
+        }
+        if (options.isMergeShards()) mergeShards(leases, true);
+    }
+
+    /**
+     * Run the claimed shard and mark it done, unless the run was interrupted.
+     */
+    private void runShard(ShardLeases.Lease lease) {
+        Shard s = lease.shard();
+        try (lease) {
+            log.info("[SHARD] Running {} in {}", s, s.dir(downloadDir));
+            ConverterService run = new ConverterService(excelPath, s.report(downloadDir, reportFile), s.dir(downloadDir),
+                    excelReader, pdfDownloader, reportRepository, options, s, reportFile);
+            shardRun = run;
+            try {
+                run.execute();
+            } finally {
+                metrics = run.metrics();
+                shardRun = null;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                log.warn("[SHARD] {} interrupted, not marked done", s);
+                return;
+            }
+            lease.done(metrics != null ? "outcomes=" + metrics.getOutcomes() : "nothing to do");
+            log.info("[SHARD] {} done", s);
+        }
+    }
+
+    /**
+     * Merge the reports of the finished shards into the report, unless another process is merging.
+     *
+     * @param compact fold the merged rows into the report as well, while holding the merge lease
+     */
+    private void mergeShards(ShardLeases leases, boolean compact) {
+        ShardLeases.Lease lease = leases.claimMerge();
+        if (lease == null) {
+            log.info("[SHARD] Another process is merging the shard reports");
+            return;
+        }
+        try (lease) {
+            int count = options.getShardCount();
+            List<Path> reports = IntStream.range(0, count)
+                    .mapToObj(i -> new Shard(i, count))
+                    .filter(leases::isDone)
+                    .map(s -> s.report(downloadDir, reportFile))
+                    .toList();
+            log.info("[SHARD] Merging {} of {} shard reports into {}", reports.size(), count, reportFile);
+            ReportMerger.merge(reports, reportFile, reportRepository);
+            if (compact) compactReport();
+        }
+    }
+
     /**
      * Ensures the report file exists, creating it if it doesn't exist.
      */
@@ -147,59 +398,241 @@ public class ConverterService {
     private Set<String> loadExistingBRnums() {
         Set<String> existing = reportRepository.loadExistingBRnums(reportFile);
         log.info("Existing BRnums in report: {}", existing.size());
-        return existing;
+        if (mergedReport == null || !Files.exists(mergedReport)) return existing;
+
+        // rows already in the merged report (an earlier run, or an earlier merge) are not redone by the shard
+        Set<String> inMerged = reportRepository.loadExistingBRnums(mergedReport);
+        log.info("Existing BRnums in merged report {}: {}", mergedReport, inMerged.size());
+        return union(existing, inMerged);
     }
 
     /**
-     * Read all rows from the Excel input file.
+     * Add BRnums journaled by an interrupted run, so they are skipped as well.
      *
-     * @return list of input rows
+     * @param inReport BRnums already in the report
+     * @param journal  journal of that report
+     * @return BRnums to skip this run
+     */
+    private static Set<String> withJournaled(Set<String> inReport, ResultJournal journal) {
+        Set<String> journaled = journal.loadBRnums();
+        if (journaled.isEmpty()) return inReport;
+
+        log.info("[JOURNAL] Resuming: {} BRnums already done in {}", journaled.size(), journal.path().getFileName());
+        return union(inReport, journaled);
+    }
+
+    /**
+     * A view rather than a copy: the report's BRnums come from a compact index, a HashSet would undo that.
      */
-    private List<ExcelReader.InputRow> readInputRows() {
-        List<ExcelReader.InputRow> rows = excelReader.readRows(excelPath);
-        log.info("Loaded rows from Excel: {}", rows.size());
-        return rows;
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object o) {
+                return a.contains(o) || b.contains(o);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return Stream.concat(a.stream(), b.stream().filter(br -> !a.contains(br))).iterator();
+            }
+
+            @Override
+            public int size() {
+                return a.size() + (int) b.stream().filter(br -> !a.contains(br)).count();
+            }
+        };
+    }
+
+    /**
+     * Resolve the hosts of the rows still to download, in parallel, before the downloads start.
+     * Costs one extra pass over the input; if it is interrupted, the run goes on with what was resolved.
+     *
+     * @param existing BRnums already processed (their rows are not looked at)
+     * @return cache the download tasks consult for unresolvable hosts
+     */
+    private DnsCache warmUp(Set<String> existing) {
+        DnsCache dns = new DnsCache(options.getDnsCacheTtl(), options.getDnsCacheSize());
+        try (Stream<ExcelReader.InputRow> rows = excelReader.streamRows(excelPath)) {
+            HostWarmup.run(rows, wanted(existing), dns, pdfDownloader, options);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.warn("[WARMUP] Interrupted after {} hosts were looked up", dns.size());
+        }
+        return dns;
+    }
+
+    /**
+     * Probe the sizes of the rows still to download and pick the largest to start first.
+     * Costs one extra pass over the input; if it is interrupted, the run downloads in input order.
+     *
+     * @param existing BRnums already processed (their rows are not probed)
+     * @return the rows to start first, or null if interrupted
+     */
+    private LinkProbe.Ranking probeSizes(Set<String> existing) {
+        try (Stream<ExcelReader.InputRow> rows = excelReader.streamRows(excelPath)) {
+            return LinkProbe.largestFirst(rows, wanted(existing), pdfDownloader, options);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.warn("[PROBE] Interrupted, downloading in input order");
+            return null;
+        }
+    }
+
+    /**
+     * Check-links-only run: probe every row not yet in {@link #LINK_REPORT} and record it there, without
+     * downloading. Resumable like a download run (own journal); delete the link report to check all rows again.
+     * The main report is not touched, so a later download run still processes every row.
+     */
+    private void checkLinks() {
+        long startNs = System.nanoTime();
+        Path linkReport = linkReportFile();
+        log.info("Checking links only, results go to: {}", linkReport);
+        reportRepository.ensureReport(linkReport);
+        ResultJournal linkJournal = new ResultJournal(linkReport);
+        Set<String> inReport = reportRepository.loadExistingBRnums(linkReport);
+        log.info("BRnums already checked: {}", inReport.size());
+        Set<String> done = withJournaled(inReport, linkJournal);
+
+        LinkProbe.Stats stats;
+        try (Stream<ExcelReader.InputRow> rows = readInputRows();
+             ResultSink sink = new ResultSink(linkJournal, options.getJournalBatchSize(), options.getJournalFlushInterval())) {
+            stats = LinkProbe.checkLinks(rows, wanted(done), pdfDownloader, options, sink::accept);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.warn("Link check interrupted; the rows checked so far are journaled and kept next run", ie);
+            return;
+        }
+
+        int n = linkJournal.drainTo(reportRepository, linkReport, inReport);
+        reportRepository.compact(linkReport);
+        log.info("""
+                        
+                        ===============================================================================
+                        ✅ Finished link check
+                        - Checked                 : {}
+                        - Entries written         : {}
+                        - Elapsed                 : {} seconds
+                        - Link report path        : {}
+                        ===============================================================================
+                        """,
+                stats, n, Duration.ofNanos(System.nanoTime() - startNs).toSeconds(), linkReport);
+    }
+
+    private Path linkReportFile() {
+        String name = reportFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String ext = dot > 0 ? name.substring(dot) : "";
+        return reportFile.resolveSibling(ext.isEmpty() || ext.equalsIgnoreCase(".xlsx")
+                ? LINK_REPORT : "LinkCheck" + ext);
+    }
+
+    /**
+     * Open a lazy stream over the rows of the Excel input file.
+     * Rows are parsed on demand, so downloads can start before the whole sheet is read.
+     *
+     * @return stream of input rows (caller must close)
+     */
+    private Stream<ExcelReader.InputRow> readInputRows() {
+        log.info("Streaming rows from Excel: {}", excelPath);
+        return excelReader.streamRows(excelPath);
     }
 
     /**
      * Filter out rows that:
      * - have no URL
      * - or their BRnum already exists in the report
+     * - or belong to another shard
      *
-     * @param rows     all rows read from Excel
      * @param existing BRnums already processed
-     * @return rows that should be processed
+     * @return test for rows that should be processed
      */
-    private List<ExcelReader.InputRow> prepareWork(List<ExcelReader.InputRow> rows, Set<String> existing) {
-        List<ExcelReader.InputRow> work = rows.stream()
-                .filter(r -> (r.pdfUrl() != null || r.htmlUrl() != null) && (r.BRnum() == null || !existing.contains(r.BRnum())))
-                .toList();
-        log.info("Prepared {} rows with at least one URL", work.size());
-        return work;
+    private Predicate<ExcelReader.InputRow> wanted(Set<String> existing) {
+        return r -> (r.pdfUrl() != null || r.htmlUrl() != null) && (r.BRnum() == null || !existing.contains(r.BRnum()))
+                && (shard == null || shard.owns(r, options.getShardBy()));
     }
 
     /**
      * Pick pool size based on CPU cores.
      * Ensures at least 4 and at most 6 threads.
+     * In virtual-thread and async mode the size is the configured permit limit instead.
+     * With an adaptive limit this is only the starting point, in every mode.
      *
-     * @return number of threads
+     * @return number of threads (or permits)
      */
     private int pickPoolSize() {
+        if (!options.isAdaptiveConcurrency() && options.getExecutionMode() != RunOptions.ExecutionMode.PLATFORM) {
+            int permits = Math.max(1, options.getMaxInFlight());
+            log.info("Download concurrency ({}): {} permits", options.getExecutionMode(), permits);
+            return permits;
+        }
         int cores = Runtime.getRuntime().availableProcessors();
         int size = Math.max(4, Math.min(6, cores));
+        if (options.isAdaptiveConcurrency()) {
+            log.info("Download concurrency ({}): adaptive, starting at {} (min {}, max {})", options.getExecutionMode(),
+                    size, options.getMinInFlight(), Math.max(size, options.getMaxInFlight()));
+            return size;
+        }
         log.info("Download thread pool size: {}", size);
         return size;
     }
 
+    /**
+     * Build the limiter on concurrent downloads: adaptive between {@code minInFlight} and
+     * {@code maxInFlight}, or fixed at {@code initial}.
+     *
+     * @param initial starting limit (see {@link #pickPoolSize()})
+     * @return limiter consulted by the {@link HostScheduler}
+     */
+    private ConcurrencyLimiter buildLimiter(int initial) {
+        if (!options.isAdaptiveConcurrency()) return ConcurrencyLimiter.fixed(initial);
+        return new ConcurrencyLimiter(initial, Math.min(initial, options.getMinInFlight()),
+                Math.max(initial, options.getMaxInFlight()));
+    }
+
+    /**
+     * Build the executor for the configured execution mode.
+     *
+     * @param size thread count (platform) or permit limit (virtual/async)
+     * @return executor running the download tasks
+     */
+    private ExecutorService buildExecutor(int size) {
+        return switch (options.getExecutionMode()) {
+            case VIRTUAL -> buildVirtualExecutor();
+            // async tasks only start transfers, so a CPU-sized pool is plenty
+            case ASYNC -> buildPool(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+            case PLATFORM -> buildPool(size);
+        };
+    }
+
+    /**
+     * Build an executor that starts one named virtual thread per task.
+     * Concurrency is not bounded here; the {@link HostScheduler} of the {@link DownloadPipeline} only
+     * dispatches up to {@code maxInFlight} tasks at a time.
+     *
+     * @return thread-per-task executor on virtual threads
+     */
+    private ExecutorService buildVirtualExecutor() {
+        ThreadFactory tf = Thread.ofVirtual()
+                .name("vdl-", 1)
+                .uncaughtExceptionHandler((th, ex) ->
+                        log.error("Uncaught in {}: {}", th.getName(), ex.toString(), ex))
+                .factory();
+        return Executors.newThreadPerTaskExecutor(tf);
+    }
+
     /**
      * Build a fixed-size thread pool with custom thread naming and uncaught-exception logging.
-     * Uses CallerRunsPolicy to apply back-pressure on the caller when the queue is full.
+     * The queue is unbounded but never grows past the concurrency limit: the {@link HostScheduler} only
+     * hands over tasks it has a slot for, and holds everything else in its own bounded backlog.
+     * No CallerRunsPolicy, so the submitting thread never ends up downloading itself.
+     * Threads are started on demand and idle ones time out, so an adaptive limit well below the pool
+     * size does not keep threads around.
      *
      * @param size size number of threads
      * @return configured ThreadPoolExecutor
      */
     private ThreadPoolExecutor buildPool(int size) {
-        BlockingQueue<Runnable> q = new ArrayBlockingQueue<>(1024);
+        BlockingQueue<Runnable> q = new LinkedBlockingQueue<>();
         ThreadFactory tf = r -> {
             Thread t = new Thread(r);
             t.setName("dl-" + t.threadId());
@@ -207,100 +640,107 @@ public class ConverterService {
                     log.error("Uncaught in {}: {}", th.getName(), ex.toString(), ex));
             return t;
         };
-        return new ThreadPoolExecutor(size, size, 30, TimeUnit.SECONDS, q, tf, new ThreadPoolExecutor.CallerRunsPolicy());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 30, TimeUnit.SECONDS, q, tf);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 
     /**
-     * Submit download tasks to the pool and collect results.
-     * Logs success/failure of each task.
+     * Move journaled entries (this run and any interrupted run) into the report.
      *
-     * @param work rows to process
-     * @param pool thread pool to use
-     * @return RunResults with counts and collected report entries
-     */
-    private RunResults runDownloads(List<ExcelReader.InputRow> work, ThreadPoolExecutor pool) {
-        var cs = new ExecutorCompletionService<ReportEntity>(pool);
-
-        for (int i = 0; i < work.size(); i++) {
-            var row = work.get(i);
-            int seq = i + 1;
-            Path target = downloadDir.resolve("file_" + seq + ".pdf");
-            log.info("Prepared task {}/{} for BRnum={} (row={})",
-                    seq, work.size(), row.BRnum(), row.rowIndex());
-            cs.submit(new DownloadTask(seq, row, target, pdfDownloader));
-        }
-
-        int ok = 0, fail = 0;
-        List<ReportEntity> collected = new ArrayList<>();
-
-        for (int i = 0; i < work.size(); i++) {
-            try {
-                ReportEntity re = cs.take().get();
-                collected.add(re);
-                if ("success".equalsIgnoreCase(re.getStatus())) {
-                    ok++;
-                    log.info("({}/{}) BRnum={} | SUCCESS -> {}", i + 1, work.size(), re.getBRnum(),
-                            re.getUrl() != null ? re.getUrl() : "(no URL)");
-                } else {
-                    fail++;
-                    log.error("({}/{}) BRnum={} | FAILED -> {}", i + 1, work.size(), re.getBRnum(),
-                            re.getErrorMessage() != null ? re.getErrorMessage() : re.getReason());
-                }
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                fail++;
-                log.warn("Interrupted while waiting for task", ie);
-            } catch (ExecutionException ee) {
-                fail++;
-                log.error("Task failed: {}", ee.getCause() != null ? ee.getCause().toString() : ee.toString(), ee);
-            }
+     * @param inReport BRnums that were already in the report, skipped to avoid duplicates
+     */
+    private void drainJournal(Set<String> inReport) {
+        int n = journal.drainTo(reportRepository, reportFile, inReport);
+        if (n == 0) {
+            log.info("[REPORT] No new entries.");
+            return;
         }
-
-        return new RunResults(ok, fail, collected);
+        log.info("[REPORT] Appended {} entries from journal.", n);
     }
 
     /**
-     * Append new report entries if there are any.
-     *
-     * @param list entries to append
+     * Fold pending entries into the report file (no-op for backends that write directly). A shard's report
+     * only once enough have piled up: the merge reads its pending entries as well.
      */
-    private void appendIfAny(List<ReportEntity> list) {
-        if (list.isEmpty()) {
-            log.info("[REPORT] No new entries.");
-            return;
-        }
-        log.info("[REPORT] Appending {} entries…", list.size());
-        reportRepository.append(reportFile, list);
-        log.info("[REPORT] Done.");
+    private void compactAfterRun() {
+        long t0 = System.nanoTime();
+        if (shard != null) reportRepository.compactIfDue(reportFile);
+        else reportRepository.compact(reportFile);
+        log.info("[REPORT] Compaction finished in {} ms", (System.nanoTime() - t0) / 1_000_000);
     }
 
     /**
-     * Print summary of run: thread stats, counts, timing, report path.
+     * Print summary of run: thread stats, counts, latency percentiles, throughput, timing, report path.
      *
-     * @param rr       run results
-     * @param pool     thread pool
-     * @param poolSize configured thread count
-     * @param elapsed  total elapsed time
+     * @param rr      run results
+     * @param m       metrics of the run
+     * @param store   content store of the run, or null
+     * @param pool    executor
+     * @param elapsed total elapsed time
      */
-    private void logSummary(RunResults rr, ThreadPoolExecutor pool, int poolSize, Duration elapsed) {
+    private void logSummary(DownloadPipeline.Results rr, RunMetrics m, PdfStore store, ExecutorService pool,
+                            Duration elapsed) {
         log.info("""
                         
                         ===============================================================================
                         ✅ Finished PDF run
+                        - Execution mode          : {}
                         - Max threads allowed     : {}
                         - Threads actually spawned: {}
+                        - Concurrency limit       : {}
+                        - Limit over time         : {}
                         - Total rows considered   : {}
                         - Downloads succeeded     : {}
                         - Downloads failed        : {}
+                        - Not modified (304)      : {}
+                        - Retries scheduled       : {} ({} rows retried)
+                        - Circuit breakers tripped: {}
+                        - Outcomes                : {}
+                        - Download latency        : {}
+                        - Slowest hosts (p95)     : {}
+                        - Downloaded              : {} ({}/s)
+                        - Bandwidth cap           : {}
+                        - Content store           : {}
+                        - Journal flush latency   : {}
+                        - Report write            : {} ms
+                        - Connection reuse (est.) : {}
+                        - Hosts                   : {}
+                        - Most waited-on hosts    : {}
                         - Elapsed                 : {} seconds
                         - Report path             : {}
                         ===============================================================================
                         """,
-                poolSize,
-                pool.getLargestPoolSize(),
-                rr.ok + rr.fail,
-                rr.ok,
-                rr.fail,
+                options.getExecutionMode(),
+                rr.limit().max(),
+                pool instanceof ThreadPoolExecutor tpe ? tpe.getLargestPoolSize() : rr.peakInFlight(),
+                rr.limit(),
+                rr.limit().trail(20),
+                rr.ok() + rr.fail(),
+                rr.ok(),
+                rr.fail(),
+                rr.cacheHits(),
+                rr.retries(),
+                rr.retriedRows(),
+                rr.breakers().isEmpty() ? "none" : rr.breakers(),
+                m.getOutcomes(),
+                m.latency(),
+                m.slowestHosts(3),
+                RunMetrics.humanBytes(m.getBytesDownloaded()),
+                RunMetrics.humanBytes((long) m.getBytesPerSecond()),
+                m.getBandwidthLimit() > 0 ? String.format("%s/s (held back %d ms)",
+                        RunMetrics.humanBytes(m.getBandwidthLimit()), m.getBandwidthWaitMs()) : "none",
+                store != null ? String.format("%d files stored, %d duplicates kept once (%s saved)", store.stored(),
+                        store.deduplicated(), RunMetrics.humanBytes(store.bytesSaved())) : "off",
+                m.journalFlush(),
+                m.getReportWriteMs(),
+                String.format("%.0f%% (%d of %d requests, host order %s)", m.getConnectionReuseRatio() * 100,
+                        m.getRequestsOnReusedConnections(), m.getRequestsOnReusedConnections() + m.getConnectionsOpened(),
+                        options.getHostOrder()),
+                rr.hosts().size(),
+                rr.hosts().stream()
+                        .sorted(Comparator.comparingLong(HostScheduler.HostStats::totalWaitMs).reversed())
+                        .limit(3).toList(),
                 elapsed.toSeconds(),
                 reportFile
         );
@@ -310,9 +750,9 @@ public class ConverterService {
      * Gracefully shutdown the thread pool.
      * Fallback to force shutdown if termination times out.
      *
-     * @param pool thread pool
+     * @param pool executor
      */
-    private void shutdownPool(ThreadPoolExecutor pool) {
+    private void shutdownPool(ExecutorService pool) {
         log.info("Shutting down thread pool…");
         pool.shutdown();
         try {
@@ -328,8 +768,4 @@ public class ConverterService {
             log.warn("Interrupted while awaiting termination", ie);
         }
     }
-
-    private record RunResults(int ok, int fail, List<ReportEntity> collected) {
-    }
 }
-
@@ -0,0 +1,121 @@
+package org.example.service.core;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * DnsCache remembers which hosts of a run resolve, so rows for a host that does not exist fail at once
+ * instead of each waiting for the resolver. Unresolvable hosts are kept for at most a minute.
+ */
+
+class DnsCache {
+
+    private static final Duration MAX_NEGATIVE_TTL = Duration.ofMinutes(1);
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxEntries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> entries;
+
+    /**
+     * @param ttl        how long a resolved host is trusted
+     * @param maxEntries hosts kept before the least recently used is evicted
+     */
+    DnsCache(Duration ttl, int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = Math.min(ttlNanos, MAX_NEGATIVE_TTL.toNanos());
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DnsCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Answer for one host.
+     *
+     * @param addresses resolved addresses (empty if unresolvable)
+     * @param error     why the lookup failed, or null
+     */
+    record Resolution(List<InetAddress> addresses, String error) {
+
+        boolean resolved() {
+            return !addresses.isEmpty();
+        }
+    }
+
+    /**
+     * Resolves a host, from the cache while its entry is fresh.
+     */
+    Resolution resolve(String host) {
+        Entry cached = fresh(host);
+        if (cached != null) return cached.resolution;
+
+        Resolution r;
+        try {
+            r = new Resolution(List.of(InetAddress.getAllByName(host)), null);
+        } catch (UnknownHostException e) {
+            r = new Resolution(List.of(), e.getMessage() != null ? e.getMessage() : host);
+        } catch (RuntimeException e) {
+            // e.g. a malformed IPv6 literal
+            r = new Resolution(List.of(), e.toString());
+        }
+        long now = System.nanoTime();
+        Entry entry = new Entry(r, now + (r.resolved() ? ttlNanos : negativeTtlNanos));
+        lock.lock();
+        try {
+            entries.put(host, entry);
+        } finally {
+            lock.unlock();
+        }
+        return r;
+    }
+
+    /**
+     * True if the host was looked up and did not resolve. Hosts never looked up count as resolvable;
+     * a negative answer that has expired is looked up again (by the calling thread).
+     */
+    boolean unresolvable(String host) {
+        if (host == null || host.isEmpty()) return false;
+        Entry e;
+        lock.lock();
+        try {
+            e = entries.get(host);
+        } finally {
+            lock.unlock();
+        }
+        if (e == null || e.resolution.resolved()) return false;
+        if (e.expiresNs - System.nanoTime() > 0) return true;
+        return !resolve(host).resolved();
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry fresh(String host) {
+        lock.lock();
+        try {
+            Entry e = entries.get(host);
+            return e != null && e.expiresNs - System.nanoTime() > 0 ? e : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry(Resolution resolution, long expiresNs) {
+    }
+}
@@ -0,0 +1,381 @@
+package org.example.service.core;
+
+import org.example.domain.ReportEntity;
+import org.example.service.downloader.PdfDownloader;
+import org.example.service.downloader.PdfStore;
+import org.example.service.reader.ExcelReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * DownloadPipeline runs the download phase of a {@link ConverterService} run as read, filter, download and
+ * persist stages connected by bounded buffers, so memory stays flat whatever the input size.
+ */
+
+class DownloadPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(DownloadPipeline.class);
+
+    /**
+     * Rows handed from read to filter in one go, so 1M-row inputs do not pay a handoff per row.
+     */
+    private static final int READ_BATCH = 64;
+
+    private static final Future<ReportEntity> END = CompletableFuture.completedFuture(null);
+
+    private final RunOptions options;
+    private final Path downloadDir;
+    private final PdfDownloader downloader;
+    private final ExecutorService pool;
+    private final ConcurrencyLimiter limiter;
+    private final ResultSink sink;
+    private final RunMetrics metrics;
+    private final CircuitBreakers breakers;
+    private final DnsCache dns;
+    private final PdfStore store;
+
+    private final BlockingQueue<List<ExcelReader.InputRow>> rows;
+    private final Semaphore window;
+    private final BlockingQueue<Future<ReportEntity>> completed = new LinkedBlockingQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private HostScheduler scheduler;
+    private List<Thread> producers = List.of();
+    private volatile int submitted;
+    private volatile boolean filterDone;
+
+    /**
+     * @param options     tunables of the run
+     * @param downloadDir directory the PDFs are written to
+     * @param downloader  downloads one row
+     * @param pool        executor running the download tasks
+     * @param limiter     limit on concurrent downloads
+     * @param sink        batches finished entries into the journal
+     * @param metrics     metrics of the run
+     * @param dns         hosts found during the warm-up, so unresolvable ones fail fast (null = no warm-up)
+     * @param store       content store the downloads are moved into (null = "file_N.pdf" per row)
+     */
+    DownloadPipeline(RunOptions options, Path downloadDir, PdfDownloader downloader, ExecutorService pool,
+                     ConcurrencyLimiter limiter, ResultSink sink, RunMetrics metrics, DnsCache dns, PdfStore store) {
+        this.options = options;
+        this.downloadDir = downloadDir;
+        this.downloader = downloader;
+        this.pool = pool;
+        this.limiter = limiter;
+        this.sink = sink;
+        this.metrics = metrics;
+        this.dns = dns;
+        this.store = store;
+        this.breakers = new CircuitBreakers(options.getBreakerFailureThreshold(), options.getBreakerOpenDuration());
+        this.rows = new ArrayBlockingQueue<>(Math.max(1, options.getRowBuffer() / READ_BATCH));
+        this.window = new Semaphore(Math.max(1, options.getMaxQueued()) + Math.max(1, options.getMaxInFlight()));
+    }
+
+    /**
+     * Runs all stages until every wanted row has been downloaded and written to the sink.
+     *
+     * @param input  lazily produced input rows (closed by the caller)
+     * @param wanted rows that should be downloaded
+     * @return counts and statistics of the run
+     */
+    Results run(Stream<ExcelReader.InputRow> input, Predicate<ExcelReader.InputRow> wanted) {
+        int hostBatch = options.getHostOrder() == RunOptions.HostOrder.AFFINITY ? options.getHostBatchSize() : 1;
+        try (HostScheduler s = new HostScheduler(pool, limiter, options.getMaxPerHost(),
+                options.getPerHostRatePerSecond(), options.getMaxQueued(), hostBatch)) {
+            scheduler = s;
+            metrics.bindGauges(inFlight::get, s::queued, limiter::limit);
+            Persisted persisted = new Persisted();
+
+            Thread reader = stage("pipe-read", () -> read(input));
+            Thread filter = stage("pipe-filter", () -> filter(wanted));
+            Thread persister = stage("pipe-persist", () -> persist(persisted));
+            producers = List.of(reader, filter);
+            List<Thread> stages = List.of(reader, filter, persister);
+            stages.forEach(Thread::start);
+            try {
+                for (Thread t : stages) t.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while downloading, stopping the pipeline", ie);
+                stages.forEach(Thread::interrupt);
+            }
+
+            Throwable t = failure.get();
+            if (t instanceof RuntimeException re) throw re;
+            if (t instanceof Error e) throw e;
+
+            return new Results(persisted.ok, persisted.fail, persisted.cacheHits, peakInFlight.get(), s.snapshot(),
+                    retries.get(), persisted.retriedRows, breakers.snapshot(), limiter.stats());
+        }
+    }
+
+    // ---------------------------------------------------------------- stages
+
+    /**
+     * Read stage: moves rows from the stream into the row buffer; an empty batch marks the end.
+     */
+    private void read(Stream<ExcelReader.InputRow> input) throws InterruptedException {
+        try {
+            List<ExcelReader.InputRow> batch = new ArrayList<>(READ_BATCH);
+            for (var it = input.iterator(); it.hasNext(); ) {
+                batch.add(it.next());
+                if (batch.size() == READ_BATCH) {
+                    if (!hand(batch)) return;
+                    batch = new ArrayList<>(READ_BATCH);
+                }
+            }
+            if (!batch.isEmpty()) hand(batch);
+        } finally {
+            hand(List.of());
+        }
+    }
+
+    /**
+     * Puts a batch into the row buffer, waiting while it is full.
+     *
+     * @return false if the filter stage has stopped, so nobody will take it
+     */
+    private boolean hand(List<ExcelReader.InputRow> batch) throws InterruptedException {
+        while (!rows.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (filterDone) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Filter stage: keeps wanted rows, waits for room in the window and hands each to the scheduler.
+     */
+    private void filter(Predicate<ExcelReader.InputRow> wanted) throws InterruptedException {
+        int count = 0;
+        try {
+            for (List<ExcelReader.InputRow> batch = rows.take(); !batch.isEmpty(); batch = rows.take()) {
+                for (ExcelReader.InputRow row : batch) {
+                    if (!wanted.test(row)) continue;
+                    window.acquire();
+                    int seq = count + 1;
+                    // with a store, a staging file per row: stable across runs and never another row's file
+                    Path target = store != null
+                            ? downloadDir.resolve(".incoming-r" + row.rowIndex() + ".pdf")
+                            : downloadDir.resolve("file_" + seq + ".pdf");
+                    log.info("Prepared task {} for BRnum={} (row={})", seq, row.BRnum(), row.rowIndex());
+                    DownloadTask task = DownloadTask.builder()
+                            .sequence(seq)
+                            .row(row)
+                            .targetFile(target)
+                            .downloader(downloader)
+                            .breakers(breakers)
+                            .dns(dns)
+                            .store(store)
+                            .build();
+
+                    String host = HostScheduler.hostOf(row.pdfUrl() != null ? row.pdfUrl() : row.htmlUrl());
+                    dispatch(host, task, 0);
+                    count++;
+                    submitted = count;
+                }
+            }
+            log.info("Prepared {} rows with at least one URL", count);
+        } finally {
+            // if this stage failed, do not leave the reader waiting for room
+            filterDone = true;
+            completed.add(END);
+        }
+    }
+
+    /**
+     * Persist stage: writes finished entries to the sink as they arrive and frees their window slot.
+     */
+    private void persist(Persisted p) throws InterruptedException {
+        boolean allSubmitted = false;
+        int handled = 0;
+        while (!allSubmitted || handled < submitted) {
+            Future<ReportEntity> next = completed.take();
+            if (next == END) {
+                allSubmitted = true;
+                continue;
+            }
+            handled++;
+            try {
+                ReportEntity re = next.get();
+                sink.accept(re);
+                p.add(re, handled, allSubmitted ? submitted : -1);
+                boolean ok = "success".equalsIgnoreCase(re.getStatus());
+                metrics.recordOutcome(ok, ok ? (re.isCacheHit() ? "not modified" : "success") : re.getReason());
+            } catch (ExecutionException ee) {
+                p.fail++;
+                metrics.recordOutcome(false, "task failed");
+                log.error("Task failed: {}", ee.getCause() != null ? ee.getCause().toString() : ee.toString(), ee);
+            } finally {
+                window.release();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- download stage
+
+    /**
+     * Hand one attempt of a task to the scheduler, right away (blocking while the backlog is full)
+     * or after {@code delayMs} on the scheduler's delay queue (never blocking).
+     */
+    private void dispatch(String host, DownloadTask task, long delayMs) throws InterruptedException {
+        if (options.getExecutionMode() == RunOptions.ExecutionMode.ASYNC) {
+            Supplier<CompletableFuture<ReportEntity>> start = () -> {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                boolean warm = metrics.connections().acquire(host);
+                CompletableFuture<ReportEntity> f;
+                try {
+                    f = task.callAsync();
+                } catch (RuntimeException e) {
+                    f = CompletableFuture.failedFuture(e);
+                }
+                CompletableFuture<ReportEntity> started = f;
+                started.whenComplete((re, ex) -> {
+                    inFlight.decrementAndGet();
+                    metrics.connections().release(host, warm, task.attempted(), !task.congested());
+                    onAttemptDone(host, task, started);
+                });
+                return started;
+            };
+            if (delayMs > 0) scheduler.submitAsyncLater(host, start, delayMs);
+            else scheduler.submitAsync(host, start);
+            return;
+        }
+
+        FutureTask<ReportEntity> attempt = new FutureTask<>(() -> {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            boolean warm = metrics.connections().acquire(host);
+            try {
+                return task.call();
+            } finally {
+                inFlight.decrementAndGet();
+                metrics.connections().release(host, warm, task.attempted(), !task.congested());
+            }
+        }) {
+            @Override
+            protected void done() {
+                onAttemptDone(host, task, this);
+            }
+        };
+        if (delayMs > 0) scheduler.submitLater(host, attempt, delayMs);
+        else scheduler.submit(host, attempt);
+    }
+
+    /**
+     * Called when an attempt finishes: feed it to the concurrency limiter, then retry it after a jittered
+     * backoff (added on top of the time until the host's breaker lets a probe through) if the failure
+     * was transient and attempts are left, otherwise hand the result to the persist stage.
+     */
+    private void onAttemptDone(String host, DownloadTask task, Future<ReportEntity> result) {
+        // rows refused by a breaker sent no request and say nothing about capacity
+        if (task.attempted()) {
+            limiter.onSample(task.latencyNs(), task.congested(), inFlight.get() + 1);
+            metrics.recordDownload(host, task.latencyNs(), task.bytes());
+        }
+        RetryPolicy policy = options.getRetryPolicy();
+        if (task.retryable() && policy.allowsRetry(task.calls())) {
+            // behind an open breaker: come back after it half-opens, spread out so the probe goes first
+            long delayMs = task.retryAfterMs() + policy.delayMs(task.calls());
+            retries.incrementAndGet();
+            log.info("BRnum={} | Retrying task {} in {} ms (attempt {}/{})",
+                    task.brNum(), task.sequence(), delayMs, task.calls() + 1, policy.getMaxAttempts());
+            try {
+                dispatch(host, task, delayMs);
+                return;
+            } catch (InterruptedException ie) {
+                // delayed submits do not block; keep the failed result
+                Thread.currentThread().interrupt();
+            }
+        }
+        // never blocks: the window bounds how many results can be waiting here
+        completed.add(result);
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    /**
+     * Creates a stage thread with the caller's MDC. The first failure of any stage is kept and
+     * rethrown by {@link #run}. Read and filter are then interrupted, so no new rows enter; the
+     * persist stage still collects the downloads already started and the pipeline winds down.
+     */
+    private Thread stage(String name, StageBody body) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        return Thread.ofPlatform().name(name).unstarted(() -> {
+            if (mdc != null) MDC.setContextMap(mdc);
+            try {
+                body.run();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                if (failure.compareAndSet(null, t)) {
+                    log.error("Pipeline stage {} failed: {}", name, t.toString(), t);
+                    producers.forEach(Thread::interrupt);
+                }
+            } finally {
+                MDC.clear();
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Counters owned by the persist stage, read once it has finished.
+     */
+    private static final class Persisted {
+        int ok;
+        int fail;
+        int cacheHits;
+        int retriedRows;
+
+        void add(ReportEntity re, int n, int total) {
+            String of = total >= 0 ? String.valueOf(total) : "?";
+            if (re.getRetries() > 0) retriedRows++;
+            if ("success".equalsIgnoreCase(re.getStatus())) {
+                ok++;
+                if (re.isCacheHit()) cacheHits++;
+                log.info("({}/{}) BRnum={} | {} -> {}", n, of, re.getBRnum(),
+                        re.isCacheHit() ? "NOT MODIFIED" : "SUCCESS",
+                        re.getUrl() != null ? re.getUrl() : "(no URL)");
+            } else {
+                fail++;
+                log.error("({}/{}) BRnum={} | FAILED -> {}", n, of, re.getBRnum(),
+                        re.getErrorMessage() != null ? re.getErrorMessage() : re.getReason());
+            }
+        }
+    }
+
+    /**
+     * Outcome of the download phase.
+     */
+    record Results(int ok, int fail, int cacheHits, int peakInFlight, List<HostScheduler.HostStats> hosts,
+                   int retries, int retriedRows, List<CircuitBreakers.BreakerStats> breakers,
+                   ConcurrencyLimiter.Stats limit) {
+    }
+}
@@ -1,28 +1,56 @@
 package org.example.service.core;
 
+import lombok.AccessLevel;
+import lombok.Builder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.example.domain.ReportEntity;
 import org.example.service.downloader.PdfDownloader;
+import org.example.service.downloader.PdfStore;
 import org.example.service.reader.ExcelReader;
 
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * DownloadTask wraps a single row downloaded so it can run in a thread.
  * Inputs:
  * - Row meta (index, BRnum, primary/fallback URLs)
  * - Target file path for the PDF
- * - PdfDownloader strategy
+ * - PdfDownloader strategy, and optionally {@link CircuitBreakers}, {@link DnsCache} and {@link PdfStore}
  * Output:
  * - A fully built ReportEntity ready to be appended to the report
+ * The same task may be called again for a retry; {@link #retryable()} and {@link #retryAfterMs()} describe the last call.
  */
 public class DownloadTask implements java.util.concurrent.Callable<ReportEntity> {
 
+    private static final Logger log = LoggerFactory.getLogger(DownloadTask.class);
+
     private final int sequence;
     private final ExcelReader.InputRow row;
     private final Path targetFile;
     private final PdfDownloader downloader;
+    private final CircuitBreakers breakers;
+    private final DnsCache dns;
+    private final PdfStore store;
+
+    // state of the last call, read by the retry logic
+    private volatile int calls;
+    private volatile boolean retryable;
+    private volatile long retryAfterMs;
+    private volatile long startNs;
+    private volatile long latencyNs;
+    private volatile boolean attempted;
+    private volatile boolean congested;
+    private volatile long bytes;
 
     /**
      * Constructs a task with immutable data used by the thread.
@@ -31,10 +59,28 @@ public class DownloadTask implements java.util.concurrent.Callable<ReportEntity>
                         ExcelReader.InputRow row,
                         Path targetFile,
                         PdfDownloader downloader) {
+        this(sequence, row, targetFile, downloader, null, null, null);
+    }
+
+    /**
+     * Constructs a task that consults per-host circuit breakers, skips hosts the DNS cache knows to be
+     * unresolvable and moves its downloads into a content store; breakers, dns and store may each be null.
+     */
+    @Builder(access = AccessLevel.PACKAGE)
+    private DownloadTask(int sequence,
+                         ExcelReader.InputRow row,
+                         Path targetFile,
+                         PdfDownloader downloader,
+                         CircuitBreakers breakers,
+                         DnsCache dns,
+                         PdfStore store) {
         this.sequence = sequence;
         this.row = row;
         this.targetFile = targetFile;
         this.downloader = downloader;
+        this.breakers = breakers;
+        this.dns = dns;
+        this.store = store;
     }
 
     /**
@@ -43,38 +89,289 @@ public class DownloadTask implements java.util.concurrent.Callable<ReportEntity>
     @Override
     public ReportEntity call() {
 
+        Map<String, String> previous = enterMdc();
+        try {
+            Admission adm = admit();
+            if (adm.refused()) return finish(adm, adm.fastFail(row.BRnum()));
+            var res = downloader.download(row.BRnum(), adm.primary(), adm.fallback(), targetFile);
+            return finish(adm, res);
+        } finally {
+            restoreMdc(previous);
+        }
+    }
+
+    /**
+     * Starts the download through {@link PdfDownloader#downloadAsync} and maps the outcome to a report row.
+     * The MDC is only set while the download is being started; completion runs on the downloader's threads.
+     */
+    public CompletableFuture<ReportEntity> callAsync() {
+
+        Map<String, String> previous = enterMdc();
+        try {
+            Admission adm = admit();
+            if (adm.refused()) return CompletableFuture.completedFuture(finish(adm, adm.fastFail(row.BRnum())));
+            return downloader.downloadAsync(row.BRnum(), adm.primary(), adm.fallback(), targetFile)
+                    .thenApply(res -> finish(adm, res));
+        } finally {
+            restoreMdc(previous);
+        }
+    }
+
+    int sequence() {
+        return sequence;
+    }
+
+    String brNum() {
+        return row.BRnum();
+    }
+
+    /**
+     * @return number of times the task has been called
+     */
+    int calls() {
+        return calls;
+    }
+
+    /**
+     * @return true if the last call failed in a way that may pass on a later attempt
+     */
+    boolean retryable() {
+        return retryable;
+    }
+
+    /**
+     * @return minimum wait before retrying, because a host of the row is behind an open breaker
+     */
+    long retryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * @return how long the last call took, from admission to result
+     */
+    long latencyNs() {
+        return latencyNs;
+    }
+
+    /**
+     * @return true if the last call sent at least one request (false when the breakers refused it)
+     */
+    boolean attempted() {
+        return attempted;
+    }
+
+    /**
+     * @return true if a request of the last call timed out, was refused or throttled (transient failure)
+     */
+    boolean congested() {
+        return congested;
+    }
+
+    /**
+     * @return bytes written by the last call (0 if it failed or the file was not modified)
+     */
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Drops URLs whose host does not resolve, then asks the breakers of the remaining hosts for
+     * permission and drops URLs whose host is refused.
+     */
+    private Admission admit() {
+        calls++;
+        retryable = false;
+        retryAfterMs = 0;
+        startNs = System.nanoTime();
+
+        URL primary = row.pdfUrl();
+        URL fallback = row.htmlUrl();
+        List<String> unresolved = new ArrayList<>();
+        if (dns != null) {
+            for (URL url : new URL[]{primary, fallback}) {
+                if (url == null) continue;
+                String host = HostScheduler.hostOf(url);
+                if (!unresolved.contains(host) && dns.unresolvable(host)) unresolved.add(host);
+            }
+            if (!unresolved.isEmpty()) {
+                log.warn("BRnum={} | Unknown host {}, skipping its URL(s)", row.BRnum(), String.join(", ", unresolved));
+                if (primary != null && unresolved.contains(HostScheduler.hostOf(primary))) primary = null;
+                if (fallback != null && unresolved.contains(HostScheduler.hostOf(fallback))) fallback = null;
+            }
+        }
+
+        Map<String, CircuitBreakers.Permit> permits = new LinkedHashMap<>();
+        if (breakers == null) return new Admission(primary, fallback, permits, List.of(), unresolved);
+
+        List<String> refused = new ArrayList<>();
+        for (URL url : new URL[]{primary, fallback}) {
+            if (url == null) continue;
+            String host = HostScheduler.hostOf(url);
+            CircuitBreakers.Permit p = permits.computeIfAbsent(host, breakers::acquire);
+            if (p == CircuitBreakers.Permit.DENIED && !refused.contains(host)) refused.add(host);
+        }
+        if (!refused.isEmpty()) {
+            log.warn("BRnum={} | Circuit open for {}, skipping its URL(s)", row.BRnum(), String.join(", ", refused));
+        }
+        return new Admission(
+                allowed(primary, permits) ? primary : null,
+                allowed(fallback, permits) ? fallback : null,
+                permits, refused, unresolved);
+    }
+
+    /**
+     * Feeds the outcome back to the breakers, records retry hints and latency feedback, and builds
+     * the report entry.
+     */
+    private ReportEntity finish(Admission adm, PdfDownloader.DownloadResult res) {
+        latencyNs = System.nanoTime() - startNs;
+        attempted = !res.attempts().isEmpty();
+        congested = res.attempts().stream().anyMatch(a -> a.outcome() == PdfDownloader.UrlOutcome.TRANSIENT);
+        bytes = res.success() && !res.cacheHit() ? sizeOf(targetFile) : 0;
+
+        if (breakers != null) {
+            adm.permits().forEach((host, permit) -> {
+                if (permit == CircuitBreakers.Permit.DENIED) return;
+                List<PdfDownloader.UrlAttempt> onHost = res.attempts().stream()
+                        .filter(a -> HostScheduler.hostOf(a.url()).equals(host))
+                        .toList();
+                if (onHost.isEmpty()) {
+                    if (permit == CircuitBreakers.Permit.PROBE) breakers.abandonProbe(host);
+                    return;
+                }
+                boolean hostDown = onHost.stream().allMatch(a -> a.outcome() == PdfDownloader.UrlOutcome.TRANSIENT);
+                breakers.record(host, hostDown, permit);
+            });
+        }
+
+        if (!res.success()) {
+            retryable = res.retryable() || !adm.refusedHosts().isEmpty();
+            retryAfterMs = breakers == null ? 0
+                    : adm.refusedHosts().stream().mapToLong(breakers::retryAfterMs).max().orElse(0);
+        }
+
+        PdfDownloader.DownloadResult outcome = res;
+        PdfStore.Stored stored = null;
+        if (res.success() && store != null) {
+            try {
+                stored = store.put(row.BRnum(), targetFile, res.sha256());
+            } catch (IOException e) {
+                log.error("BRnum={} | Could not move {} into the store ({})", row.BRnum(), targetFile.getFileName(), e.toString());
+                outcome = new PdfDownloader.DownloadResult(row.BRnum(), res.urlUsed(), false, "Store failed",
+                        e.toString(), false, res.attempts());
+            }
+        }
+
+        ReportEntity entity = toEntity(outcome, stored);
+        entity.setRetries(calls - 1);
+        entity.setBreaker(breakerNote());
+        return entity;
+    }
+
+    /**
+     * Non-closed breakers of the row's hosts, e.g. "example.com OPEN", or null if all are closed.
+     */
+    private String breakerNote() {
+        if (breakers == null) return null;
+        List<String> notes = new ArrayList<>();
+        for (URL url : new URL[]{row.pdfUrl(), row.htmlUrl()}) {
+            if (url == null) continue;
+            String host = HostScheduler.hostOf(url);
+            CircuitBreakers.State state = breakers.state(host);
+            String note = host + " " + state;
+            if (state != CircuitBreakers.State.CLOSED && !notes.contains(note)) notes.add(note);
+        }
+        return notes.isEmpty() ? null : String.join("; ", notes);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean allowed(URL url, Map<String, CircuitBreakers.Permit> permits) {
+        return url != null && permits.getOrDefault(HostScheduler.hostOf(url), CircuitBreakers.Permit.ALLOWED)
+                != CircuitBreakers.Permit.DENIED;
+    }
+
+    /**
+     * Builds the report entry for a download result.
+     */
+    private ReportEntity toEntity(PdfDownloader.DownloadResult res, PdfStore.Stored stored) {
+
+        // prepare inputs
+        String br = row.BRnum();
+        URL primary = row.pdfUrl();
+
+        // compute lable for which url was used
+        String label = "";
+        if (res.urlUsed() != null) {
+            label = res.urlUsed().equals(primary) ? "Primary URL"
+                    : "Backup URL";
+        }
+
+        // build the report entry
+        return ReportEntity.builder()
+                .BRnum(br)
+                .url(res.urlUsed())
+                .urlUsed(label)
+                .status(res.success() ? "success" : "error")
+                .reason(res.reason())
+                .errorMessage(res.errorMessage())
+                .cacheHit(res.cacheHit())
+                .size(stored != null ? Long.valueOf(stored.size()) : res.success() ? sizeOf(targetFile) : null)
+                .sha256(stored != null ? stored.sha256() : res.success() ? res.sha256() : null)
+                // without the store "file_N.pdf" is renumbered every run, so it is no stable name to report
+                .file(stored != null ? relative(stored.file()) : null)
+                .build();
+    }
+
+    /**
+     * Path of a downloaded file as reported: relative to the download directory where possible.
+     */
+    private String relative(Path file) {
+        Path dir = targetFile.toAbsolutePath().getParent();
+        Path abs = file.toAbsolutePath();
+        return (abs.startsWith(dir) ? dir.relativize(abs) : abs).toString().replace('\\', '/');
+    }
+
+    private Map<String, String> enterMdc() {
+        Map<String, String> previous = MDC.getCopyOfContextMap();
         MDC.put("tid", String.valueOf(Thread.currentThread().threadId()));
         MDC.put("seq", String.valueOf(sequence));
         MDC.put("br", row.BRnum());
+        return previous;
+    }
 
-        try {
+    private static void restoreMdc(Map<String, String> previous) {
+        // restore the caller's context (pooled threads are reused by the next task)
+        if (previous != null) MDC.setContextMap(previous);
+        else MDC.clear();
+    }
 
-            // prepare inputs
-            String br = row.BRnum();
-            URL primary = row.pdfUrl();
-            URL fallback = row.htmlUrl();
+    /**
+     * URLs cleared to run for one call, the permits behind them, and hosts that were refused or do not resolve.
+     */
+    private record Admission(URL primary, URL fallback, Map<String, CircuitBreakers.Permit> permits,
+                             List<String> refusedHosts, List<String> unresolvedHosts) {
 
-            // execute download (thread-safe in current downloader)
-            var res = downloader.download(br, primary, fallback, targetFile);
+        boolean refused() {
+            return primary == null && fallback == null && (!refusedHosts.isEmpty() || !unresolvedHosts.isEmpty());
+        }
 
-            // compute lable for which url was used
-            String label = "";
-            if (res.urlUsed() != null) {
-                label = res.urlUsed().equals(primary) ? "Primary URL"
-                        : "Backup URL";
+        /**
+         * An open breaker may close again, so that failure is retried; a host that does not resolve is final.
+         */
+        PdfDownloader.DownloadResult fastFail(String brNum) {
+            if (!refusedHosts.isEmpty()) {
+                String msg = "Circuit open for " + String.join(", ", refusedHosts);
+                return new PdfDownloader.DownloadResult(brNum, null, false, "Circuit open", msg, false, List.of());
             }
-
-            // build the report entry
-            return ReportEntity.builder()
-                    .BRnum(br)
-                    .url(res.urlUsed())
-                    .urlUsed(label)
-                    .status(res.success() ? "success" : "error")
-                    .reason(res.reason())
-                    .errorMessage(res.errorMessage())
-                    .build();
-        } finally {
-            MDC.clear();
+            String msg = "Unknown host: " + String.join(", ", unresolvedHosts);
+            return new PdfDownloader.DownloadResult(brNum, null, false, "Unknown host", msg, false, List.of());
         }
     }
 }
@@ -0,0 +1,394 @@
+package org.example.service.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * HostScheduler queues download tasks per host and starts them round-robin across hosts, within the
+ * {@link ConcurrencyLimiter}'s limit and an optional per-host limit and request rate.
+ * {@link #submit} blocks once {@code maxQueued} tasks are waiting, which back-pressures the reader.
+ */
+
+class HostScheduler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(HostScheduler.class);
+
+    private static final long STATS_LOG_SECONDS = 30;
+
+    private final Executor executor;
+    private final ConcurrencyLimiter limiter;
+    private final int perHostLimit;
+    private final double ratePerSecond;
+    private final int maxQueued;
+    private final int hostBatch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Map<String, HostState> hosts = new HashMap<>();
+    private final ArrayDeque<HostState> ready = new ArrayDeque<>();
+    private final ScheduledExecutorService timer;
+
+    private int running;
+    private int queued;
+
+    /**
+     * @param executor      runs dispatched tasks
+     * @param limiter       max tasks running across all hosts, possibly changing over time
+     * @param perHostLimit  max tasks running per host (&lt;= 0 means unlimited)
+     * @param ratePerSecond max task starts per second per host (&lt;= 0 disables the token bucket)
+     * @param maxQueued     max tasks waiting before {@link #submit} blocks
+     */
+    HostScheduler(Executor executor, ConcurrencyLimiter limiter, int perHostLimit, double ratePerSecond, int maxQueued) {
+        this(executor, limiter, perHostLimit, ratePerSecond, maxQueued, 1);
+    }
+
+    /**
+     * @param hostBatch tasks of one host a freed slot runs in a row (&lt;= 1: plain round-robin)
+     */
+    HostScheduler(Executor executor, ConcurrencyLimiter limiter, int perHostLimit, double ratePerSecond, int maxQueued,
+                  int hostBatch) {
+        this.executor = executor;
+        this.limiter = limiter;
+        this.perHostLimit = perHostLimit <= 0 ? Integer.MAX_VALUE : perHostLimit;
+        this.ratePerSecond = ratePerSecond;
+        this.maxQueued = Math.max(1, maxQueued);
+        this.hostBatch = Math.max(1, hostBatch);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "host-sched");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::logStats, STATS_LOG_SECONDS, STATS_LOG_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Host key used for scheduling: lower-cased host name of the URL.
+     */
+    static String hostOf(URL url) {
+        if (url == null || url.getHost() == null || url.getHost().isEmpty()) return "(none)";
+        return url.getHost().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Queues a task under the given host, waiting if the backlog is full.
+     *
+     * @param host host key (see {@link #hostOf(URL)})
+     * @param task work to run
+     */
+    void submit(String host, Runnable task) throws InterruptedException {
+        enqueue(host, new Pending(task, null, System.nanoTime()));
+    }
+
+    /**
+     * Queues an asynchronous task under the given host, waiting if the backlog is full.
+     * The task's slot is held until the returned future completes, not while a thread runs it,
+     * so many transfers can be in flight on a few executor threads.
+     *
+     * @param host host key (see {@link #hostOf(URL)})
+     * @param task starts the work and returns its completion
+     */
+    void submitAsync(String host, Supplier<? extends CompletableFuture<?>> task) throws InterruptedException {
+        enqueue(host, new Pending(null, task, System.nanoTime()));
+    }
+
+    /**
+     * Queues a task under the given host once {@code delayMs} has passed. Does not block.
+     *
+     * @param host    host key (see {@link #hostOf(URL)})
+     * @param task    work to run
+     * @param delayMs delay before the task is queued
+     */
+    void submitLater(String host, Runnable task, long delayMs) {
+        later(host, () -> new Pending(task, null, System.nanoTime()), delayMs);
+    }
+
+    /**
+     * Asynchronous variant of {@link #submitLater}, see {@link #submitAsync}.
+     */
+    void submitAsyncLater(String host, Supplier<? extends CompletableFuture<?>> task, long delayMs) {
+        later(host, () -> new Pending(null, task, System.nanoTime()), delayMs);
+    }
+
+    private void enqueue(String host, Pending pending) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queued >= maxQueued) notFull.await();
+            add(host, pending);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void later(String host, Supplier<Pending> pending, long delayMs) {
+        lock.lock();
+        try {
+            hosts.computeIfAbsent(host, HostState::new).delayed++;
+        } finally {
+            lock.unlock();
+        }
+        timer.schedule(() -> {
+            lock.lock();
+            try {
+                hosts.get(host).delayed--;
+                add(host, pending.get());
+            } finally {
+                lock.unlock();
+            }
+        }, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return tasks waiting for a slot, across all hosts (retries still waiting out their delay not included)
+     */
+    int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Current per-host state, busiest hosts first.
+     */
+    List<HostStats> snapshot() {
+        lock.lock();
+        try {
+            return hosts.values().stream()
+                    .map(HostState::stats)
+                    .sorted(Comparator.comparingInt(HostStats::queued).reversed()
+                            .thenComparing(Comparator.comparingLong(HostStats::totalWaitMs).reversed()))
+                    .toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    // ---------------------------------------------------------------- internals (lock held)
+
+    /**
+     * Starts tasks while global capacity is left and some listed host can run.
+     * Each iteration either starts a task or drops a host from the ready list, so it terminates.
+     */
+    private void dispatch() {
+        while (running < limiter.limit() && !ready.isEmpty()) {
+            HostState h = ready.poll();
+            h.listed = false;
+
+            if (h.queue.isEmpty()) continue;
+            // parked: re-listed when one of its running tasks completes
+            if (h.running >= perHostLimit) continue;
+
+            long waitNs = h.bucket != null ? h.bucket.tryAcquire(System.nanoTime()) : 0;
+            if (waitNs > 0) {
+                h.listed = true;
+                timer.schedule(() -> relist(h), waitNs, TimeUnit.NANOSECONDS);
+                continue;
+            }
+
+            start(h, h.queue.poll(), 1);
+            list(h);
+        }
+    }
+
+    private void add(String host, Pending pending) {
+        HostState h = hosts.computeIfAbsent(host, HostState::new);
+        h.queue.add(pending);
+        queued++;
+        list(h);
+        dispatch();
+    }
+
+    /**
+     * @param streak tasks of this host the slot has run in a row, this one included
+     */
+    private void start(HostState h, Pending p, int streak) {
+        long waited = System.nanoTime() - p.enqueuedNs();
+        h.dispatched++;
+        h.totalWaitNs += waited;
+        h.maxWaitNs = Math.max(h.maxWaitNs, waited);
+        h.running++;
+        running++;
+        queued--;
+        notFull.signal();
+
+        if (p.async() != null) {
+            executor.execute(() -> {
+                CompletableFuture<?> f;
+                try {
+                    f = p.async().get();
+                } catch (RuntimeException e) {
+                    done(h, streak);
+                    throw e;
+                }
+                f.whenComplete((r, ex) -> done(h, streak));
+            });
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                p.task().run();
+            } finally {
+                done(h, streak);
+            }
+        });
+    }
+
+    private void list(HostState h) {
+        if (!h.listed && !h.queue.isEmpty()) {
+            ready.add(h);
+            h.listed = true;
+        }
+    }
+
+    private void done(HostState h, int streak) {
+        lock.lock();
+        try {
+            h.running--;
+            running--;
+            if (!continueOn(h, streak)) list(h);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Host affinity: starts the host's next task on the slot its finished task freed, unless the slot's
+     * batch is used up, nothing of the host is queued, the global limit has dropped or its rate limit says wait.
+     *
+     * @return true if a task was started
+     */
+    private boolean continueOn(HostState h, int streak) {
+        if (streak >= hostBatch || h.queue.isEmpty() || running >= limiter.limit()) return false;
+        if (h.bucket != null && h.bucket.tryAcquire(System.nanoTime()) > 0) return false;
+        start(h, h.queue.poll(), streak + 1);
+        return true;
+    }
+
+    private void relist(HostState h) {
+        lock.lock();
+        try {
+            h.listed = false;
+            list(h);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void logStats() {
+        List<HostStats> stats = snapshot();
+        int waiting = stats.stream().mapToInt(HostStats::queued).sum();
+        int delayed = stats.stream().mapToInt(HostStats::delayed).sum();
+        if (waiting == 0 && delayed == 0) return;
+        log.info("[HOSTS] {} hosts, {} tasks queued, {} waiting to retry, limit {}, top: {}", stats.size(), waiting,
+                delayed, limiter.limit(), stats.subList(0, Math.min(5, stats.size())));
+    }
+
+    private record Pending(Runnable task, Supplier<? extends CompletableFuture<?>> async, long enqueuedNs) {
+    }
+
+    /**
+     * Mutable per-host bookkeeping, only touched while holding the scheduler lock.
+     */
+    private final class HostState {
+        final String host;
+        final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        final TokenBucket bucket;
+        boolean listed;
+        int running;
+        int delayed;
+        long dispatched;
+        long totalWaitNs;
+        long maxWaitNs;
+
+        HostState(String host) {
+            this.host = host;
+            this.bucket = ratePerSecond > 0 ? new TokenBucket(ratePerSecond) : null;
+        }
+
+        HostStats stats() {
+            return new HostStats(host, queue.size(), delayed, running, dispatched,
+                    dispatched == 0 ? 0 : totalWaitNs / dispatched / 1_000_000,
+                    maxWaitNs / 1_000_000,
+                    totalWaitNs / 1_000_000);
+        }
+    }
+
+    /**
+     * Classic token bucket: refills at {@code rate} tokens per second up to {@code max(1, rate)}.
+     */
+    private static final class TokenBucket {
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long lastNs;
+
+        TokenBucket(double rate) {
+            this.rate = rate;
+            this.capacity = Math.max(1.0, rate);
+            this.tokens = capacity;
+            this.lastNs = System.nanoTime();
+        }
+
+        /**
+         * Takes a token if one is available.
+         *
+         * @return 0 if a token was taken, otherwise nanoseconds until the next token
+         */
+        long tryAcquire(long nowNs) {
+            tokens = Math.min(capacity, tokens + (nowNs - lastNs) * rate / 1e9);
+            lastNs = nowNs;
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                return 0;
+            }
+            return Math.max(1, (long) ((1.0 - tokens) / rate * 1e9));
+        }
+    }
+
+    /**
+     * Point-in-time view of one host.
+     *
+     * @param host        host name
+     * @param queued      tasks waiting for a slot
+     * @param delayed     tasks waiting out a retry delay
+     * @param running     tasks currently running
+     * @param dispatched  tasks started so far
+     * @param avgWaitMs   average time from submit to start
+     * @param maxWaitMs   longest time from submit to start
+     * @param totalWaitMs summed time from submit to start
+     */
+    record HostStats(String host, int queued, int delayed, int running, long dispatched,
+                     long avgWaitMs, long maxWaitMs, long totalWaitMs) {
+        @Override
+        public String toString() {
+            return host + "(q=" + queued + (delayed > 0 ? ", retry=" + delayed : "") + ", run=" + running + ", done=" + dispatched
+                    + ", avgWait=" + avgWaitMs + "ms, maxWait=" + maxWaitMs + "ms)";
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.service.core;
+
+import org.example.service.downloader.PdfDownloader;
+import org.example.service.reader.ExcelReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * HostWarmup is the optional phase before the downloads that resolves the hosts of the rows to download
+ * in parallel through the {@link DnsCache} and, if asked, opens a connection to the busiest ones.
+ */
+
+final class HostWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(HostWarmup.class);
+
+    private HostWarmup() {
+    }
+
+    /**
+     * @param input      input rows (closed by the caller)
+     * @param wanted     rows that will be downloaded
+     * @param dns        cache to fill
+     * @param downloader used to pre-open connections
+     * @param options    dnsParallelism, dnsWarmupTimeout and preconnectHosts
+     */
+    static void run(Stream<ExcelReader.InputRow> input, Predicate<ExcelReader.InputRow> wanted, DnsCache dns,
+                    PdfDownloader downloader, RunOptions options) throws InterruptedException {
+        long startNs = System.nanoTime();
+        Map<String, Host> hosts = collect(input, wanted);
+        if (hosts.isEmpty()) return;
+
+        // lookups are blocking native calls that would hold a virtual thread's carrier, so platform threads
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService resolvers = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(options.getDnsParallelism(), hosts.size())), r -> {
+                    Thread t = new Thread(r, "dns-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        CountDownLatch done = new CountDownLatch(hosts.size());
+        AtomicInteger unresolved = new AtomicInteger();
+        for (Host h : hosts.values()) {
+            resolvers.execute(() -> {
+                try {
+                    DnsCache.Resolution r = dns.resolve(h.name);
+                    h.resolved = r.resolved();
+                    if (!r.resolved()) {
+                        unresolved.incrementAndGet();
+                        log.warn("[WARMUP] Cannot resolve {} ({} rows): {}", h.name, h.rows, r.error());
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        // queued lookups still run after the timeout; the threads end once the queue is empty
+        resolvers.shutdown();
+        Duration timeout = options.getDnsWarmupTimeout();
+        done.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        long pending = done.getCount();
+
+        int connected = preconnect(hosts, downloader, options.getPreconnectHosts());
+        log.info("[WARMUP] Resolved {} of {} hosts in {} ms ({} unresolvable, {} pending, {} pre-connected)",
+                hosts.size() - pending - unresolved.get(), hosts.size(), (System.nanoTime() - startNs) / 1_000_000,
+                unresolved.get(), pending, connected);
+    }
+
+    /**
+     * Distinct hosts of the wanted rows, with the number of rows naming each and one URL to connect to.
+     */
+    private static Map<String, Host> collect(Stream<ExcelReader.InputRow> input, Predicate<ExcelReader.InputRow> wanted) {
+        Map<String, Host> hosts = new HashMap<>();
+        input.filter(wanted).forEach(row -> {
+            String previous = null;
+            for (URL url : new URL[]{row.pdfUrl(), row.htmlUrl()}) {
+                if (url == null) continue;
+                String name = HostScheduler.hostOf(url);
+                // "(none)": no host to resolve, e.g. a file: URL; a row naming one host twice counts once
+                if (name.equals("(none)") || name.equals(previous)) continue;
+                previous = name;
+                hosts.computeIfAbsent(name, n -> new Host(n, url)).rows++;
+            }
+        });
+        return hosts;
+    }
+
+    /**
+     * Pre-opens a connection to each of the busiest resolved hosts, all at once.
+     *
+     * @return hosts a connection was attempted to
+     */
+    private static int preconnect(Map<String, Host> hosts, PdfDownloader downloader, int limit)
+            throws InterruptedException {
+        if (limit <= 0) return 0;
+        List<Host> busiest = hosts.values().stream()
+                .filter(h -> h.resolved)
+                .sorted(Comparator.comparingInt((Host h) -> h.rows).reversed())
+                .limit(limit)
+                .toList();
+        List<Thread> threads = new ArrayList<>(busiest.size());
+        for (Host h : busiest) {
+            threads.add(Thread.ofVirtual().name("preconnect-" + h.name).start(() -> downloader.preconnect(h.sample)));
+        }
+        for (Thread t : threads) t.join();
+        return busiest.size();
+    }
+
+    private static final class Host {
+        final String name;
+        final URL sample;
+        int rows;
+        volatile boolean resolved;
+
+        Host(String name, URL sample) {
+            this.name = name;
+            this.sample = sample;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.service.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram counts durations in log-linear buckets, so percentiles can be read at any time
+ * without keeping the samples.
+ * - Values are stored in microseconds; each power of two is split into {@code 2^SUB_BITS} buckets,
+ * so a reported percentile is at most ~6% above the true value.
+ * - Recording is lock-free (one atomic increment), cheap enough for every download attempt.
+ * - Memory is fixed (~8 KiB) whatever the number of samples.
+ */
+
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * @param nanos duration to add (negative values count as 0)
+     */
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts.incrementAndGet(indexOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * @param p percentile as a fraction, e.g. 0.99
+     * @return upper bound of the bucket holding that percentile, in milliseconds (0 if empty)
+     */
+    double percentileMs(double p) {
+        long total = count.sum();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), maxMicros.get()) / 1000.0;
+        }
+        return maxMicros.get() / 1000.0;
+    }
+
+    Snapshot snapshot() {
+        long n = count.sum();
+        return new Snapshot(n, percentileMs(0.50), percentileMs(0.95), percentileMs(0.99),
+                maxMicros.get() / 1000.0, n == 0 ? 0 : sumMicros.sum() / 1000.0 / n);
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < SUB) return (int) micros;
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (exp - SUB_BITS)) & (SUB - 1));
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB) return index;
+        int exp = index / SUB + SUB_BITS - 1;
+        long sub = index % SUB;
+        long width = 1L << (exp - SUB_BITS);
+        return ((SUB + sub) << (exp - SUB_BITS)) + width - 1;
+    }
+
+    /**
+     * Percentiles at one point in time, in milliseconds.
+     *
+     * @param count samples recorded
+     * @param p50   median
+     * @param p95   95th percentile
+     * @param p99   99th percentile
+     * @param max   largest sample
+     * @param mean  average
+     */
+    record Snapshot(long count, double p50, double p95, double p99, double max, double mean) {
+        @Override
+        public String toString() {
+            if (count == 0) return "n=0";
+            return String.format("n=%d p50=%.0fms p95=%.0fms p99=%.0fms max=%.0fms", count, p50, p95, p99, max);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.example.service.core;
+
+import org.example.domain.ReportEntity;
+import org.example.service.downloader.PdfDownloader;
+import org.example.service.reader.ExcelReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * LinkProbe checks the URLs of the input rows with {@link PdfDownloader#probe} without downloading any body,
+ * to start the largest files first ({@link #largestFirst}) or to write a link report ({@link #checkLinks}).
+ */
+
+final class LinkProbe {
+
+    private static final Logger log = LoggerFactory.getLogger(LinkProbe.class);
+
+    private LinkProbe() {
+    }
+
+    /**
+     * Probe outcome of one row.
+     *
+     * @param row      the input row
+     * @param primary  probe of the Pdf_URL (null if the row has none)
+     * @param fallback probe of the Html_URL (null if not needed or missing)
+     */
+    record Result(ExcelReader.InputRow row, PdfDownloader.Probe primary, PdfDownloader.Probe fallback) {
+
+        /**
+         * @return the probe a download would succeed with, or null if neither URL is OK
+         */
+        PdfDownloader.Probe usable() {
+            if (primary != null && primary.ok()) return primary;
+            if (fallback != null && fallback.ok()) return fallback;
+            return null;
+        }
+
+        /**
+         * @return size of the file a download would get, -1 if unknown or unreachable
+         */
+        long size() {
+            PdfDownloader.Probe p = usable();
+            return p != null ? p.contentLength() : -1;
+        }
+    }
+
+    /**
+     * Counts of one probe pass.
+     */
+    static final class Stats {
+        final LongAdder rows = new LongAdder();
+        final LongAdder ok = new LongAdder();
+        final LongAdder unsized = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final AtomicLong largest = new AtomicLong();
+        long elapsedMs;
+
+        private void add(Result r) {
+            rows.increment();
+            if (r.usable() == null) return;
+            ok.increment();
+            long size = r.size();
+            if (size < 0) {
+                unsized.increment();
+                return;
+            }
+            bytes.add(size);
+            largest.accumulateAndGet(size, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            long n = rows.sum();
+            return String.format("%d rows in %d ms: %d reachable (%d without size), %d failed, %s known, largest %s",
+                    n, elapsedMs, ok.sum(), unsized.sum(), n - ok.sum(), RunMetrics.humanBytes(bytes.sum()),
+                    RunMetrics.humanBytes(largest.get()));
+        }
+    }
+
+    /**
+     * Rows to start first, largest first, and the rows they were taken from.
+     */
+    record Ranking(List<ExcelReader.InputRow> front, Set<Integer> frontRows, Stats stats) {
+
+        /**
+         * @param input the input rows again, in sheet order
+         * @return the front rows, then the input without them
+         */
+        Stream<ExcelReader.InputRow> reorder(Stream<ExcelReader.InputRow> input) {
+            return Stream.concat(front.stream(), input.filter(r -> !frontRows.contains(r.rowIndex())));
+        }
+    }
+
+    /**
+     * Probes the wanted rows and keeps the largest ones.
+     *
+     * @param input   input rows (closed by the caller)
+     * @param wanted  rows that will be downloaded
+     * @param options probeParallelism, largestFirstRows and the per-host limits
+     */
+    static Ranking largestFirst(Stream<ExcelReader.InputRow> input, Predicate<ExcelReader.InputRow> wanted,
+                                PdfDownloader downloader, RunOptions options) throws InterruptedException {
+        int keep = Math.max(0, options.getLargestFirstRows());
+        // smallest of the kept rows on top, so it is the one a larger row replaces
+        PriorityQueue<Result> largest = new PriorityQueue<>(Comparator.comparingLong(Result::size));
+        ReentrantLock lock = new ReentrantLock();
+        Stats stats = run(input, wanted, downloader, options, r -> {
+            if (keep == 0 || r.size() < 0) return;
+            lock.lock();
+            try {
+                largest.add(r);
+                if (largest.size() > keep) largest.poll();
+            } finally {
+                lock.unlock();
+            }
+        });
+
+        List<Result> sorted = new ArrayList<>(largest);
+        sorted.sort(Comparator.comparingLong(Result::size).reversed());
+        List<ExcelReader.InputRow> front = sorted.stream().map(Result::row).toList();
+        Set<Integer> frontRows = new HashSet<>();
+        front.forEach(r -> frontRows.add(r.rowIndex()));
+        log.info("[PROBE] Probed {}; starting the {} largest first ({} down to {})", stats, front.size(),
+                sorted.isEmpty() ? "-" : RunMetrics.humanBytes(sorted.get(0).size()),
+                sorted.isEmpty() ? "-" : RunMetrics.humanBytes(sorted.get(sorted.size() - 1).size()));
+        return new Ranking(front, frontRows, stats);
+    }
+
+    /**
+     * Probes the wanted rows and hands one report entry per row to {@code out} (from several threads).
+     */
+    static Stats checkLinks(Stream<ExcelReader.InputRow> input, Predicate<ExcelReader.InputRow> wanted,
+                            PdfDownloader downloader, RunOptions options, Consumer<ReportEntity> out)
+            throws InterruptedException {
+        Stats stats = run(input, wanted, downloader, options, r -> out.accept(toEntity(r)));
+        log.info("[PROBE] Checked links of {}", stats);
+        return stats;
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    private static Stats run(Stream<ExcelReader.InputRow> input, Predicate<ExcelReader.InputRow> wanted,
+                             PdfDownloader downloader, RunOptions options, Consumer<Result> onResult)
+            throws InterruptedException {
+        long startNs = System.nanoTime();
+        int parallelism = Math.max(1, options.getProbeParallelism());
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "probe-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Stats stats = new Stats();
+        Outstanding outstanding = new Outstanding();
+        try (HostScheduler scheduler = new HostScheduler(pool, ConcurrencyLimiter.fixed(parallelism),
+                options.getMaxPerHost(), options.getPerHostRatePerSecond(), options.getMaxQueued())) {
+            for (Iterator<ExcelReader.InputRow> it = input.filter(wanted).iterator(); it.hasNext(); ) {
+                ExcelReader.InputRow row = it.next();
+                outstanding.add();
+                scheduler.submit(HostScheduler.hostOf(row.pdfUrl() != null ? row.pdfUrl() : row.htmlUrl()), () -> {
+                    try {
+                        Result r = probe(row, downloader);
+                        stats.add(r);
+                        onResult.accept(r);
+                    } finally {
+                        outstanding.done();
+                    }
+                });
+            }
+            outstanding.awaitNone();
+        } finally {
+            pool.shutdownNow();
+        }
+        stats.elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+        return stats;
+    }
+
+    private static Result probe(ExcelReader.InputRow row, PdfDownloader downloader) {
+        PdfDownloader.Probe primary = row.pdfUrl() != null ? downloader.probe(row.pdfUrl()) : null;
+        PdfDownloader.Probe fallback = (primary == null || !primary.ok()) && row.htmlUrl() != null
+                ? downloader.probe(row.htmlUrl()) : null;
+        log.debug("BRnum={} | Probed: primary={} fallback={}", row.BRnum(), primary, fallback);
+        return new Result(row, primary, fallback);
+    }
+
+    /**
+     * Link-check entry: reason and error as a failed download would report them, size if known.
+     */
+    private static ReportEntity toEntity(Result r) {
+        PdfDownloader.Probe usable = r.usable();
+        URL primary = r.row().pdfUrl();
+        if (usable != null) {
+            return ReportEntity.builder()
+                    .BRnum(r.row().BRnum())
+                    .url(usable.url())
+                    .urlUsed(usable.url().equals(primary) ? "Primary URL" : "Backup URL")
+                    .status("success")
+                    .size(usable.contentLength() >= 0 ? usable.contentLength() : null)
+                    .build();
+        }
+        PdfDownloader.Probe last = r.fallback() != null ? r.fallback() : r.primary();
+        String reason = r.row().htmlUrl() == null ? "Primary URL failed, no backup" : "Both Primary and Backup failed";
+        return ReportEntity.builder()
+                .BRnum(r.row().BRnum())
+                .status("error")
+                .reason(reason)
+                .errorMessage(last != null ? last.error() : reason)
+                .build();
+    }
+
+    /**
+     * Count of submitted probes that have not finished yet.
+     */
+    private static final class Outstanding {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition none = lock.newCondition();
+        private long count;
+
+        void add() {
+            lock.lock();
+            try {
+                count++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void done() {
+            lock.lock();
+            try {
+                if (--count == 0) none.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void awaitNone() throws InterruptedException {
+            lock.lock();
+            try {
+                while (count > 0) none.await();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
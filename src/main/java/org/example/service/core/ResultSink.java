@@ -0,0 +1,122 @@
+package org.example.service.core;
+
+import org.example.domain.ReportEntity;
+import org.example.service.report.ResultJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultSink buffers finished report entries and flushes them to the {@link ResultJournal}
+ * in batches, either when the batch is full or when the flush interval elapses.
+ * This keeps bookkeeping durable during long runs without an fsync per entry.
+ */
+
+class ResultSink implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultSink.class);
+
+    private final ResultJournal journal;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+    private final RunMetrics metrics;
+
+    private List<ReportEntity> buffer = new ArrayList<>();
+    private int written;
+
+    ResultSink(ResultJournal journal, int batchSize, Duration flushInterval) {
+        this(journal, batchSize, flushInterval, null);
+    }
+
+    /**
+     * @param metrics records how long each journal write takes (may be null)
+     */
+    ResultSink(ResultJournal journal, int batchSize, Duration flushInterval, RunMetrics metrics) {
+        this.journal = journal;
+        this.metrics = metrics;
+        this.batchSize = Math.max(1, batchSize);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long ms = Math.max(1, flushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, ms, ms, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a finished entry; writes the batch when it reaches the configured size.
+     */
+    void accept(ReportEntity entry) {
+        List<ReportEntity> full = null;
+        synchronized (this) {
+            buffer.add(entry);
+            if (buffer.size() >= batchSize) full = swap();
+        }
+        if (full != null) write(full);
+    }
+
+    /**
+     * Writes whatever is buffered right now.
+     */
+    void flush() {
+        List<ReportEntity> pending;
+        synchronized (this) {
+            pending = swap();
+        }
+        write(pending);
+    }
+
+    /**
+     * @return number of entries made durable so far
+     */
+    synchronized int written() {
+        return written;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    private List<ReportEntity> swap() {
+        List<ReportEntity> out = buffer;
+        buffer = new ArrayList<>();
+        return out;
+    }
+
+    private void write(List<ReportEntity> batch) {
+        if (batch.isEmpty()) return;
+        long t0 = System.nanoTime();
+        try {
+            journal.append(batch);
+        } catch (RuntimeException e) {
+            // keep the entries so the next flush retries them
+            synchronized (this) {
+                batch.addAll(buffer);
+                buffer = batch;
+            }
+            throw e;
+        }
+        if (metrics != null) metrics.recordJournalFlush(System.nanoTime() - t0);
+        synchronized (this) {
+            written += batch.size();
+        }
+        log.debug("[JOURNAL] Flushed {} entries", batch.size());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("[JOURNAL] Periodic flush failed: {}", e.toString(), e);
+        }
+    }
+}
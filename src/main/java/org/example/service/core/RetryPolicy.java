@@ -0,0 +1,60 @@
+package org.example.service.core;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * RetryPolicy decides whether and when a failed row is downloaded again.
+ * Only failures that may pass later (timeouts, connection errors, 408/429/5xx, open breakers) are retried,
+ * up to {@code maxAttempts} in all, after an exponential backoff with jitter between baseDelay and maxDelay.
+ */
+
+@Builder
+@Getter
+public class RetryPolicy {
+
+    @Builder.Default
+    private final int maxAttempts = 3;
+
+    @Builder.Default
+    private final Duration baseDelay = Duration.ofSeconds(1);
+
+    @Builder.Default
+    private final Duration maxDelay = Duration.ofSeconds(30);
+
+    public static RetryPolicy defaults() {
+        return RetryPolicy.builder().build();
+    }
+
+    /**
+     * Policy that never retries.
+     */
+    public static RetryPolicy none() {
+        return RetryPolicy.builder().maxAttempts(1).build();
+    }
+
+    /**
+     * @param attemptsMade attempts already made for the row
+     * @return true if another attempt is allowed
+     */
+    public boolean allowsRetry(int attemptsMade) {
+        return attemptsMade < maxAttempts;
+    }
+
+    /**
+     * Backoff before the next attempt.
+     *
+     * @param attemptsMade attempts already made for the row (1 after the first failure)
+     * @return delay in milliseconds
+     */
+    public long delayMs(int attemptsMade) {
+        long base = Math.max(1, baseDelay.toMillis());
+        int shift = Math.min(30, Math.max(0, attemptsMade - 1));
+        long cap = Math.min(maxDelay.toMillis(), base << shift);
+        long half = cap / 2;
+        return half + ThreadLocalRandom.current().nextLong(cap - half + 1);
+    }
+}
@@ -0,0 +1,345 @@
+package org.example.service.core;
+
+import org.example.service.downloader.BandwidthShaper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * RunMetrics collects what a {@link ConverterService} run spends its time on: download latency overall and
+ * per host, bytes, outcomes, pipeline gauges, journal and report write times.
+ * While a run is in progress they are logged as a "[METRICS]" line and, optionally, exposed through JMX.
+ */
+
+public class RunMetrics implements RunMetricsMXBean, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RunMetrics.class);
+
+    static final String OBJECT_NAME = "org.example:type=ConverterService,name=RunMetrics";
+
+    /**
+     * Hosts with a latency histogram of their own (~8 KiB each); later hosts share {@link #OTHER_HOSTS}.
+     */
+    static final int MAX_TRACKED_HOSTS = 256;
+
+    static final String OTHER_HOSTS = "(other hosts)";
+
+    private final long startNs = System.nanoTime();
+    private volatile long endNs;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> hostLatency = new ConcurrentHashMap<>();
+    private final LatencyHistogram otherHostLatency = new LatencyHistogram();
+    private final LatencyHistogram journalFlush = new LatencyHistogram();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private volatile long reportWriteNs;
+    private final ConnectionReuse connections = new ConnectionReuse();
+    private final long bandwidthWaitBaseMs = BandwidthShaper.global().waitedMs();
+
+    private volatile IntSupplier inFlight = () -> 0;
+    private volatile IntSupplier queueDepth = () -> 0;
+    private volatile IntSupplier concurrencyLimit = () -> 0;
+
+    private ScheduledExecutorService reporter;
+    private ObjectName registeredAs;
+
+    /**
+     * Starts collecting: registers the MBean and schedules the periodic log line.
+     *
+     * @param logInterval how often to log a "[METRICS]" line (null or zero: never)
+     * @param jmx         true to register the MBean
+     * @return metrics of the new run (close when the run ends)
+     */
+    static RunMetrics start(Duration logInterval, boolean jmx) {
+        RunMetrics m = new RunMetrics();
+        if (jmx) m.register();
+        if (logInterval != null && !logInterval.isZero() && !logInterval.isNegative()) {
+            m.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-log");
+                t.setDaemon(true);
+                return t;
+            });
+            long ms = logInterval.toMillis();
+            m.reporter.scheduleAtFixedRate(() -> log.info("[METRICS] {}", m.line()), ms, ms, TimeUnit.MILLISECONDS);
+        }
+        return m;
+    }
+
+    /**
+     * Connects the live gauges of the running pipeline.
+     */
+    void bindGauges(IntSupplier inFlight, IntSupplier queueDepth, IntSupplier concurrencyLimit) {
+        this.inFlight = inFlight;
+        this.queueDepth = queueDepth;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * Records one download attempt.
+     *
+     * @param host      host the row was scheduled under
+     * @param latencyNs time the attempt took
+     * @param size      bytes written (0 if it failed or was not modified)
+     */
+    void recordDownload(String host, long latencyNs, long size) {
+        latency.record(latencyNs);
+        LatencyHistogram h = hostLatency.get(host);
+        if (h == null) {
+            // the check and the insert race, so a few hosts more than the cap may get their own
+            h = hostLatency.size() < MAX_TRACKED_HOSTS
+                    ? hostLatency.computeIfAbsent(host, k -> new LatencyHistogram())
+                    : otherHostLatency;
+        }
+        h.record(latencyNs);
+        if (size > 0) bytes.add(size);
+    }
+
+    /**
+     * Records a finished row.
+     *
+     * @param success true if a PDF was stored
+     * @param outcome "success", "not modified" or the failure reason
+     */
+    void recordOutcome(boolean success, String outcome) {
+        (success ? succeeded : failed).increment();
+        outcomes.computeIfAbsent(outcome != null ? outcome : "unknown", k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Keep-alive model the pipeline reports every attempt's start and end to.
+     */
+    ConnectionReuse connections() {
+        return connections;
+    }
+
+    void recordJournalFlush(long nanos) {
+        journalFlush.record(nanos);
+    }
+
+    void recordReportWrite(long nanos) {
+        reportWriteNs = nanos;
+    }
+
+    /**
+     * Stops the periodic log line and unregisters the MBean; the values stay readable.
+     * Rates are computed up to the first close; closing again does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (endNs != 0) return;
+        endNs = System.nanoTime();
+        if (reporter != null) reporter.shutdownNow();
+        if (registeredAs != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+            } catch (JMException e) {
+                log.debug("Could not unregister {} ({})", registeredAs, e.toString());
+            }
+            registeredAs = null;
+        }
+        // gauges must not keep the finished pipeline reachable
+        bindGauges(() -> 0, () -> 0, () -> 0);
+    }
+
+    // ---------------------------------------------------------------- reading
+
+    LatencyHistogram.Snapshot latency() {
+        return latency.snapshot();
+    }
+
+    /**
+     * Hosts with the highest p95 latency first.
+     *
+     * @param limit max hosts to return
+     */
+    List<String> slowestHosts(int limit) {
+        return hostLatency.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().snapshot()))
+                .sorted(Comparator.comparingDouble((Map.Entry<String, LatencyHistogram.Snapshot> e) -> e.getValue().p95())
+                        .reversed())
+                .limit(limit)
+                .map(e -> e.getKey() + "(" + e.getValue() + ")")
+                .toList();
+    }
+
+    LatencyHistogram.Snapshot journalFlush() {
+        return journalFlush.snapshot();
+    }
+
+    /**
+     * One-line view for the periodic log.
+     */
+    String line() {
+        LatencyHistogram.Snapshot l = latency.snapshot();
+        return String.format("done=%d ok=%d fail=%d inFlight=%d queued=%d limit=%d rate=%s/s%s reuse=%.0f%% latency p50/p95/p99=%.0f/%.0f/%.0f ms",
+                getRowsSucceeded() + getRowsFailed(), getRowsSucceeded(), getRowsFailed(),
+                getInFlight(), getQueueDepth(), getConcurrencyLimit(), humanBytes((long) getBytesPerSecond()),
+                getBandwidthLimit() > 0 ? " (cap " + humanBytes(getBandwidthLimit()) + "/s)" : "",
+                getConnectionReuseRatio() * 100, l.p50(), l.p95(), l.p99());
+    }
+
+    static String humanBytes(long n) {
+        if (n < 1024) return n + " B";
+        if (n < 1024 * 1024) return String.format("%.1f KiB", n / 1024.0);
+        if (n < 1024L * 1024 * 1024) return String.format("%.1f MiB", n / (1024.0 * 1024));
+        return String.format("%.2f GiB", n / (1024.0 * 1024 * 1024));
+    }
+
+    // ---------------------------------------------------------------- MXBean
+
+    @Override
+    public long getElapsedSeconds() {
+        return elapsedNs() / 1_000_000_000;
+    }
+
+    @Override
+    public long getRowsSucceeded() {
+        return succeeded.sum();
+    }
+
+    @Override
+    public long getRowsFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOutcomes() {
+        Map<String, Long> out = new TreeMap<>();
+        outcomes.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.getAsInt();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.getAsInt();
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        long ns = elapsedNs();
+        return ns <= 0 ? 0 : bytes.sum() * 1e9 / ns;
+    }
+
+    @Override
+    public double getLatencyP50Ms() {
+        return latency.percentileMs(0.50);
+    }
+
+    @Override
+    public double getLatencyP95Ms() {
+        return latency.percentileMs(0.95);
+    }
+
+    @Override
+    public double getLatencyP99Ms() {
+        return latency.percentileMs(0.99);
+    }
+
+    @Override
+    public Map<String, String> getHostLatency() {
+        Map<String, String> out = new LinkedHashMap<>();
+        new TreeMap<>(hostLatency).forEach((host, h) -> out.put(host, h.snapshot().toString()));
+        if (otherHostLatency.count() > 0) out.put(OTHER_HOSTS, otherHostLatency.snapshot().toString());
+        return out;
+    }
+
+    @Override
+    public long getRequestsOnReusedConnections() {
+        return connections.reused();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connections.opened();
+    }
+
+    @Override
+    public double getConnectionReuseRatio() {
+        long reused = connections.reused();
+        long total = reused + connections.opened();
+        return total == 0 ? 0 : (double) reused / total;
+    }
+
+    @Override
+    public long getBandwidthLimit() {
+        return BandwidthShaper.global().limit();
+    }
+
+    @Override
+    public void setBandwidthLimit(long bytesPerSecond) {
+        log.info("[METRICS] Bandwidth cap set to {}", bytesPerSecond > 0 ? humanBytes(bytesPerSecond) + "/s" : "none");
+        BandwidthShaper.global().setLimit(bytesPerSecond);
+    }
+
+    @Override
+    public long getBandwidthWaitMs() {
+        return BandwidthShaper.global().waitedMs() - bandwidthWaitBaseMs;
+    }
+
+    @Override
+    public double getJournalFlushP99Ms() {
+        return journalFlush.percentileMs(0.99);
+    }
+
+    @Override
+    public long getReportWriteMs() {
+        return reportWriteNs / 1_000_000;
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    private long elapsedNs() {
+        long end = endNs;
+        return (end != 0 ? end : System.nanoTime()) - startNs;
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // another run in this JVM still holds the name; this one stays log-only
+                log.debug("MBean {} already registered, not exposing this run", name);
+                return;
+            }
+            server.registerMBean(this, name);
+            registeredAs = name;
+        } catch (JMException e) {
+            log.warn("Could not register metrics MBean ({})", e.toString());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.service.core;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link RunMetrics}, registered as "org.example:type=ConverterService,name=RunMetrics"
+ * while a run is in progress (jconsole / VisualVM: MBeans tab).
+ * Latencies are in milliseconds and cover every download attempt, failed ones included.
+ */
+public interface RunMetricsMXBean {
+
+    long getElapsedSeconds();
+
+    long getRowsSucceeded();
+
+    long getRowsFailed();
+
+    /**
+     * @return finished rows per outcome: "success", "not modified" or the failure reason
+     */
+    Map<String, Long> getOutcomes();
+
+    int getInFlight();
+
+    int getQueueDepth();
+
+    int getConcurrencyLimit();
+
+    long getBytesDownloaded();
+
+    double getBytesPerSecond();
+
+    double getLatencyP50Ms();
+
+    double getLatencyP95Ms();
+
+    double getLatencyP99Ms();
+
+    /**
+     * @return per host (the first 256, the rest under "(other hosts)"): sample count and p50/p95/p99/max latency
+     */
+    Map<String, String> getHostLatency();
+
+    /**
+     * @return requests estimated to have run on a kept-alive connection (see ConnectionReuse)
+     */
+    long getRequestsOnReusedConnections();
+
+    /**
+     * @return requests estimated to have opened a new connection
+     */
+    long getConnectionsOpened();
+
+    /**
+     * @return reused / (reused + opened), 0 before the first request
+     */
+    double getConnectionReuseRatio();
+
+    /**
+     * @return cap on the download rate of the process in bytes/second, 0 if none (see BandwidthShaper)
+     */
+    long getBandwidthLimit();
+
+    /**
+     * Changes the cap while the run goes on; 0 removes it.
+     */
+    void setBandwidthLimit(long bytesPerSecond);
+
+    /**
+     * @return time downloads were held back by the cap during this run
+     */
+    long getBandwidthWaitMs();
+
+    double getJournalFlushP99Ms();
+
+    long getReportWriteMs();
+}
@@ -0,0 +1,262 @@
+package org.example.service.core;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * RunOptions holds the tunables for a {@link ConverterService} run; {@code RunOptions.builder().build()} gives the
+ * standard behaviour. Optional features are off by default. Defaults that change what earlier versions did:
+ * transient failures are retried ({@link RetryPolicy#defaults()}), at most 4 downloads run per host, a host's
+ * breaker opens after 5 failures in a row, and a "[METRICS]" line is logged every 10 s.
+ */
+
+@Builder
+@Getter
+public class RunOptions {
+
+    /**
+     * Finished entries buffered before they are written to the result journal.
+     */
+    @Builder.Default
+    private final int journalBatchSize = 50;
+
+    /**
+     * Max time an entry waits in the buffer before it is written anyway.
+     */
+    @Builder.Default
+    private final Duration journalFlushInterval = Duration.ofSeconds(5);
+
+    /**
+     * How download tasks are executed.
+     */
+    @Builder.Default
+    private final ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+    /**
+     * Concurrent downloads in VIRTUAL/ASYNC mode; with adaptiveConcurrency the ceiling in every mode.
+     */
+    @Builder.Default
+    private final int maxInFlight = 64;
+
+    /**
+     * Let {@link ConcurrencyLimiter} raise and lower the download limit from latency and failures.
+     */
+    @Builder.Default
+    private final boolean adaptiveConcurrency = false;
+
+    /**
+     * Floor of the adaptive limit.
+     */
+    @Builder.Default
+    private final int minInFlight = 2;
+
+    /**
+     * Max concurrent downloads against one host (0 = unlimited).
+     */
+    @Builder.Default
+    private final int maxPerHost = 4;
+
+    /**
+     * Max download starts per second per host (0 = no rate limit).
+     */
+    @Builder.Default
+    private final double perHostRatePerSecond = 0;
+
+    /**
+     * Which queued row runs next.
+     */
+    @Builder.Default
+    private final HostOrder hostOrder = HostOrder.ROUND_ROBIN;
+
+    /**
+     * Rows of one host a slot runs in a row with {@link HostOrder#AFFINITY}.
+     */
+    @Builder.Default
+    private final int hostBatchSize = 8;
+
+    /**
+     * Tasks waiting in the host scheduler before the reader is paused.
+     */
+    @Builder.Default
+    private final int maxQueued = 1024;
+
+    /**
+     * Rows read ahead of the filter stage of the {@link DownloadPipeline}.
+     */
+    @Builder.Default
+    private final int rowBuffer = 1024;
+
+    /**
+     * How often and how soon rows that failed transiently are tried again.
+     */
+    @Builder.Default
+    private final RetryPolicy retryPolicy = RetryPolicy.defaults();
+
+    /**
+     * Consecutive failures that open a host's circuit breaker (0 = no breakers).
+     */
+    @Builder.Default
+    private final int breakerFailureThreshold = 5;
+
+    /**
+     * How long an open breaker fails rows fast before letting a probe through.
+     */
+    @Builder.Default
+    private final Duration breakerOpenDuration = Duration.ofSeconds(30);
+
+    /**
+     * How often a "[METRICS]" line is logged during a run (zero = never).
+     */
+    @Builder.Default
+    private final Duration metricsLogInterval = Duration.ofSeconds(10);
+
+    /**
+     * Expose the {@link RunMetrics} of a run in progress as a JMX MBean.
+     */
+    @Builder.Default
+    private final boolean jmx = false;
+
+    /**
+     * Download rate cap of the whole process, changeable during the run (0 = no cap).
+     */
+    @Builder.Default
+    private final long maxBytesPerSecond = 0;
+
+    /**
+     * Resolve the hosts of all rows in parallel before the downloads start ({@link HostWarmup}).
+     */
+    @Builder.Default
+    private final boolean dnsWarmup = false;
+
+    /**
+     * DNS lookups running at once during the warm-up.
+     */
+    @Builder.Default
+    private final int dnsParallelism = 32;
+
+    /**
+     * How long the warm-up waits for lookups before the downloads start anyway.
+     */
+    @Builder.Default
+    private final Duration dnsWarmupTimeout = Duration.ofSeconds(10);
+
+    /**
+     * How long a resolved host is trusted ({@link DnsCache}).
+     */
+    @Builder.Default
+    private final Duration dnsCacheTtl = Duration.ofMinutes(5);
+
+    /**
+     * Hosts kept in the DNS cache.
+     */
+    @Builder.Default
+    private final int dnsCacheSize = 10_000;
+
+    /**
+     * Open a connection to this many of the busiest hosts during the warm-up (0 = none).
+     */
+    @Builder.Default
+    private final int preconnectHosts = 0;
+
+    /**
+     * Probe the file sizes first and start the largest files first ({@link LinkProbe}).
+     */
+    @Builder.Default
+    private final boolean probeSizes = false;
+
+    /**
+     * How many of the largest rows are moved to the front (they are held in memory).
+     */
+    @Builder.Default
+    private final int largestFirstRows = 1024;
+
+    /**
+     * Probes running at once.
+     */
+    @Builder.Default
+    private final int probeParallelism = 32;
+
+    /**
+     * Probe every row into {@link ConverterService#LINK_REPORT} without downloading anything.
+     */
+    @Builder.Default
+    private final boolean checkLinksOnly = false;
+
+    /**
+     * Split the input into this many {@link Shard}s, each run by a process of its own (1 = no sharding).
+     */
+    @Builder.Default
+    private final int shardCount = 1;
+
+    /**
+     * The shard this process runs; -1 = claim free shards until none is left.
+     */
+    @Builder.Default
+    private final int shardIndex = -1;
+
+    /**
+     * What a row's shard is computed from.
+     */
+    @Builder.Default
+    private final ShardBy shardBy = ShardBy.BRNUM;
+
+    /**
+     * How long a shard's lease may go without a heartbeat before another process takes it over.
+     */
+    @Builder.Default
+    private final Duration leaseTimeout = Duration.ofMinutes(2);
+
+    /**
+     * The process finishing the last shard merges all shard reports into the report.
+     */
+    @Builder.Default
+    private final boolean mergeShards = true;
+
+    /**
+     * Keep the PDFs in a content-addressed {@link org.example.service.downloader.PdfStore}
+     * (false = one "file_N.pdf" per row).
+     */
+    @Builder.Default
+    private final boolean contentStore = false;
+
+    public static RunOptions defaults() {
+        return RunOptions.builder().build();
+    }
+
+    /**
+     * How download tasks are executed.
+     * - PLATFORM: pool of platform threads; 4-6 sized from the CPU count, or up to {@code maxInFlight}
+     * when the limit is adaptive
+     * - VIRTUAL: a virtual thread per download, concurrency bounded only by {@code maxInFlight} permits
+     * - ASYNC: {@link org.example.service.downloader.PdfDownloader#downloadAsync} futures driven by a
+     * handful of threads, bounded by {@code maxInFlight} permits (pair with HttpClientPdfDownloader)
+     */
+    public enum ExecutionMode {
+        PLATFORM,
+        VIRTUAL,
+        ASYNC
+    }
+
+    /**
+     * Order in which the {@link HostScheduler} starts queued rows.
+     * - ROUND_ROBIN: one row per host in turn, in input order within a host
+     * - AFFINITY: like ROUND_ROBIN, but a slot whose row has finished takes the next queued row of the
+     * same host, up to {@code hostBatchSize} in a row, before the next host gets it
+     */
+    public enum HostOrder {
+        ROUND_ROBIN,
+        AFFINITY
+    }
+
+    /**
+     * Key a row's {@link Shard} is computed from.
+     * - BRNUM: the BRnum, so all rows of a BRnum land in the same shard (rows without one: row index)
+     * - ROW: the row index, which spreads the rows evenly even if a few BRnums have many rows
+     */
+    public enum ShardBy {
+        BRNUM,
+        ROW
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.service.core;
+
+import org.example.service.reader.ExcelReader;
+
+import java.nio.file.Path;
+
+/**
+ * Shard is one of {@code count} disjoint parts of the input, run by a process of its own with its own
+ * directory, report and journal under {@code <downloadDir>/shards}. A row's shard is a stable hash of its key.
+ *
+ * @param index shard number, 0 to count - 1
+ * @param count number of shards of the run
+ */
+
+record Shard(int index, int count) {
+
+    Shard {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Shard " + index + " of " + count);
+        }
+    }
+
+    /**
+     * True if the row is processed by this shard.
+     */
+    boolean owns(ExcelReader.InputRow row, RunOptions.ShardBy by) {
+        if (count == 1) return true;
+        int h = by == RunOptions.ShardBy.BRNUM && row.BRnum() != null ? row.BRnum().hashCode() : row.rowIndex();
+        return of(h, count) == index;
+    }
+
+    /**
+     * Shard of a key hash: String.hashCode is specified by the JLS, so it is the same in every JVM; the
+     * bits are mixed (murmur3 finalizer) because BRnums differing in the last digit hash to neighbours.
+     */
+    static int of(int hash, int count) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, count);
+    }
+
+    /**
+     * Directory holding the leases, done markers and shard directories of a sharded run.
+     */
+    static Path root(Path downloadDir) {
+        return downloadDir.resolve("shards");
+    }
+
+    /**
+     * @return e.g. "shard-3-of-8", or "shard-03-of-12" (zero-padded, so the directories sort)
+     */
+    String name() {
+        int width = String.valueOf(count - 1).length();
+        return String.format("shard-%0" + width + "d-of-%0" + width + "d", index, count);
+    }
+
+    /**
+     * Download directory of this shard.
+     */
+    Path dir(Path downloadDir) {
+        return root(downloadDir).resolve(name());
+    }
+
+    /**
+     * Report of this shard, named like the run's report.
+     */
+    Path report(Path downloadDir, Path reportFile) {
+        return dir(downloadDir).resolve(reportFile.getFileName());
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+}
@@ -0,0 +1,278 @@
+package org.example.service.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShardLeases coordinates the processes of a sharded run through lease files in {@link Shard#root}, so a shared
+ * filesystem is all they need in common. A lease whose owner sends no heartbeat for {@code leaseTimeout} may be
+ * taken over; a finished shard gets a done marker and is never claimed again.
+ */
+
+class ShardLeases {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardLeases.class);
+
+    private final Path root;
+    private final int count;
+    private final Duration leaseTimeout;
+    private final String owner;
+
+    /**
+     * @param root         {@link Shard#root} of the run
+     * @param count        number of shards
+     * @param leaseTimeout age after which a lease is considered abandoned
+     */
+    ShardLeases(Path root, int count, Duration leaseTimeout) {
+        this.root = root;
+        this.count = count;
+        this.leaseTimeout = leaseTimeout;
+        this.owner = ownerId();
+    }
+
+    /**
+     * A shard held by this process; closing it stops the heartbeat and gives the shard up
+     * (unless it was marked done).
+     */
+    final class Lease implements AutoCloseable {
+        private final Shard shard;
+        private final Path file;
+        private final ScheduledExecutorService heartbeat;
+        private volatile boolean lost;
+
+        private Lease(Shard shard, Path file) {
+            this.shard = shard;
+            this.file = file;
+            this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "lease-" + shard.name());
+                t.setDaemon(true);
+                return t;
+            });
+            long every = Math.max(1, leaseTimeout.toMillis() / 4);
+            heartbeat.scheduleWithFixedDelay(this::touch, every, every, TimeUnit.MILLISECONDS);
+        }
+
+        Shard shard() {
+            return shard;
+        }
+
+        /**
+         * Marks the shard finished, so no process claims it again.
+         *
+         * @param summary one line written into the marker
+         */
+        void done(String summary) {
+            Path marker = doneFile(shard);
+            Path tmp = root.resolve(marker.getFileName() + "." + owner + ".tmp");
+            try {
+                Files.writeString(tmp, owner + "\n" + summary + "\n", StandardCharsets.UTF_8);
+                try {
+                    Files.move(tmp, marker, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, marker, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to mark " + shard + " done", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            heartbeat.shutdownNow();
+            if (lost) return;
+            try {
+                // only remove the lease if it is still ours
+                if (owner.equals(readOwner(file))) Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("[SHARD] Could not remove lease {}: {}", file.getFileName(), e.toString());
+            }
+        }
+
+        private void touch() {
+            try {
+                if (!owner.equals(readOwner(file))) {
+                    lost = true;
+                    log.warn("[SHARD] Lease on {} was taken over by {}; finishing anyway, the merge drops duplicates",
+                            shard, readOwner(file));
+                    heartbeat.shutdown();
+                    return;
+                }
+                // rewriting the same bytes lets the file server stamp the time, rather than this machine's clock
+                Files.writeString(file, owner + "\n", StandardCharsets.UTF_8, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                // a missed heartbeat is harmless as long as the next one gets through in time
+                log.warn("[SHARD] Heartbeat on {} failed: {}", shard, e.toString());
+            }
+        }
+    }
+
+    /**
+     * Claims the given shard.
+     *
+     * @return the lease, or null if the shard is done or held by a live process
+     */
+    Lease claim(Shard shard) {
+        if (isDone(shard)) return null;
+        Path file = leaseFile(shard);
+        try {
+            Files.createDirectories(root);
+            if (create(file)) return new Lease(shard, file);
+            if (!takeOver(file)) return null;
+            // the shard may have been finished by the previous owner just before its lease went stale
+            if (isDone(shard)) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return new Lease(shard, file);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to claim " + shard, e);
+        }
+    }
+
+    /**
+     * Claims the first shard that is neither done nor held by a live process.
+     *
+     * @return the lease, or null if there is none
+     */
+    Lease claimNext() {
+        for (int i = 0; i < count; i++) {
+            Lease lease = claim(new Shard(i, count));
+            if (lease != null) return lease;
+        }
+        return null;
+    }
+
+    /**
+     * Claims the right to merge the shard reports, so two processes finishing at once do not both merge.
+     *
+     * @return a lease on the merge (its {@link Lease#shard()} is meaningless), or null if another process merges
+     */
+    Lease claimMerge() {
+        Path file = root.resolve("merge.lease");
+        try {
+            Files.createDirectories(root);
+            if (create(file) || takeOver(file)) return new Lease(new Shard(0, 1), file);
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to claim the merge", e);
+        }
+    }
+
+    boolean isDone(Shard shard) {
+        return Files.exists(doneFile(shard));
+    }
+
+    /**
+     * Shards without a done marker.
+     */
+    List<Shard> unfinished() {
+        List<Shard> open = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Shard s = new Shard(i, count);
+            if (!isDone(s)) open.add(s);
+        }
+        return open;
+    }
+
+    String owner() {
+        return owner;
+    }
+
+    private Path leaseFile(Shard shard) {
+        return root.resolve(shard.name() + ".lease");
+    }
+
+    private Path doneFile(Shard shard) {
+        return root.resolve(shard.name() + ".done");
+    }
+
+    private boolean create(Path file) throws IOException {
+        try {
+            Files.writeString(file, owner + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes over a lease that has not been touched for {@code leaseTimeout}.
+     *
+     * @return true if the lease is now ours
+     */
+    private boolean takeOver(Path file) throws IOException {
+        if (!stale(file)) return false;
+        Path mine = file.resolveSibling(file.getFileName() + "." + owner + ".stale");
+        try {
+            Files.move(file, mine, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // someone else renamed it first
+            return false;
+        }
+        // between the age check and the rename another process may have taken over and written a fresh lease
+        if (!stale(mine)) {
+            String holder = readOwner(mine);
+            try {
+                // no ATOMIC_MOVE: a rename would silently replace a lease created in the meantime
+                Files.move(mine, file);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(mine);
+            }
+            log.info("[SHARD] {} was just taken over by {}", file.getFileName(), holder);
+            return false;
+        }
+        String previous = readOwner(mine);
+        Files.deleteIfExists(mine);
+        if (!create(file)) return false;
+        log.warn("[SHARD] Took over {} from {} (no heartbeat for {} s)", file.getFileName(), previous,
+                leaseTimeout.toSeconds());
+        return true;
+    }
+
+    private boolean stale(Path file) throws IOException {
+        try {
+            // the file server stamps the time, so only this machine's clock is compared with it
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+            return age > leaseTimeout.toMillis();
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static String readOwner(Path file) throws IOException {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8).strip();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static String ownerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.service.downloader;
+
+import java.io.InterruptedIOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * BandwidthShaper caps the bytes per second of all downloads of the process together, shared evenly by the
+ * downloads in flight. There is one per process, {@link #global()}; a limit of 0 turns shaping off.
+ */
+
+public final class BandwidthShaper {
+
+    /**
+     * Unused transfer time that can be spent at once after a pause.
+     */
+    static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Largest chunk a blocking reader takes at once while shaping, so the bookings of concurrent
+     * downloads interleave finely.
+     */
+    static final int QUANTUM = 16 * 1024;
+
+    private static final BandwidthShaper GLOBAL = new BandwidthShaper();
+
+    // passes held-back demand upstream once it is due; only schedules, so one thread is plenty
+    private static final ScheduledExecutorService RESUMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bandwidth-resume");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long limit;
+    // time at which the timeline is free again
+    private long nextFreeNs = System.nanoTime();
+    private long waitedNs;
+
+    BandwidthShaper() {
+    }
+
+    /**
+     * The shaper shared by all downloads of this process.
+     */
+    public static BandwidthShaper global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @param bytesPerSecond new cap on all downloads together, 0 for none
+     */
+    public void setLimit(long bytesPerSecond) {
+        lock.lock();
+        try {
+            limit = Math.max(0, bytesPerSecond);
+            // start the new rate from now rather than from bookings made at the old one
+            nextFreeNs = Math.min(nextFreeNs, System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return cap in bytes per second, 0 if none
+     */
+    public long limit() {
+        return limit;
+    }
+
+    /**
+     * @return total time downloads were held back so far, in milliseconds
+     */
+    public long waitedMs() {
+        lock.lock();
+        try {
+            return waitedNs / 1_000_000;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Books the transfer of {@code bytes} that have just arrived.
+     *
+     * @return nanoseconds to wait before reading more, 0 if none
+     */
+    long reserve(long bytes) {
+        long l = limit;
+        if (l <= 0 || bytes <= 0) return 0;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            long start = Math.max(nextFreeNs, now - BURST_NANOS);
+            nextFreeNs = start + (long) (bytes * 1e9 / l);
+            long wait = Math.max(0, nextFreeNs - now);
+            waitedNs += wait;
+            return wait;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Books {@code bytes} and sleeps until the booking is due (for blocking readers).
+     */
+    void acquire(long bytes) throws InterruptedIOException {
+        long wait = reserve(bytes);
+        if (wait == 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttled");
+        }
+    }
+
+    /**
+     * @param chunk the reader's usual read size
+     * @return how much to read at once: smaller while shaping
+     */
+    int readSize(int chunk) {
+        return limit > 0 ? Math.min(chunk, QUANTUM) : chunk;
+    }
+
+    /**
+     * Wraps an HttpClient body subscriber so its body is shaped: chunks are requested from the client one at
+     * a time, each is booked as it is handed on, and the next is requested only when that booking is due.
+     */
+    <T> HttpResponse.BodySubscriber<T> throttling(HttpResponse.BodySubscriber<T> downstream) {
+        return new Throttling<>(downstream);
+    }
+
+    private final class Throttling<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final ReentrantLock pumpLock = new ReentrantLock();
+        private Flow.Subscription upstream;
+        // chunks the downstream asked for and has not been given
+        private long demand;
+        // a chunk has been requested upstream and has not arrived
+        private boolean outstanding;
+        private long dueNs;
+        private boolean scheduled;
+
+        Throttling(HttpResponse.BodySubscriber<T> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    pumpLock.lock();
+                    try {
+                        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    } finally {
+                        pumpLock.unlock();
+                    }
+                    pump();
+                }
+
+                @Override
+                public void cancel() {
+                    upstream.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            long bytes = 0;
+            for (ByteBuffer b : item) bytes += b.remaining();
+            long wait = reserve(bytes);
+            pumpLock.lock();
+            try {
+                outstanding = false;
+                dueNs = System.nanoTime() + wait;
+            } finally {
+                pumpLock.unlock();
+            }
+            downstream.onNext(item);
+            pump();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            downstream.onComplete();
+        }
+
+        /**
+         * Requests the next chunk if the downstream wants one and the last booking is due, or schedules
+         * itself for when it is.
+         */
+        private void pump() {
+            pumpLock.lock();
+            try {
+                if (outstanding || scheduled || demand == 0) return;
+                long wait = dueNs - System.nanoTime();
+                if (wait > 0) {
+                    scheduled = true;
+                    RESUMER.schedule(() -> {
+                        pumpLock.lock();
+                        try {
+                            scheduled = false;
+                        } finally {
+                            pumpLock.unlock();
+                        }
+                        pump();
+                    }, wait, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                outstanding = true;
+                if (demand != Long.MAX_VALUE) demand--;
+            } finally {
+                pumpLock.unlock();
+            }
+            upstream.request(1);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package org.example.service.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HttpClientPdfDownloader implements PdfDownloader on top of java.net.http.HttpClient, sharing one client so
+ * connections and TLS sessions are reused. Bodies stream to a temp file without holding a thread; a body that
+ * receives nothing for the request timeout fails as a read timeout ({@link IdleWatchdog}).
+ * Like SimplePdfDownloader it tries the primary URL first and the fallback only on failure.
+ */
+
+public class HttpClientPdfDownloader implements PdfDownloader {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpClientPdfDownloader.class);
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "http-body-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+
+    /**
+     * Defaults matching SimplePdfDownloader: 10 s connect timeout, 30 s until response headers
+     * and at most 30 s without body data, and 4 threads for the client's I/O callbacks.
+     */
+    public HttpClientPdfDownloader() {
+        this(Duration.ofSeconds(10), Duration.ofSeconds(30), 4);
+    }
+
+    /**
+     * @param connectTimeout TCP/TLS connect timeout
+     * @param requestTimeout time allowed until response headers arrive, and between two chunks of the body
+     * @param ioThreads      threads running the client's completion callbacks
+     */
+    public HttpClientPdfDownloader(Duration connectTimeout, Duration requestTimeout, int ioThreads) {
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService io = Executors.newFixedThreadPool(Math.max(1, ioThreads), r -> {
+            Thread t = new Thread(r, "http-io-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .executor(io)
+                .build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public DownloadResult download(String brNum, URL primary, URL fallback, Path target) {
+        return downloadAsync(brNum, primary, fallback, target).join();
+    }
+
+    @Override
+    public CompletableFuture<DownloadResult> downloadAsync(String brNum, URL primary, URL fallback, Path target) {
+        log.info("================= Starting download for BRnum={} ================", brNum);
+        if (primary != null) log.debug("BRnum={} | Trying Primary URL: {}", brNum, primary);
+        if (fallback != null) log.debug("BRnum={} | Backup URL available: {}", brNum, fallback);
+
+        return attempt(brNum, primary, primary, target, null, true)
+                .thenCompose(first -> first.success()
+                        ? CompletableFuture.completedFuture(List.of(first))
+                        : attempt(brNum, fallback, primary, target, first.error(), true)
+                        .thenApply(second -> List.of(first, second)))
+                .thenApply(all -> {
+                    Attempt last = all.get(all.size() - 1);
+                    List<UrlAttempt> tried = all.stream()
+                            .filter(a -> a.url() != null)
+                            .map(a -> new UrlAttempt(a.url(), a.outcome()))
+                            .toList();
+                    if (last.success()) {
+                        return new DownloadResult(brNum, last.url(), true, null, null, last.notModified(), tried, last.sha256());
+                    }
+
+                    String reason = (fallback == null) ? "Primary URL failed, no backup" : "Both Primary and Backup failed";
+                    log.error("BRnum={} | Download failed completely -> {}", brNum, reason);
+                    return new DownloadResult(brNum, null, false, reason,
+                            last.error() != null ? last.error() : reason, false, tried);
+                });
+    }
+
+    /**
+     * Sends a HEAD request through the shared client, which keeps the connection in its pool for
+     * the downloads that follow.
+     */
+    @Override
+    public void preconnect(URL url) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(url.toURI())
+                    .timeout(requestTimeout)
+                    .version("https".equalsIgnoreCase(url.getProtocol())
+                            ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            log.debug("Pre-connect to {} failed ({})", url.getHost(), e.toString());
+        }
+    }
+
+    /**
+     * Same checks as {@link UrlProbe} (HEAD, then a one-byte range request), sent through the shared client.
+     */
+    @Override
+    public Probe probe(URL url) {
+        try {
+            HttpRequest.Builder b = HttpRequest.newBuilder(url.toURI())
+                    .timeout(requestTimeout)
+                    .version("https".equalsIgnoreCase(url.getProtocol())
+                            ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+            HttpResponse<Void> head = client.send(b.copy().method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            Probe p = Probe.of(url, head.statusCode(), head.headers().firstValueAsLong("Content-Length").orElse(-1),
+                    head.headers().firstValue("Content-Type").orElse(null));
+            boolean refused = p.status() == 405 || p.status() == 501;
+            if (!refused && !(p.ok() && p.contentLength() < 0)) return p;
+            try {
+                return firstByte(url, b);
+            } catch (IOException e) {
+                // the HEAD answer was fine, it just had no size
+                return refused ? Probe.failed(url, e) : p;
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return Probe.failed(url, ie);
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return Probe.failed(url, e);
+        }
+    }
+
+    private Probe firstByte(URL url, HttpRequest.Builder b) throws IOException, InterruptedException {
+        HttpResponse<InputStream> first = client.send(b.copy().header("Range", "bytes=0-0").GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        // closing cancels the body, in case the server ignores the range
+        first.body().close();
+        boolean partial = first.statusCode() == 206;
+        long size = partial
+                ? UrlProbe.totalOf(first.headers().firstValue("Content-Range").orElse(null))
+                : first.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return Probe.of(url, partial ? 200 : first.statusCode(), size, first.headers().firstValue("Content-Type").orElse(null));
+    }
+
+    /**
+     * Downloads one URL to the target file.
+     *
+     * @param previousError error of an earlier attempt, kept if this URL is missing
+     * @param conditional   revalidate against the {@link ValidatorCache} entry of the URL, if any
+     * @return attempt outcome; never completes exceptionally
+     */
+    private CompletableFuture<Attempt> attempt(String brNum, URL url, URL primary, Path target, String previousError,
+                                               boolean conditional) {
+        if (url == null) return CompletableFuture.completedFuture(new Attempt(null, false, previousError, false, UrlOutcome.FAILED, null));
+
+        ValidatorCache cache = ValidatorCache.forDirectory(target.toAbsolutePath().getParent());
+        ValidatorCache.Entry cached = conditional ? cache.lookup(url) : null;
+
+        HttpRequest request;
+        try {
+            HttpRequest.Builder b = HttpRequest.newBuilder(url.toURI())
+                    .timeout(requestTimeout)
+                    .version("https".equalsIgnoreCase(url.getProtocol())
+                            ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                    .GET();
+            if (cached != null && cached.etag() != null) b.header("If-None-Match", cached.etag());
+            if (cached != null && cached.lastModified() != null) b.header("If-Modified-Since", cached.lastModified());
+            request = b.build();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            log.warn("BRnum={} | FAILED on {}={} ({})",
+                    brNum, SimplePdfDownloader.labelFor(url, primary), SimplePdfDownloader.shortUrl(url), e.getMessage());
+            return CompletableFuture.completedFuture(new Attempt(url, false, e.getMessage(), false, UrlOutcome.FAILED, null));
+        }
+
+        Path tmp;
+        try {
+            tmp = PdfFileWriter.tempFor(target);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(new Attempt(url, false, e.getMessage(), false, UrlOutcome.TRANSIENT, null));
+        }
+
+        long start = System.nanoTime();
+        return client.sendAsync(request, bodyHandler(tmp, requestTimeout))
+                .handle((resp, ex) -> {
+                    double s = (System.nanoTime() - start) / 1_000_000 / 1000.0;
+                    String label = SimplePdfDownloader.labelFor(url, primary) + "=" + SimplePdfDownloader.shortUrl(url);
+                    try {
+                        if (ex == null && resp.statusCode() == 304 && cached != null) {
+                            if (!cache.restore(cached, target)) return null;
+                            log.info("BRnum={} | NOT MODIFIED -> {} (cached copy, took {} s)", brNum, target.getFileName(), s);
+                            return new Attempt(url, true, null, true, UrlOutcome.OK, cached.sha256());
+                        }
+                        // a 304 without a cached copy has no body to keep, so it fails below
+                        if (ex == null && resp.statusCode() < 400 && resp.statusCode() != 304) {
+                            long bytes = resp.body().size();
+                            long expected = resp.headers().firstValueAsLong("Content-Length").orElse(-1);
+                            if (expected >= 0 && bytes != expected) {
+                                String msg = "Truncated body: got " + bytes + " of " + expected + " bytes";
+                                log.warn("BRnum={} | FAILED on {} after {} s ({})", brNum, label, s, msg);
+                                return new Attempt(url, false, msg, false, UrlOutcome.TRANSIENT, null);
+                            }
+                            PdfSniffer.checkNotEncrypted(tmp);
+                            PdfFileWriter.commit(tmp, target);
+                            String sha = resp.body().sha256();
+                            cache.store(url, resp.headers().firstValue("ETag").orElse(null),
+                                    resp.headers().firstValue("Last-Modified").orElse(null), target, sha);
+                            log.info("BRnum={} | SUCCESS -> {} ({} bytes, took {} s)", brNum, target.getFileName(), bytes, s);
+                            return new Attempt(url, true, null, false, UrlOutcome.OK, sha);
+                        }
+                    } catch (IOException io) {
+                        log.warn("BRnum={} | FAILED on {} after {} s ({})", brNum, label, s, io.toString());
+                        return new Attempt(url, false, io.getMessage(), false, PdfDownloader.classify(io), null);
+                    } finally {
+                        deleteQuietly(tmp);
+                    }
+
+                    if (ex == null) {
+                        HttpStatusException status = new HttpStatusException(resp.statusCode());
+                        log.warn("BRnum={} | FAILED on {} after {} s ({})", brNum, label, s, status.getMessage());
+                        return new Attempt(url, false, status.getMessage(), false, PdfDownloader.classify(status), null);
+                    }
+
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof HttpTimeoutException) {
+                        String type = cause instanceof HttpConnectTimeoutException ? "Connection timeout" : "Read timeout";
+                        log.error("BRnum={} | {} after {} s on {} ({})", brNum, type, s, label, cause.getMessage());
+                    } else {
+                        log.warn("BRnum={} | FAILED on {} after {} s ({})", brNum, label, s, cause.toString());
+                    }
+                    return new Attempt(url, false, cause.getMessage() != null ? cause.getMessage() : cause.toString(), false,
+                            PdfDownloader.classify(cause), null);
+                })
+                // null: 304 for a cached copy that is gone, so ask again without validators
+                .thenCompose(a -> a != null ? CompletableFuture.completedFuture(a)
+                        : attempt(brNum, url, primary, target, previousError, false));
+    }
+
+    /**
+     * Streams 2xx/3xx bodies to the temp file through the PDF sniffer, cancels bodies whose
+     * Content-Type is not a PDF or that stall for {@code idleTimeout}, and discards error and 304 bodies.
+     */
+    private static HttpResponse.BodyHandler<PdfFileWriter.Written> bodyHandler(Path tmp, Duration idleTimeout) {
+        return info -> {
+            if (info.statusCode() >= 400 || info.statusCode() == 304) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            try {
+                PdfSniffer.checkContentType(info.headers().firstValue("Content-Type").orElse(null));
+            } catch (PdfSniffer.NotPdfException e) {
+                return HttpResponse.BodySubscribers.mapping(PdfSniffer.rejecting(e), file -> null);
+            }
+            return new IdleWatchdog<>(idleTimeout, BandwidthShaper.global().throttling(
+                    PdfFileWriter.digesting(PdfSniffer.sniffing(HttpResponse.BodySubscribers.ofFile(tmp)))));
+        };
+    }
+
+    private static void deleteQuietly(Path target) {
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException ignored) {
+            // best effort: leftover temp files are hidden and never mistaken for a download
+        }
+    }
+
+    /**
+     * Fails a body that has received nothing for the idle timeout while data was asked for: the transfer is
+     * cancelled and the response fails with an {@link HttpTimeoutException}. Time in which the downstream asks
+     * for nothing (held back by the {@link BandwidthShaper}) does not count.
+     */
+    private static final class IdleWatchdog<T> implements HttpResponse.BodySubscriber<T> {
+        private final long idleNs;
+        private final HttpResponse.BodySubscriber<T> downstream;
+        // serialises the signals to the downstream with a failure raised by the watchdog
+        private final ReentrantLock lock = new ReentrantLock();
+        private Flow.Subscription upstream;
+        private ScheduledFuture<?> check;
+        // chunks asked for and not delivered yet
+        private long requested;
+        private long lastNs;
+        private boolean done;
+
+        IdleWatchdog(Duration idleTimeout, HttpResponse.BodySubscriber<T> downstream) {
+            this.idleNs = idleTimeout.toNanos();
+            this.downstream = downstream;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), idleNs / 4);
+            lock.lock();
+            try {
+                upstream = subscription;
+                lastNs = System.nanoTime();
+                check = WATCHDOG.scheduleWithFixedDelay(this::check, period, period, TimeUnit.NANOSECONDS);
+            } finally {
+                lock.unlock();
+            }
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    lock.lock();
+                    try {
+                        if (requested == 0) lastNs = System.nanoTime();
+                        requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    } finally {
+                        lock.unlock();
+                    }
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    stop();
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            lock.lock();
+            try {
+                if (done) return;
+                if (requested != Long.MAX_VALUE) requested--;
+                lastNs = System.nanoTime();
+                downstream.onNext(item);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            lock.lock();
+            try {
+                if (finish()) downstream.onError(throwable);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            lock.lock();
+            try {
+                if (finish()) downstream.onComplete();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void check() {
+            lock.lock();
+            try {
+                if (done || requested == 0 || System.nanoTime() - lastNs < idleNs) return;
+                finish();
+                // fail the body first, so the timeout rather than the cancelled connection is reported
+                downstream.onError(new HttpTimeoutException(
+                        "No body data for " + TimeUnit.NANOSECONDS.toSeconds(idleNs) + " s"));
+                upstream.cancel();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void stop() {
+            lock.lock();
+            try {
+                finish();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return false if the body had already finished
+         */
+        private boolean finish() {
+            if (done) return false;
+            done = true;
+            if (check != null) check.cancel(false);
+            return true;
+        }
+    }
+
+    private record Attempt(URL url, boolean success, String error, boolean notModified, UrlOutcome outcome,
+                           String sha256) {
+    }
+}
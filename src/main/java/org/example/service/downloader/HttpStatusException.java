@@ -0,0 +1,22 @@
+package org.example.service.downloader;
+
+import java.io.IOException;
+
+/**
+ * HttpStatusException is thrown when a server answers with an error status, so callers can tell
+ * a retryable 503 from a final 404 without parsing the message.
+ */
+
+final class HttpStatusException extends IOException {
+
+    private final int status;
+
+    HttpStatusException(int status) {
+        super("HTTP error " + status);
+        this.status = status;
+    }
+
+    int status() {
+        return status;
+    }
+}
@@ -0,0 +1,265 @@
+package org.example.service.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PartialDownload keeps an interrupted download so it can be resumed with an HTTP Range request.
+ * - State lives in "&lt;downloadDir&gt;/.partial/" keyed by a hash of the URL, so it survives across runs
+ * whatever the download is named.
+ * - "&lt;key&gt;.part" holds the bytes received so far, "&lt;key&gt;.meta" the URL, validator (strong ETag or
+ * Last-Modified) and expected total size.
+ * - A resume sends "Range: bytes=N-" with "If-Range", so a changed file comes back as a full 200.
+ * - Only one task may use a key at a time; {@link #claim} returns null if it is busy.
+ * - Partials older than {@link #MAX_AGE} or without a validator are discarded.
+ */
+
+final class PartialDownload {
+
+    private static final Logger log = LoggerFactory.getLogger(PartialDownload.class);
+
+    /**
+     * Partials smaller than this are not worth keeping.
+     */
+    private static final long MIN_KEEP_BYTES = 256 * 1024;
+
+    private static final Duration MAX_AGE = Duration.ofDays(7);
+
+    private static final Set<String> IN_USE = ConcurrentHashMap.newKeySet();
+
+    private final String key;
+    private final URL url;
+    private final Path partFile;
+    private final Path metaFile;
+
+    private PartialDownload(String key, URL url, Path dir) {
+        this.key = key;
+        this.url = url;
+        this.partFile = dir.resolve(key + ".part");
+        this.metaFile = dir.resolve(key + ".meta");
+    }
+
+    /**
+     * Reserves the resume slot of a URL.
+     *
+     * @param downloadDir directory the PDFs are written to
+     * @param url         URL being downloaded (http/https only)
+     * @return the slot, or null if the URL is not resumable or another task holds it
+     */
+    static PartialDownload claim(Path downloadDir, URL url) {
+        String protocol = url.getProtocol();
+        if (!"http".equalsIgnoreCase(protocol) && !"https".equalsIgnoreCase(protocol)) return null;
+
+        String key = keyFor(url);
+        if (!IN_USE.add(key)) return null;
+        return new PartialDownload(key, url, downloadDir.resolve(".partial"));
+    }
+
+    /**
+     * Releases the slot taken by {@link #claim}.
+     */
+    void release() {
+        IN_USE.remove(key);
+    }
+
+    /**
+     * @return byte offset to resume from, or 0 if there is nothing usable
+     */
+    long resumeOffset() {
+        try {
+            if (!Files.exists(partFile) || !Files.exists(metaFile)) {
+                discard();
+                return 0;
+            }
+            FileTime modified = Files.getLastModifiedTime(metaFile);
+            Properties meta = readMeta();
+            if (modified.toInstant().isBefore(Instant.now().minus(MAX_AGE))
+                    || !url.toString().equals(meta.getProperty("url"))
+                    || validator(meta) == null) {
+                discard();
+                return 0;
+            }
+            return Files.size(partFile);
+        } catch (IOException e) {
+            discard();
+            return 0;
+        }
+    }
+
+    /**
+     * Adds the Range/If-Range headers for a resume from {@code offset}.
+     */
+    void applyRange(HttpURLConnection http, long offset) throws IOException {
+        if (offset <= 0) return;
+        String validator = validator(readMeta());
+        if (validator == null) return;
+        http.setRequestProperty("Range", "bytes=" + offset + "-");
+        http.setRequestProperty("If-Range", validator);
+    }
+
+    /**
+     * Writes the response body into the partial file and, once complete, moves it onto the target.
+     * On failure the partial is kept for a later resume if the server gave a validator.
+     *
+     * @param in              response body
+     * @param http            connection (already answered)
+     * @param requestedOffset offset sent in the Range header (0 if none)
+     * @param target          final file path
+     * @return size and SHA-256 of the finished file (the bytes kept from earlier runs included)
+     */
+    PdfFileWriter.Written receive(InputStream in, HttpURLConnection http, long requestedOffset, Path target) throws IOException {
+        int code = http.getResponseCode();
+        long offset;
+        long total;
+
+        if (code == HttpURLConnection.HTTP_PARTIAL) {
+            long[] range = parseContentRange(http.getHeaderField("Content-Range"));
+            if (range == null || range[0] != requestedOffset) {
+                discard();
+                throw new IOException("Unexpected Content-Range: " + http.getHeaderField("Content-Range"));
+            }
+            offset = requestedOffset;
+            total = range[1];
+            log.info("Resuming {} at byte {} of {}", SimplePdfDownloader.shortUrl(url), offset, total);
+        } else {
+            if (requestedOffset > 0) {
+                log.info("Server ignored range for {}, downloading from byte 0", SimplePdfDownloader.shortUrl(url));
+            }
+            offset = 0;
+            total = http.getContentLengthLong();
+        }
+
+        writeMeta(http, total);
+
+        PdfFileWriter.Written written;
+        try {
+            written = PdfFileWriter.writeAt(in, partFile, offset, total, PdfFileWriter.sha256());
+        } catch (IOException e) {
+            keepOrDiscard();
+            throw e;
+        }
+
+        if (total >= 0 && written.size() != total) {
+            keepOrDiscard();
+            throw new IOException("Truncated body: got " + written.size() + " of " + total + " bytes");
+        }
+
+        try {
+            PdfSniffer.checkNotEncrypted(partFile);
+        } catch (PdfSniffer.NotPdfException e) {
+            discard();
+            throw e;
+        }
+
+        PdfFileWriter.commit(partFile, target);
+        Files.deleteIfExists(metaFile);
+        return written;
+    }
+
+    /**
+     * Drops the partial and its metadata.
+     */
+    void discard() {
+        try {
+            Files.deleteIfExists(partFile);
+            Files.deleteIfExists(metaFile);
+        } catch (IOException ignored) {
+            // stale partials are also discarded on the next claim
+        }
+    }
+
+    private void keepOrDiscard() {
+        try {
+            if (Files.exists(partFile) && Files.size(partFile) >= MIN_KEEP_BYTES && validator(readMeta()) != null) {
+                log.info("Keeping {} bytes of {} for resume", Files.size(partFile), SimplePdfDownloader.shortUrl(url));
+                return;
+            }
+        } catch (IOException ignored) {
+            // fall through to discard
+        }
+        discard();
+    }
+
+    private void writeMeta(HttpURLConnection http, long total) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("url", url.toString());
+        meta.setProperty("total", String.valueOf(total));
+
+        String etag = http.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) meta.setProperty("etag", etag);
+        String lastModified = http.getHeaderField("Last-Modified");
+        if (lastModified != null) meta.setProperty("lastModified", lastModified);
+        if ("none".equalsIgnoreCase(http.getHeaderField("Accept-Ranges"))) meta.setProperty("noRanges", "true");
+
+        Files.createDirectories(metaFile.getParent());
+        try (OutputStream os = Files.newOutputStream(metaFile)) {
+            meta.store(os, null);
+        }
+    }
+
+    private Properties readMeta() throws IOException {
+        Properties meta = new Properties();
+        if (!Files.exists(metaFile)) return meta;
+        try (InputStream is = Files.newInputStream(metaFile)) {
+            meta.load(is);
+        }
+        return meta;
+    }
+
+    /**
+     * Strong ETag if present, else Last-Modified; null if the server does not support ranges or gave neither.
+     */
+    private static String validator(Properties meta) {
+        if ("true".equals(meta.getProperty("noRanges"))) return null;
+        String etag = meta.getProperty("etag");
+        return etag != null ? etag : meta.getProperty("lastModified");
+    }
+
+    /**
+     * Parses "bytes start-end/total".
+     *
+     * @return {start, total} (total -1 if "*"), or null if malformed
+     */
+    static long[] parseContentRange(String header) {
+        if (header == null || !header.startsWith("bytes ")) return null;
+        try {
+            String spec = header.substring(6).trim();
+            int dash = spec.indexOf('-');
+            int slash = spec.indexOf('/');
+            if (dash < 0 || slash < dash) return null;
+            long start = Long.parseLong(spec.substring(0, dash).trim());
+            String totalStr = spec.substring(slash + 1).trim();
+            long total = "*".equals(totalStr) ? -1 : Long.parseLong(totalStr);
+            return new long[]{start, total};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String keyFor(URL url) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(url.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(d, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package org.example.service.downloader;
 
 
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * PdfDownloader defines the responsibility of downloading PDF files from given URLs.
@@ -23,10 +26,125 @@ public interface PdfDownloader {
      */
     DownloadResult download(String brNum, URL primary, URL fallback, Path target);
 
+    /**
+     * Asynchronous variant of {@link #download(String, URL, URL, Path)}.
+     * The default runs the blocking download on the common pool; non-blocking implementations
+     * override it so no thread is held while bytes are in transit.
+     *
+     * @return future completed with the download outcome (never completed exceptionally)
+     */
+    default CompletableFuture<DownloadResult> downloadAsync(String brNum, URL primary, URL fallback, Path target) {
+        return CompletableFuture.supplyAsync(() -> download(brNum, primary, fallback, target));
+    }
+
+    /**
+     * Opens a connection to the URL's host ahead of the first download there, so that download does not
+     * pay for the TCP/TLS handshake. Best effort: never throws, failures are ignored.
+     * The default does nothing.
+     */
+    default void preconnect(URL url) {
+    }
+
+    /**
+     * Checks a URL without downloading its body: a HEAD request, or a one-byte range request where
+     * HEAD is refused or tells no size. The default uses HttpURLConnection (10 s connect, 30 s read).
+     *
+     * @return what was found out; never throws
+     */
+    default Probe probe(URL url) {
+        return UrlProbe.probe(url, 10_000, 30_000);
+    }
+
+    /**
+     * Classifies why a URL failed.
+     * - TRANSIENT: timeouts, connection errors, truncated bodies, 408/425/429 and 5xx; may work later
+     * - FAILED: the server answered but the answer is final (other 4xx, not a PDF, encrypted)
+     */
+    static UrlOutcome classify(Throwable error) {
+        if (error instanceof PdfSniffer.NotPdfException) return UrlOutcome.FAILED;
+        if (error instanceof HttpStatusException hs) {
+            int s = hs.status();
+            return s == 408 || s == 425 || s == 429 || s >= 500 ? UrlOutcome.TRANSIENT : UrlOutcome.FAILED;
+        }
+        if (error instanceof java.net.MalformedURLException || error instanceof java.net.URISyntaxException
+                || error instanceof IllegalArgumentException) {
+            return UrlOutcome.FAILED;
+        }
+        return UrlOutcome.TRANSIENT;
+    }
+
+    /**
+     * Outcome of one URL within a download.
+     */
+    enum UrlOutcome {
+        OK,
+        FAILED,
+        TRANSIENT
+    }
+
+    /**
+     * One URL that was actually requested, with its outcome. URLs that were never tried, or
+     * cancelled because the other URL won a hedge, are not listed.
+     */
+    record UrlAttempt(URL url, UrlOutcome outcome) {
+    }
+
+    /**
+     * What a {@link #probe} found out about a URL.
+     *
+     * @param url           URL probed
+     * @param outcome       OK if it looks downloadable; FAILED/TRANSIENT as for a download ({@link #classify})
+     * @param status        HTTP status of the answer (0 if there was none)
+     * @param contentLength body size in bytes, -1 if the server did not tell
+     * @param error         why the URL is not OK, or null
+     */
+    record Probe(URL url, UrlOutcome outcome, int status, long contentLength, String error) {
+
+        /**
+         * Probe of an answer: an error status or a non-PDF Content-Type fails it, like a download.
+         */
+        static Probe of(URL url, int status, long contentLength, String contentType) {
+            try {
+                if (status >= 400) throw new HttpStatusException(status);
+                PdfSniffer.checkContentType(contentType);
+                return new Probe(url, UrlOutcome.OK, status, contentLength, null);
+            } catch (IOException e) {
+                return new Probe(url, classify(e), status, contentLength, e.getMessage());
+            }
+        }
+
+        static Probe failed(URL url, Throwable error) {
+            return new Probe(url, classify(error), 0, -1, error.getMessage() != null ? error.getMessage() : error.toString());
+        }
+
+        public boolean ok() {
+            return outcome == UrlOutcome.OK;
+        }
+    }
 
     /**
      * Simple result object for downloading attempt.
+     * cacheHit is true when the server answered 304 Not Modified and the cached copy was reused.
+     * attempts lists the URLs tried, in order (used for retries and circuit breakers).
+     * sha256 is the hex SHA-256 of the downloaded file if it was computed on the way, else null.
      */
-    record DownloadResult(String BRnum, URL urlUsed, boolean success, String reason, String errorMessage) {
+    record DownloadResult(String BRnum, URL urlUsed, boolean success, String reason, String errorMessage,
+                          boolean cacheHit, List<UrlAttempt> attempts, String sha256) {
+
+        public DownloadResult(String BRnum, URL urlUsed, boolean success, String reason, String errorMessage) {
+            this(BRnum, urlUsed, success, reason, errorMessage, false, List.of());
+        }
+
+        public DownloadResult(String BRnum, URL urlUsed, boolean success, String reason, String errorMessage,
+                              boolean cacheHit, List<UrlAttempt> attempts) {
+            this(BRnum, urlUsed, success, reason, errorMessage, cacheHit, attempts, null);
+        }
+
+        /**
+         * @return true if the download failed and at least one URL failed in a way that may pass later
+         */
+        public boolean retryable() {
+            return !success && attempts.stream().anyMatch(a -> a.outcome() == UrlOutcome.TRANSIENT);
+        }
     }
 }
@@ -0,0 +1,240 @@
+package org.example.service.downloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PdfFileWriter is the shared write path for downloaded files: bytes go through a FileChannel into a
+ * temp file that is size-checked, fsynced and moved onto the target only on success.
+ * The SHA-256 is computed while the body streams and returned with the size ({@link Written}).
+ */
+
+final class PdfFileWriter {
+
+    /**
+     * Bytes per read from the body and write to the file.
+     */
+    private static final int CHUNK = 64 * 1024;
+
+    private PdfFileWriter() {
+    }
+
+    /**
+     * A file as written.
+     *
+     * @param size   bytes
+     * @param sha256 SHA-256 of the content, lowercase hex
+     */
+    record Written(long size, String sha256) {
+    }
+
+    /**
+     * Streams {@code in} to {@code target} via a temp file and atomic move.
+     *
+     * @param in            response body
+     * @param contentLength expected size in bytes, or &lt; 0 if unknown
+     * @param target        final path
+     * @return size and SHA-256 of the file written
+     */
+    static Written write(InputStream in, long contentLength, Path target) throws IOException {
+        Path tmp = tempFor(target);
+        try {
+            long written;
+            MessageDigest md = sha256();
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (contentLength > 0) preallocate(ch, contentLength);
+
+                long[] pos = {0};
+                copy(in, ch, pos, md);
+                written = pos[0];
+
+                if (contentLength >= 0 && written != contentLength) {
+                    throw new IOException("Truncated body: got " + written + " of " + contentLength + " bytes");
+                }
+                ch.truncate(written);
+                ch.force(false);
+            }
+            PdfSniffer.checkNotEncrypted(tmp);
+            commit(tmp, target);
+            return new Written(written, hex(md));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Writes {@code in} into {@code file} starting at {@code offset}, keeping the bytes before it
+     * (used to resume a partial download). Anything after the offset is dropped first.
+     * When the total size is known the file is sized up front, as in {@link #write}; whatever the body
+     * does not fill is cut off again, so the file never claims bytes that were not received.
+     *
+     * @param total expected size of the whole file in bytes, or &lt; 0 if unknown
+     * @param md    fresh digest, fed with the bytes before the offset (read back from the file) and then the body
+     * @return size and SHA-256 of the file afterwards
+     */
+    static Written writeAt(InputStream in, Path file, long offset, long total, MessageDigest md) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ch.truncate(offset);
+            digestPrefix(ch, offset, md);
+            if (total > offset) preallocate(ch, total);
+            long[] pos = {offset};
+            try {
+                copy(in, ch, pos, md);
+            } finally {
+                // make what we have durable, complete or not, so a resume can build on it
+                ch.truncate(pos[0]);
+                ch.force(false);
+            }
+            return new Written(pos[0], hex(md));
+        }
+    }
+
+    /**
+     * Feeds the first {@code length} bytes of the file to the digest.
+     */
+    private static void digestPrefix(FileChannel ch, long length, MessageDigest md) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(CHUNK);
+        long pos = 0;
+        while (pos < length) {
+            bb.clear().limit((int) Math.min(CHUNK, length - pos));
+            int n = ch.read(bb, pos);
+            if (n < 0) throw new IOException("Partial file shorter than " + length + " bytes");
+            bb.flip();
+            md.update(bb);
+            pos += n;
+        }
+    }
+
+    /**
+     * Copies {@code in} to {@code ch} from position {@code pos[0]} until end of stream, advancing
+     * {@code pos[0]} past every byte written, so the caller knows how far it got if the body fails.
+     * Not transferFrom over Channels.newChannel: that adapter reads under a monitor, which pins a virtual
+     * thread to its carrier for the whole transfer.
+     *
+     * @param md digest fed with every byte, or null
+     */
+    private static void copy(InputStream in, FileChannel ch, long[] pos, MessageDigest md) throws IOException {
+        BandwidthShaper shaper = BandwidthShaper.global();
+        byte[] buf = new byte[CHUNK];
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        int n;
+        while ((n = in.read(buf, 0, shaper.readSize(CHUNK))) >= 0) {
+            if (md != null) md.update(buf, 0, n);
+            bb.clear().limit(n);
+            while (bb.hasRemaining()) {
+                pos[0] += ch.write(bb, pos[0]);
+            }
+            shaper.acquire(n);
+        }
+    }
+
+    /**
+     * Creates an empty hidden temp file next to the target.
+     */
+    static Path tempFor(Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, "." + target.getFileName() + "-", ".part");
+    }
+
+    /**
+     * Moves a finished temp file onto the target, atomically where the filesystem allows it.
+     */
+    static void commit(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads the file to compute its SHA-256, for files whose digest is not known.
+     */
+    static String sha256Of(Path file) throws IOException {
+        MessageDigest md = sha256();
+        byte[] buf = new byte[CHUNK];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) >= 0) md.update(buf, 0, n);
+        }
+        return hex(md);
+    }
+
+    /**
+     * Wraps an HttpClient body subscriber writing to a file so the size and SHA-256 of the body are computed
+     * on the way and become the body of the response.
+     */
+    static HttpResponse.BodySubscriber<Written> digesting(HttpResponse.BodySubscriber<Path> downstream) {
+        MessageDigest md = sha256();
+        AtomicLong size = new AtomicLong();
+        return new HttpResponse.BodySubscriber<>() {
+            @Override
+            public CompletionStage<Written> getBody() {
+                // the downstream completes only after onComplete below, so the digest is done by then
+                return downstream.getBody().thenApply(file -> new Written(size.get(), hex(md)));
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                downstream.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> item) {
+                for (ByteBuffer b : item) {
+                    size.addAndGet(b.remaining());
+                    md.update(b.duplicate());
+                }
+                downstream.onNext(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                downstream.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                downstream.onComplete();
+            }
+        };
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String hex(MessageDigest md) {
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Extends the file to its final size before writing (writing the last byte), so the filesystem
+     * can lay it out in one go where it supports it; the body then overwrites from position 0.
+     */
+    private static void preallocate(FileChannel ch, long size) throws IOException {
+        ch.write(ByteBuffer.wrap(new byte[]{0}), size - 1);
+    }
+}
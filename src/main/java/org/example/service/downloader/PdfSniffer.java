@@ -0,0 +1,267 @@
+package org.example.service.downloader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * PdfSniffer decides early whether a response is a PDF, so HTML landing pages, login walls and
+ * error pages served with 200 are rejected after a few bytes instead of being saved as a PDF.
+ * - Content-Type: obvious non-PDF types (text/*, html, json, xml, images) are rejected before the body is read.
+ * - Magic bytes: "%PDF-" must appear within the first {@link #SNIFF_BYTES} bytes; a body starting
+ * with '&lt;' is rejected as soon as that is seen.
+ * - Encryption: a finished file whose trailer names an /Encrypt dictionary is rejected as well.
+ * Rejections throw {@link NotPdfException}, which the downloaders treat like any failed URL (fallback next).
+ */
+
+final class PdfSniffer {
+
+    /**
+     * PDF readers accept the header anywhere in the first 1024 bytes.
+     */
+    static final int SNIFF_BYTES = 1024;
+
+    /**
+     * Bytes scanned at each end of a finished file for the trailer's /Encrypt entry.
+     */
+    private static final int TRAILER_SCAN_BYTES = 64 * 1024;
+
+    private static final byte[] MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ENCRYPT = "/Encrypt".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Set<String> NON_PDF_TYPES = Set.of(
+            "application/json", "application/javascript", "application/xml", "application/xhtml+xml");
+
+    private PdfSniffer() {
+    }
+
+    /**
+     * Rejects responses whose Content-Type is clearly not a PDF. Missing and generic binary types
+     * (e.g. application/octet-stream) pass, since many servers send those for PDFs.
+     */
+    static void checkContentType(String contentType) throws NotPdfException {
+        if (contentType == null || contentType.isBlank()) return;
+        String type = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        if (type.startsWith("text/") || type.startsWith("image/") || type.startsWith("video/")
+                || type.startsWith("audio/") || NON_PDF_TYPES.contains(type)) {
+            throw new NotPdfException("Not a PDF (Content-Type " + type + ")");
+        }
+    }
+
+    /**
+     * Reads just enough of {@code in} to find the PDF header and returns a stream that replays those
+     * bytes followed by the rest of the body.
+     */
+    static InputStream sniff(InputStream in) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        int len = 0;
+        while (len < head.length) {
+            int n = in.read(head, len, head.length - len);
+            if (n < 0) break;
+            len += n;
+            Verdict v = verdict(head, len, false);
+            if (v == Verdict.PDF) break;
+            if (v == Verdict.NOT_PDF) throw notPdf(head, len);
+        }
+        if (verdict(head, len, true) != Verdict.PDF) throw notPdf(head, len);
+        return new SequenceInputStream(new ByteArrayInputStream(head, 0, len), in);
+    }
+
+    /**
+     * Wraps an HttpClient body subscriber so the first bytes are checked as they pass through;
+     * a non-PDF body cancels the transfer and fails the response with {@link NotPdfException}.
+     */
+    static HttpResponse.BodySubscriber<Path> sniffing(HttpResponse.BodySubscriber<Path> downstream) {
+        return new SniffingSubscriber(downstream);
+    }
+
+    /**
+     * Subscriber that cancels the transfer right away, for responses rejected by their headers.
+     */
+    static HttpResponse.BodySubscriber<Path> rejecting(NotPdfException reason) {
+        return new HttpResponse.BodySubscriber<>() {
+            @Override
+            public CompletionStage<Path> getBody() {
+                return CompletableFuture.failedFuture(reason);
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+    }
+
+    /**
+     * Rejects a finished PDF if its trailer refers to an /Encrypt dictionary. Only the first and
+     * last {@link #TRAILER_SCAN_BYTES} are read: the trailer sits at the end, or after the first
+     * page's cross-reference section in linearized files.
+     */
+    static void checkNotEncrypted(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (containsEncrypt(ch, 0, Math.min(size, TRAILER_SCAN_BYTES))
+                    || (size > TRAILER_SCAN_BYTES
+                    && containsEncrypt(ch, Math.max(TRAILER_SCAN_BYTES, size - TRAILER_SCAN_BYTES), size))) {
+                throw new NotPdfException("Encrypted PDF");
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    private enum Verdict {PDF, NOT_PDF, UNDECIDED}
+
+    private static Verdict verdict(byte[] head, int len, boolean complete) {
+        if (indexOf(head, len, MAGIC) >= 0) return Verdict.PDF;
+
+        int first = 0;
+        // skip a UTF-8 BOM and whitespace before looking at the first real character
+        if (len >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) first = 3;
+        while (first < len && Character.isWhitespace(head[first])) first++;
+        if (first < len && head[first] == '<') return Verdict.NOT_PDF;
+
+        return complete || len >= SNIFF_BYTES ? Verdict.NOT_PDF : Verdict.UNDECIDED;
+    }
+
+    private static NotPdfException notPdf(byte[] head, int len) {
+        if (len == 0) return new NotPdfException("Not a PDF (empty body)");
+        String start = new String(head, 0, Math.min(len, 40), StandardCharsets.ISO_8859_1)
+                .replaceAll("[^\\x20-\\x7E]", ".").trim();
+        return new NotPdfException("Not a PDF (starts with \"" + start + "\")");
+    }
+
+    private static boolean containsEncrypt(FileChannel ch, long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+        while (buf.hasRemaining() && ch.read(buf, from + buf.position()) > 0) {
+            // read the whole window
+        }
+        byte[] bytes = buf.array();
+        int len = buf.position();
+        for (int i = indexOf(bytes, len, ENCRYPT, 0); i >= 0; i = indexOf(bytes, len, ENCRYPT, i + 1)) {
+            int next = i + ENCRYPT.length;
+            // "/Encrypt 12 0 R" or "/Encrypt <<", but not "/EncryptMetadata"
+            if (next >= len || !Character.isLetter(bytes[next])) return true;
+        }
+        return false;
+    }
+
+    private static int indexOf(byte[] data, int len, byte[] pattern) {
+        return indexOf(data, len, pattern, 0);
+    }
+
+    private static int indexOf(byte[] data, int len, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= len - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The response is not a usable PDF (wrong type, wrong magic bytes or encrypted).
+     */
+    static final class NotPdfException extends IOException {
+        NotPdfException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Passes body buffers straight through to {@code downstream} while copying the first
+     * {@link #SNIFF_BYTES} aside; cancels the transfer once they show the body is not a PDF.
+     */
+    private static final class SniffingSubscriber implements HttpResponse.BodySubscriber<Path> {
+        private final HttpResponse.BodySubscriber<Path> downstream;
+        private final byte[] head = new byte[SNIFF_BYTES];
+        private int len;
+        private boolean decided;
+        private boolean rejected;
+        private Flow.Subscription subscription;
+
+        SniffingSubscriber(HttpResponse.BodySubscriber<Path> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public CompletionStage<Path> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (rejected) return;
+            if (!decided) {
+                for (ByteBuffer b : items) {
+                    ByteBuffer view = b.duplicate();
+                    int n = Math.min(view.remaining(), head.length - len);
+                    view.get(head, len, n);
+                    len += n;
+                }
+                Verdict v = verdict(head, len, false);
+                if (v == Verdict.NOT_PDF) {
+                    reject();
+                    return;
+                }
+                decided = v == Verdict.PDF;
+            }
+            downstream.onNext(items);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!rejected) downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (rejected) return;
+            if (!decided && verdict(head, len, true) != Verdict.PDF) {
+                rejected = true;
+                downstream.onError(notPdf(head, len));
+                return;
+            }
+            downstream.onComplete();
+        }
+
+        private void reject() {
+            rejected = true;
+            subscription.cancel();
+            downstream.onError(notPdf(head, len));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.example.service.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * PdfStore keeps downloaded PDFs by content under "store/sha256/", so identical files are stored once, with a
+ * stable hard link per BRnum under "store/by-brnum/" and a log of every BRnum stored in "store/brnums.tsv".
+ */
+
+public final class PdfStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfStore.class);
+
+    private final Path downloadDir;
+    private final Path root;
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private final AtomicBoolean linksUnsupported = new AtomicBoolean();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Where a stored download lives.
+     *
+     * @param sha256       content hash, lowercase hex
+     * @param size         bytes
+     * @param file         the BRnum's file (its link, or the blob)
+     * @param deduplicated true if the content was stored already and this download was dropped
+     */
+    public record Stored(String sha256, long size, Path file, boolean deduplicated) {
+    }
+
+    /**
+     * @param downloadDir directory whose "store" subdirectory holds the store
+     */
+    public PdfStore(Path downloadDir) {
+        this.downloadDir = downloadDir;
+        this.root = downloadDir.resolve("store");
+    }
+
+    /**
+     * Moves a finished download into the store.
+     *
+     * @param brNum  BRnum the file belongs to (null = blob only)
+     * @param staged the downloaded file; gone afterwards
+     * @param sha256 SHA-256 of the file as computed while it was written, or null to read the file for it
+     */
+    public Stored put(String brNum, Path staged, String sha256) throws IOException {
+        String sha = sha256 != null ? sha256 : PdfFileWriter.sha256Of(staged);
+        long size = Files.size(staged);
+
+        Path blob = blob(sha);
+        boolean duplicate = Files.exists(blob);
+        if (duplicate) {
+            Files.delete(staged);
+        } else {
+            Files.createDirectories(blob.getParent());
+            // a blob of the same name has the same content, so a racing writer replacing it does no harm
+            PdfFileWriter.commit(staged, blob);
+        }
+        ValidatorCache.forDirectory(downloadDir).moved(staged, blob);
+
+        Path file = brNum != null ? link(brNum, blob) : blob;
+        stored.increment();
+        if (duplicate) {
+            deduplicated.increment();
+            bytesSaved.add(size);
+            log.debug("BRnum={} | Same content as an earlier download, kept once as {}", brNum, blob.getFileName());
+        }
+        record(brNum, sha, size, file);
+        return new Stored(sha, size, file, duplicate);
+    }
+
+    /**
+     * @return path of the blob of a content hash
+     */
+    public Path blob(String sha256) {
+        return root.resolve("sha256").resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4))
+                .resolve(sha256 + ".pdf");
+    }
+
+    /**
+     * @return the stable path of a BRnum's file (a link to its blob)
+     */
+    public Path byBRnum(String brNum) {
+        String name = safeName(brNum);
+        String fan = String.format("%02x", brNum.hashCode() & 0xff);
+        return root.resolve("by-brnum").resolve(fan).resolve(name + ".pdf");
+    }
+
+    /**
+     * @return downloads stored so far by this instance
+     */
+    public long stored() {
+        return stored.sum();
+    }
+
+    /**
+     * @return downloads whose content was stored already
+     */
+    public long deduplicated() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * @return bytes not written again thanks to deduplication
+     */
+    public long bytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    /**
+     * Points the BRnum's link at the blob: a new link under a temporary name, renamed over the old one,
+     * so readers see either the old or the new file.
+     */
+    private Path link(String brNum, Path blob) throws IOException {
+        if (linksUnsupported.get()) return blob;
+        Path link = byBRnum(brNum);
+        Files.createDirectories(link.getParent());
+        Path tmp = link.resolveSibling("." + link.getFileName() + "." + Thread.currentThread().threadId() + ".link");
+        try {
+            Files.deleteIfExists(tmp);
+            Files.createLink(tmp, blob);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            if (linksUnsupported.compareAndSet(false, true)) {
+                log.warn("[STORE] Hard links not supported under {} ({}); reporting blob paths instead", root, e.toString());
+            }
+            return blob;
+        }
+        PdfFileWriter.commit(tmp, link);
+        return link;
+    }
+
+    private void record(String brNum, String sha, long size, Path file) {
+        String line = String.join("\t", brNum != null ? brNum : "", sha, String.valueOf(size),
+                downloadDir.relativize(file).toString());
+        indexLock.lock();
+        try {
+            Files.createDirectories(root);
+            Files.writeString(root.resolve("brnums.tsv"), line + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // the links and the report hold the same mapping, so losing a line is not fatal
+            log.warn("[STORE] Could not record BRnum={} in the store index ({})", brNum, e.toString());
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * BRnum as a file name: anything but letters, digits, '.', '-' and '_' becomes '_'.
+     */
+    private static String safeName(String brNum) {
+        String name = brNum.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.startsWith(".") ? "_" + name.substring(1) : name;
+    }
+}
@@ -5,17 +5,27 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * SimplePdfDownloader implements PdfDownloader using HttpURLConnection.
  * It enforces connection and read timeouts, and only reports error if both URLs fail.
  * Also logs time taken for each download.
+ * Interrupted downloads are resumed ({@link PartialDownload}), known URLs revalidated ({@link ValidatorCache})
+ * and non-PDF answers rejected early ({@link PdfSniffer}); optionally the backup URL is hedged.
  */
 
 public class SimplePdfDownloader implements PdfDownloader {
@@ -28,76 +38,434 @@ public class SimplePdfDownloader implements PdfDownloader {
     private final int connectTimeout = 10_000;
     private final int readTimeout = 30_000;
 
+    /**
+     * Hedging settings
+     * - hedgeDelay: wait this long for the primary's first byte before starting the backup (null = off)
+     * - hedgePercentile: if &gt; 0, use this percentile of observed time-to-first-byte instead, once
+     * enough samples exist (never below hedgeDelay)
+     */
+    private final Duration hedgeDelay;
+    private final double hedgePercentile;
+    private final LatencyWindow firstByteLatency = new LatencyWindow(256);
+
     private static final Logger log = LoggerFactory.getLogger(SimplePdfDownloader.class);
 
+    /**
+     * Sequential downloader: primary first, backup only after the primary has failed.
+     */
+    public SimplePdfDownloader() {
+        this(null, 0);
+    }
+
+    /**
+     * Hedging downloader.
+     *
+     * @param hedgeDelay      how long the primary may stay silent before the backup is started
+     * @param hedgePercentile percentile (e.g. 0.95) of observed time-to-first-byte to use as delay, 0 = fixed delay
+     */
+    public SimplePdfDownloader(Duration hedgeDelay, double hedgePercentile) {
+        this.hedgeDelay = hedgeDelay;
+        this.hedgePercentile = hedgePercentile;
+    }
+
     @Override
     public DownloadResult download(String brNum, URL primary, URL fallback, Path target) {
         log.info("================= Starting download for BRnum={} ================", brNum);
         if (primary != null) log.debug("BRnum={} | Trying Primary URL: {}", brNum, primary);
         if (fallback != null) log.debug("BRnum={} | Backup URL available: {}", brNum, fallback);
 
+        if (hedgeDelay != null && primary != null && fallback != null) {
+            return downloadHedged(brNum, primary, fallback, target);
+        }
+
         IOException lastError = null;
+        List<UrlAttempt> tried = new ArrayList<>(2);
 
         for (URL url : new URL[]{primary, fallback}) {
             if (url == null) continue;
 
-            long start = System.nanoTime();
-            try (InputStream in = open(url);
-                 OutputStream out = Files.newOutputStream(target)) {
-
-                in.transferTo(out);
-                long ms = (System.nanoTime() - start) / 1_000_000;
-                log.info("BRnum={} | SUCCESS -> {} (took {} s)", brNum, target.getFileName(), ms / 1000.0);
-                return new DownloadResult(brNum, url, true, null, null);
-
-            } catch (SocketTimeoutException te) {
-                long ms = (System.nanoTime() - start) / 1_000_000;
-                String type = te.getMessage() != null && te.getMessage().toLowerCase().contains("connect")
-                        ? "Connection timeout" : "Read timeout";
-                log.error("BRnum={} | {} after {} s on {} ({})",
-                        brNum, type, ms / 1000.0,
-                        labelFor(url, primary) + "=" + shortUrl(url),
-                        te.getMessage());
-                lastError = te;
+            try {
+                Attempt attempt = new Attempt();
+                attempt.url = url;
+                fetch(brNum, url, primary, target, attempt);
+                remember(attempt, target);
+                tried.add(new UrlAttempt(url, UrlOutcome.OK));
+                return new DownloadResult(brNum, url, true, null, null, attempt.notModified, tried, attempt.sha256);
+            } catch (IOException e) {
+                lastError = e;
+                tried.add(new UrlAttempt(url, PdfDownloader.classify(e)));
+            }
+        }
+
+        return failed(brNum, fallback, lastError, tried);
+    }
+
+    /**
+     * Sends a HEAD request and closes it into the JDK's keep-alive cache, from where the next
+     * download to the same host picks the connection up. The cache keeps idle connections only
+     * briefly (5 s unless the server's Keep-Alive header says otherwise), so this pays off when the
+     * downloads to the host start right after.
+     */
+    @Override
+    public void preconnect(URL url) {
+        try {
+            if (!(url.openConnection() instanceof HttpURLConnection http)) return;
+            http.setConnectTimeout(connectTimeout);
+            http.setReadTimeout(readTimeout);
+            http.setRequestMethod("HEAD");
+            http.getResponseCode();
+            // closing the (empty) body rather than disconnecting keeps the connection for reuse
+            http.getInputStream().close();
+        } catch (IOException | RuntimeException e) {
+            log.debug("Pre-connect to {} failed ({})", url.getHost(), e.toString());
+        }
+    }
+
+    /**
+     * Races primary and backup: the backup only starts if the primary has not produced its first
+     * byte within the hedge delay (or failed before that). Each side writes to its own part file and
+     * the winner is moved onto the target.
+     */
+    private DownloadResult downloadHedged(String brNum, URL primary, URL fallback, Path target) {
+        Path primaryPart = target.resolveSibling(target.getFileName() + ".primary.part");
+        Path backupPart = target.resolveSibling(target.getFileName() + ".backup.part");
 
+        Attempt first = start(brNum, primary, primary, primaryPart);
+        Attempt second = null;
+        try {
+            long delayMs = currentHedgeDelayMs();
+            boolean answered = first.firstByte.await(delayMs, TimeUnit.MILLISECONDS);
+
+            if (answered && !first.result.isDone()) {
+                // primary is streaming: no hedge, just wait for it
+                first.result.get();
+            } else if (!answered) {
+                log.info("BRnum={} | Primary silent after {} ms, hedging with Backup URL", brNum, delayMs);
+            }
+
+            if (!first.succeeded()) {
+                second = start(brNum, fallback, primary, backupPart);
+            }
+
+            Attempt winner = awaitWinner(first, second);
+            if (winner != null) {
+                Attempt loser = winner == first ? second : first;
+                if (loser != null) loser.cancel();
+
+                PdfFileWriter.commit(winner == first ? primaryPart : backupPart, target);
+                if (winner == second) log.info("BRnum={} | Backup URL won the race", brNum);
+                remember(winner, target);
+                return new DownloadResult(brNum, winner.url, true, null, null, winner.notModified,
+                        outcomes(first, second), winner.sha256);
+            }
+
+            IOException lastError = (second != null ? second : first).error();
+            return failed(brNum, fallback, lastError, outcomes(first, second));
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return failed(brNum, fallback, new IOException("Interrupted", ie), outcomes(first, second));
+        } catch (ExecutionException | IOException e) {
+            return failed(brNum, fallback, e instanceof IOException io ? io : new IOException(e.getCause()),
+                    outcomes(first, second));
+        } finally {
+            first.cancelAndWait();
+            if (second != null) second.cancelAndWait();
+            deleteQuietly(primaryPart);
+            deleteQuietly(backupPart);
+        }
+    }
+
+    /**
+     * Waits until one attempt has succeeded, or all started attempts have failed.
+     *
+     * @return the successful attempt, or null if none succeeded
+     */
+    private static Attempt awaitWinner(Attempt a, Attempt b) throws InterruptedException, ExecutionException {
+        if (b == null) {
+            a.result.get();
+            return a.succeeded() ? a : null;
+        }
+        CompletableFuture.anyOf(a.result, b.result).get();
+        Attempt done = a.result.isDone() ? a : b;
+        if (done.succeeded()) return done;
+
+        Attempt other = done == a ? b : a;
+        other.result.get();
+        return other.succeeded() ? other : null;
+    }
+
+    /**
+     * Starts one download on its own virtual thread.
+     */
+    private Attempt start(String brNum, URL url, URL primary, Path out) {
+        Attempt attempt = new Attempt();
+        attempt.url = url;
+        attempt.thread = Thread.ofVirtual().name("hedge-" + labelFor(url, primary)).start(() -> {
+            try {
+                fetch(brNum, url, primary, out, attempt);
+                attempt.result.complete(null);
             } catch (IOException e) {
-                long ms = (System.nanoTime() - start) / 1_000_000;
+                attempt.result.complete(e);
+            } catch (RuntimeException e) {
+                attempt.result.complete(new IOException(e));
+            } finally {
+                attempt.firstByte.countDown();
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * Downloads one URL into {@code out}, logging timing and failures.
+     */
+    private void fetch(String brNum, URL url, URL primary, Path out, Attempt attempt) throws IOException {
+        long start = System.nanoTime();
+        Path dir = out.toAbsolutePath().getParent();
+        PartialDownload partial = PartialDownload.claim(dir, url);
+        long offset = partial != null ? partial.resumeOffset() : 0;
+        ValidatorCache cache = url.getProtocol().toLowerCase().startsWith("http") ? ValidatorCache.forDirectory(dir) : null;
+
+        try (InputStream in = open(url, attempt, partial, offset, cache, out)) {
+
+            long ttfbMs = (System.nanoTime() - start) / 1_000_000;
+            firstByteLatency.add(ttfbMs);
+            attempt.firstByte.countDown();
+
+            if (attempt.notModified) {
+                log.info("BRnum={} | NOT MODIFIED -> {} (cached copy, took {} s)",
+                        brNum, out.getFileName(), (System.nanoTime() - start) / 1_000_000 / 1000.0);
+                return;
+            }
+
+            PdfFileWriter.Written written = partial != null && attempt.conn instanceof HttpURLConnection http
+                    ? partial.receive(in, http, attempt.rangeOffset, out)
+                    : PdfFileWriter.write(in, attempt.conn.getContentLengthLong(), out);
+            attempt.sha256 = written.sha256();
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            log.info("BRnum={} | SUCCESS -> {} ({} bytes, took {} s)", brNum, out.getFileName(), written.size(), ms / 1000.0);
+
+        } catch (SocketTimeoutException te) {
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            String type = te.getMessage() != null && te.getMessage().toLowerCase().contains("connect")
+                    ? "Connection timeout" : "Read timeout";
+            log.error("BRnum={} | {} after {} s on {} ({})",
+                    brNum, type, ms / 1000.0,
+                    labelFor(url, primary) + "=" + shortUrl(url),
+                    te.getMessage());
+            throw te;
+
+        } catch (IOException e) {
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            if (attempt.cancelled) {
+                log.debug("BRnum={} | Cancelled {}={} after {} s", brNum, labelFor(url, primary), shortUrl(url), ms / 1000.0);
+            } else {
                 log.warn("BRnum={} | FAILED on {}={} after {} s ({})",
                         brNum, labelFor(url, primary), shortUrl(url), ms / 1000.0, e.getMessage());
-                lastError = e;
             }
+            throw e;
+        } finally {
+            if (partial != null) partial.release();
         }
-
-        String reason = (fallback == null) ? "Primary URL failed, no backup" : "Both Primary and Backup failed";
-        log.error("BRnum={} | Download failed completely -> {}", brNum, reason);
-        return new DownloadResult(brNum, null, false, reason,
-                lastError != null ? lastError.getMessage() : reason);
     }
 
-    private InputStream open(URL url) throws IOException {
+    /**
+     * Opens the URL.
+     * - With a cache entry it asks whether the resource changed (If-None-Match / If-Modified-Since);
+     * on 304 the cached copy is put at {@code out}, {@code attempt.notModified} is set and an empty
+     * stream returned. If the cached copy turns out to be unusable the request is repeated plainly.
+     * - Otherwise, with a usable partial it asks for the remaining bytes only (Range/If-Range).
+     * A 416 answer means the partial no longer fits the resource, so it is dropped and the
+     * request is repeated without a range.
+     */
+    private InputStream open(URL url, Attempt attempt, PartialDownload partial, long offset,
+                             ValidatorCache cache, Path out) throws IOException {
         var conn = url.openConnection();
+        attempt.conn = conn;
+        attempt.rangeOffset = 0;
+        attempt.notModified = false;
+        attempt.sha256 = null;
 
         if (conn instanceof HttpURLConnection http) {
             http.setConnectTimeout(connectTimeout);
             http.setReadTimeout(readTimeout);
             http.setInstanceFollowRedirects(true);
 
+            ValidatorCache.Entry cached = cache != null ? cache.lookup(url) : null;
+            if (cached != null) {
+                if (cached.etag() != null) http.setRequestProperty("If-None-Match", cached.etag());
+                if (cached.lastModified() != null) http.setRequestProperty("If-Modified-Since", cached.lastModified());
+            } else if (partial != null && offset > 0) {
+                partial.applyRange(http, offset);
+                if (http.getRequestProperty("Range") != null) attempt.rangeOffset = offset;
+            }
+
             int code = http.getResponseCode();
-            if (code >= 400) throw new IOException("HTTP error " + code);
-            return http.getInputStream();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                http.disconnect();
+                if (cache.restore(cached, out)) {
+                    attempt.notModified = true;
+                    attempt.sha256 = cached.sha256();
+                    return InputStream.nullInputStream();
+                }
+                return open(url, attempt, partial, offset, null, out);
+            }
+            if (code == 416 && attempt.rangeOffset > 0) {
+                http.disconnect();
+                partial.discard();
+                return open(url, attempt, partial, 0, null, out);
+            }
+            if (code >= 400) throw new HttpStatusException(code);
+
+            attempt.etag = http.getHeaderField("ETag");
+            attempt.lastModified = http.getHeaderField("Last-Modified");
+            try {
+                PdfSniffer.checkContentType(http.getContentType());
+                InputStream body = http.getInputStream();
+                // a resumed body continues a partial that was already checked
+                return code == HttpURLConnection.HTTP_PARTIAL ? body : PdfSniffer.sniff(body);
+            } catch (PdfSniffer.NotPdfException e) {
+                // drop the connection instead of draining a large HTML body
+                http.disconnect();
+                throw e;
+            }
+        }
+        InputStream body = conn.getInputStream();
+        try {
+            return PdfSniffer.sniff(body);
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Records the validators of a finished download in the cache of the target's directory.
+     */
+    private static void remember(Attempt attempt, Path target) {
+        if (attempt.notModified || !(attempt.conn instanceof HttpURLConnection)) return;
+        ValidatorCache.forDirectory(target.toAbsolutePath().getParent())
+                .store(attempt.url, attempt.etag, attempt.lastModified, target, attempt.sha256);
+    }
+
+    private DownloadResult failed(String brNum, URL fallback, IOException lastError, List<UrlAttempt> tried) {
+        String reason = (fallback == null) ? "Primary URL failed, no backup" : "Both Primary and Backup failed";
+        log.error("BRnum={} | Download failed completely -> {}", brNum, reason);
+        return new DownloadResult(brNum, null, false, reason,
+                lastError != null ? lastError.getMessage() : reason, false, tried);
+    }
+
+    /**
+     * Outcomes of the hedged attempts that finished on their own; a cancelled loser says nothing about its host.
+     */
+    private static List<UrlAttempt> outcomes(Attempt... attempts) {
+        List<UrlAttempt> tried = new ArrayList<>(attempts.length);
+        for (Attempt a : attempts) {
+            if (a == null || a.cancelled || !a.result.isDone()) continue;
+            IOException error = a.error();
+            tried.add(new UrlAttempt(a.url, error == null ? UrlOutcome.OK : PdfDownloader.classify(error)));
         }
-        return conn.getInputStream();
+        return tried;
+    }
+
+    private long currentHedgeDelayMs() {
+        long fixed = hedgeDelay.toMillis();
+        if (hedgePercentile <= 0) return fixed;
+        long observed = firstByteLatency.percentile(hedgePercentile);
+        return observed < 0 ? fixed : Math.max(fixed, observed);
     }
 
-    private static String labelFor(URL candidate, URL primary) {
+    static String labelFor(URL candidate, URL primary) {
         if (candidate == null) return "(null)";
         return candidate.equals(primary) ? "Pdf_URL" : "Html_URL";
     }
 
-    private static String shortUrl(URL u) {
+    static String shortUrl(URL u) {
         if (u == null) return "(null)";
         String s = u.toString();
         return s.length() <= 120 ? s : s.substring(0, 117) + "...";
     }
 
-}
\ No newline at end of file
+    private static void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException ignored) {
+            // best effort cleanup of a losing part file
+        }
+    }
+
+    /**
+     * One in-flight download: completes {@code result} with null on success or the IOException on failure.
+     */
+    private static final class Attempt {
+        final CountDownLatch firstByte = new CountDownLatch(1);
+        final CompletableFuture<IOException> result = new CompletableFuture<>();
+        volatile URL url;
+        volatile URLConnection conn;
+        volatile long rangeOffset;
+        volatile boolean notModified;
+        volatile String etag;
+        volatile String lastModified;
+        volatile String sha256;
+        volatile Thread thread;
+        volatile boolean cancelled;
+
+        boolean succeeded() {
+            return result.isDone() && result.getNow(null) == null;
+        }
+
+        IOException error() {
+            return result.getNow(null);
+        }
+
+        void cancel() {
+            if (result.isDone()) return;
+            cancelled = true;
+            if (conn instanceof HttpURLConnection http) http.disconnect();
+            if (thread != null) thread.interrupt();
+        }
+
+        /**
+         * Cancels and gives the thread a moment to release its part file before cleanup.
+         */
+        void cancelAndWait() {
+            cancel();
+            try {
+                result.get(2, TimeUnit.SECONDS);
+            } catch (Exception ignored) {
+                // cleanup continues regardless
+            }
+        }
+    }
+
+    /**
+     * Ring buffer of recent time-to-first-byte samples (ms).
+     */
+    private static final class LatencyWindow {
+        private static final int MIN_SAMPLES = 20;
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void add(long ms) {
+            samples[next] = ms;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+        }
+
+        /**
+         * @return the given percentile, or -1 while there are too few samples
+         */
+        synchronized long percentile(double p) {
+            if (count < MIN_SAMPLES) return -1;
+            long[] copy = Arrays.copyOf(samples, count);
+            Arrays.sort(copy);
+            int idx = (int) Math.min(count - 1, Math.ceil(p * count) - 1);
+            return copy[Math.max(0, idx)];
+        }
+    }
+}
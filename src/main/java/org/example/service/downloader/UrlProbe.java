@@ -0,0 +1,91 @@
+package org.example.service.downloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * UrlProbe checks a URL with HttpURLConnection without downloading its body.
+ * - HEAD first; its answer is used unless HEAD is refused (405, 501) or tells no Content-Length.
+ * - Then a GET for the first byte ("Range: bytes=0-0"): a 206 gives the size in Content-Range, a 200
+ * from a server that ignores ranges gives Content-Length. The body is never read.
+ * - Non-HTTP URLs (file:, jar:) are opened and report their length directly.
+ * Redirects are followed, so the answer is the one a download would get.
+ */
+
+final class UrlProbe {
+
+    private UrlProbe() {
+    }
+
+    static PdfDownloader.Probe probe(URL url, int connectTimeout, int readTimeout) {
+        try {
+            URLConnection conn = url.openConnection();
+            if (!(conn instanceof HttpURLConnection http)) {
+                try (InputStream ignored = conn.getInputStream()) {
+                    return PdfDownloader.Probe.of(url, 200, conn.getContentLengthLong(), conn.getContentType());
+                }
+            }
+            PdfDownloader.Probe head = head(url, http, connectTimeout, readTimeout);
+            boolean refused = head.status() == 405 || head.status() == 501;
+            if (!refused && !(head.ok() && head.contentLength() < 0)) return head;
+            try {
+                return firstByte(url, connectTimeout, readTimeout);
+            } catch (IOException e) {
+                // the HEAD answer was fine, it just had no size
+                return refused ? PdfDownloader.Probe.failed(url, e) : head;
+            }
+        } catch (IOException | RuntimeException e) {
+            return PdfDownloader.Probe.failed(url, e);
+        }
+    }
+
+    private static PdfDownloader.Probe head(URL url, HttpURLConnection http, int connectTimeout, int readTimeout)
+            throws IOException {
+        http.setConnectTimeout(connectTimeout);
+        http.setReadTimeout(readTimeout);
+        http.setInstanceFollowRedirects(true);
+        http.setRequestMethod("HEAD");
+        int code = http.getResponseCode();
+        PdfDownloader.Probe p = PdfDownloader.Probe.of(url, code, http.getContentLengthLong(), http.getContentType());
+        // an empty body: closing it keeps the connection for the download
+        if (code < 400) http.getInputStream().close();
+        else http.disconnect();
+        return p;
+    }
+
+    private static PdfDownloader.Probe firstByte(URL url, int connectTimeout, int readTimeout) throws IOException {
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        try {
+            http.setConnectTimeout(connectTimeout);
+            http.setReadTimeout(readTimeout);
+            http.setInstanceFollowRedirects(true);
+            http.setRequestProperty("Range", "bytes=0-0");
+            int code = http.getResponseCode();
+            long size = code == HttpURLConnection.HTTP_PARTIAL
+                    ? totalOf(http.getHeaderField("Content-Range"))
+                    : http.getContentLengthLong();
+            return PdfDownloader.Probe.of(url, code == HttpURLConnection.HTTP_PARTIAL ? 200 : code, size,
+                    http.getContentType());
+        } finally {
+            // a server ignoring the range would send the whole body
+            http.disconnect();
+        }
+    }
+
+    /**
+     * @return the complete length of a "bytes 0-0/12345" Content-Range, or -1 if unknown
+     */
+    static long totalOf(String contentRange) {
+        if (contentRange == null) return -1;
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0) return -1;
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1; // "*"
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package org.example.service.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ValidatorCache remembers, per URL, the ETag, Last-Modified, hash and file of the last download, so a re-run
+ * can send a conditional request and reuse the file on 304.
+ * Persisted as an append-only log "&lt;downloadDir&gt;/.cache/validators.tsv"; losing it only costs full downloads.
+ */
+
+final class ValidatorCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private static final Logger log = LoggerFactory.getLogger(ValidatorCache.class);
+
+    private static final Map<Path, ValidatorCache> BY_DIR = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Path logFile;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<Path, String> urlByFile = new HashMap<>();
+    private int logLines;
+
+    private ValidatorCache(Path logFile, int maxEntries) {
+        this.logFile = logFile;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= ValidatorCache.this.maxEntries) return false;
+                urlByFile.remove(eldest.getValue().file(), eldest.getKey());
+                return true;
+            }
+        };
+        load();
+    }
+
+    /**
+     * Shared cache of a download directory, loaded on first use.
+     */
+    static ValidatorCache forDirectory(Path downloadDir) {
+        Path dir = downloadDir.toAbsolutePath().normalize();
+        ValidatorCache cache = BY_DIR.get(dir);
+        if (cache != null) return cache;
+        // loaded outside computeIfAbsent: its bin lock would pin virtual threads while the file is read
+        cache = new ValidatorCache(dir.resolve(".cache").resolve("validators.tsv"), DEFAULT_MAX_ENTRIES);
+        ValidatorCache raced = BY_DIR.putIfAbsent(dir, cache);
+        return raced != null ? raced : cache;
+    }
+
+    /**
+     * @return the entry of a URL if its file still looks like what was downloaded, else null
+     */
+    Entry lookup(URL url) {
+        lock.lock();
+        try {
+            Entry e = entries.get(url.toString());
+            if (e == null) return null;
+            try {
+                if (Files.isRegularFile(e.file()) && Files.size(e.file()) == e.size()) return e;
+            } catch (IOException ignored) {
+                // treated as missing
+            }
+            remove(url.toString());
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts the cached body of {@code e} at {@code out}: nothing to do if it already lives there,
+     * otherwise a copy whose SHA-256 must match the entry.
+     *
+     * @return false if the cached file no longer matches (entry dropped, caller must download)
+     */
+    boolean restore(Entry e, Path out) throws IOException {
+        Path dest = out.toAbsolutePath().normalize();
+        if (dest.equals(e.file())) {
+            touch(e);
+            return true;
+        }
+
+        Path tmp = PdfFileWriter.tempFor(dest);
+        try {
+            MessageDigest md = sha256();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(e.file()), md);
+                 OutputStream os = Files.newOutputStream(tmp, StandardOpenOption.TRUNCATE_EXISTING)) {
+                in.transferTo(os);
+            }
+            if (!HexFormat.of().formatHex(md.digest()).equals(e.sha256())) {
+                log.info("Cached copy of {} changed on disk, downloading again", SimplePdfDownloader.shortUrl(urlOf(e)));
+                lock.lock();
+                try {
+                    remove(e.url());
+                } finally {
+                    lock.unlock();
+                }
+                return false;
+            }
+            PdfFileWriter.commit(tmp, dest);
+            lock.lock();
+            try {
+                disown(dest, e.url());
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        touch(e);
+        return true;
+    }
+
+    /**
+     * Records a finished download. Without a validator there is nothing to revalidate later,
+     * so any old entry of the URL is dropped instead.
+     *
+     * @param url          URL the body came from
+     * @param etag         ETag response header, or null
+     * @param lastModified Last-Modified response header, or null
+     * @param file         where the body now lives
+     * @param sha256       SHA-256 of the body if computed while it streamed, or null to read the file for it
+     */
+    void store(URL url, String etag, String lastModified, Path file, String sha256) {
+        String key = url.toString();
+        Path abs = file.toAbsolutePath().normalize();
+        if ((etag == null && lastModified == null) || !storable(key, etag, lastModified)) {
+            lock.lock();
+            try {
+                if (entries.containsKey(key)) remove(key);
+                disown(abs, key);
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+
+        Entry e;
+        try {
+            e = new Entry(key, etag, lastModified, Files.size(abs), sha256 != null ? sha256 : hashOf(abs), abs);
+        } catch (IOException ex) {
+            log.debug("Not caching {} ({})", SimplePdfDownloader.shortUrl(url), ex.toString());
+            return;
+        }
+
+        lock.lock();
+        try {
+            disown(abs, key);
+            put(e);
+            appendLine(toLine(e));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Follows a downloaded file that was moved (into the {@link PdfStore}), so the entry of the URL it came
+     * from points at its new place.
+     */
+    void moved(Path from, Path to) {
+        Path src = from.toAbsolutePath().normalize();
+        Path dest = to.toAbsolutePath().normalize();
+        lock.lock();
+        try {
+            String url = urlByFile.get(src);
+            Entry e = url != null ? entries.get(url) : null;
+            if (e == null) return;
+            // no disown: store files are named by their content, so URLs sharing one share the same body
+            Entry moved = new Entry(e.url(), e.etag(), e.lastModified(), e.size(), e.sha256(), dest);
+            put(moved);
+            appendLine(toLine(moved));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    private void touch(Entry e) {
+        lock.lock();
+        try {
+            // re-appending keeps the entry young across runs as well
+            if (entries.get(e.url()) != null) appendLine(toLine(e));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the entry of whichever other URL last wrote {@code file}, since the file now holds another body.
+     */
+    private void disown(Path file, String newOwner) {
+        String owner = urlByFile.get(file);
+        if (owner != null && !owner.equals(newOwner)) remove(owner);
+    }
+
+    private void put(Entry e) {
+        Entry old = entries.put(e.url(), e);
+        if (old != null && !old.file().equals(e.file())) urlByFile.remove(old.file(), e.url());
+        urlByFile.put(e.file(), e.url());
+    }
+
+    private void remove(String url) {
+        Entry old = entries.remove(url);
+        if (old != null) urlByFile.remove(old.file(), url);
+        appendLine(url + "\t-");
+    }
+
+    private void load() {
+        if (!Files.exists(logFile)) return;
+        try (BufferedReader r = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                logLines++;
+                String[] f = line.split("\t", -1);
+                if (f.length == 2 && "-".equals(f[1])) {
+                    Entry old = entries.remove(f[0]);
+                    if (old != null) urlByFile.remove(old.file(), f[0]);
+                } else if (f.length == 6) {
+                    try {
+                        put(new Entry(f[0], emptyToNull(f[1]), emptyToNull(f[2]),
+                                Long.parseLong(f[3]), f[4], Path.of(f[5])));
+                    } catch (RuntimeException ignored) {
+                        // skip a damaged line
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read validator cache {} ({}), starting empty", logFile, e.toString());
+            entries.clear();
+            urlByFile.clear();
+            return;
+        }
+
+        if (logLines > 2 * entries.size() + 1_000) rewrite();
+        log.info("[CACHE] Loaded {} validator entries from {}", entries.size(), logFile);
+    }
+
+    /**
+     * Replaces the log with one line per live entry, oldest first so LRU order survives.
+     */
+    private void rewrite() {
+        Path tmp = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Entry e : entries.values()) {
+                w.write(toLine(e));
+                w.newLine();
+            }
+        } catch (IOException e) {
+            log.warn("Could not compact validator cache ({})", e.toString());
+            return;
+        }
+        try {
+            PdfFileWriter.commit(tmp, logFile);
+            logLines = entries.size();
+        } catch (IOException e) {
+            log.warn("Could not compact validator cache ({})", e.toString());
+        }
+    }
+
+    private void appendLine(String line) {
+        try {
+            Files.createDirectories(logFile.getParent());
+            Files.writeString(logFile, line + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            // keep the log from growing without bound during very long runs
+            if (++logLines > 4 * maxEntries) rewrite();
+        } catch (IOException e) {
+            log.debug("Could not write validator cache ({})", e.toString());
+        }
+    }
+
+    private static String toLine(Entry e) {
+        return String.join("\t", e.url(),
+                e.etag() != null ? e.etag() : "",
+                e.lastModified() != null ? e.lastModified() : "",
+                String.valueOf(e.size()), e.sha256(), e.file().toString());
+    }
+
+    private static boolean storable(String... fields) {
+        for (String f : fields) {
+            if (f != null && (f.indexOf('\t') >= 0 || f.indexOf('\n') >= 0 || f.indexOf('\r') >= 0)) return false;
+        }
+        return true;
+    }
+
+    private static String hashOf(Path file) throws IOException {
+        MessageDigest md = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), md)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static URL urlOf(Entry e) {
+        try {
+            // written from URL.toString(), which keeps any space the input had; URI does not accept one
+            return URI.create(e.url().replace(" ", "%20")).toURL();
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    /**
+     * What is known about the last download of one URL.
+     *
+     * @param url          URL as string (cache key)
+     * @param etag         ETag header, or null
+     * @param lastModified Last-Modified header, or null
+     * @param size         body size in bytes
+     * @param sha256       hex SHA-256 of the body
+     * @param file         absolute path the body was written to
+     */
+    record Entry(String url, String etag, String lastModified, long size, String sha256, Path file) {
+    }
+}
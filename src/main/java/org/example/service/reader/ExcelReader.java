@@ -4,6 +4,7 @@ package org.example.service.reader;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * ExcelReader defines the responsibility of reading input data (BRnum, URLs) from an Excel file.
@@ -20,6 +21,18 @@ public interface ExcelReader {
      */
     List<InputRow> readRows(Path excelPath);
 
+    /**
+     * Lazily streams rows from the given Excel file.
+     * The stream holds the underlying file open and must be closed (try-with-resources).
+     * Default implementation falls back to {@link #readRows(Path)}.
+     *
+     * @param excelPath to the Excel file.
+     * @return stream of InputRow objects, parsed on demand.
+     */
+    default Stream<InputRow> streamRows(Path excelPath) {
+        return readRows(excelPath).stream();
+    }
+
     /**
      * Simple DTO representing one row of input data.
      */
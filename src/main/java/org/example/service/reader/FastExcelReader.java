@@ -0,0 +1,122 @@
+package org.example.service.reader;
+
+import org.dhatim.fastexcel.reader.ReadableWorkbook;
+import org.dhatim.fastexcel.reader.Row;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * FastExcelReader is the streaming (fastexcel-reader) implementation of ExcelReader.
+ * Rows are parsed one at a time from the sheet XML, so memory stays flat regardless of input size
+ * and the caller can start working before the whole sheet has been read.
+ */
+
+public class FastExcelReader implements ExcelReader {
+
+    private static final String COL_BRNUM = "BRnum";
+    private static final String COL_PDF = "Pdf_URL";
+    private static final String COL_HTML = "Report Html Address";
+
+
+    @Override
+    public List<InputRow> readRows(Path excelPath) {
+        try (Stream<InputRow> rows = streamRows(excelPath)) {
+            return rows.toList();
+        }
+    }
+
+    @Override
+    public Stream<InputRow> streamRows(Path excelPath) {
+        ReadableWorkbook wb = null;
+        try {
+            wb = new ReadableWorkbook(excelPath.toFile());
+            Stream<Row> sheetRows = wb.getFirstSheet().openStream();
+            Iterator<Row> it = sheetRows.iterator();
+
+            // first row is the header
+            if (!it.hasNext()) {
+                closeQuietly(sheetRows, wb);
+                return Stream.empty();
+            }
+            Row headerRow = it.next();
+
+            int brCol = findColumnIndex(headerRow, COL_BRNUM);
+            int pdfCol = findColumnIndex(headerRow, COL_PDF);
+            int htmlCol = findColumnIndex(headerRow, COL_HTML);
+
+            if (pdfCol == -1) {
+                closeQuietly(sheetRows, wb);
+                return Stream.empty();
+            }
+
+            ReadableWorkbook open = wb;
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .filter(row -> !isRowBlank(row))
+                    .map(row -> toInputRow(row, brCol, pdfCol, htmlCol))
+                    .onClose(() -> closeQuietly(sheetRows, open));
+        } catch (IOException e) {
+            closeQuietly(null, wb);
+            throw new RuntimeException("Failed to read Excel file", e);
+        }
+    }
+
+    private InputRow toInputRow(Row row, int brCol, int pdfCol, int htmlCol) {
+        String br = brCol >= 0 ? text(row, brCol) : null;
+
+        String pdfStr = text(row, pdfCol);
+        String htmlStr = htmlCol >= 0 ? text(row, htmlCol) : "";
+
+        URL pdfUrl = urlSafe(pdfStr);
+        URL htmlUrl = urlSafe(htmlStr);
+
+        // fastexcel row numbers are already 1-based like the Excel UI
+        return new InputRow(row.getRowNum(), (br == null || br.isBlank()) ? null : br, pdfUrl, htmlUrl);
+    }
+
+    private int findColumnIndex(Row header, String target) {
+        for (int i = 0; i < header.getCellCount(); i++) {
+            if (target.equalsIgnoreCase(text(header, i))) return i;
+        }
+        return -1;
+    }
+
+    private boolean isRowBlank(Row row) {
+        for (int i = 0; i < row.getCellCount(); i++) {
+            if (!text(row, i).isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private String text(Row row, int col) {
+        if (!row.hasCell(col)) return "";
+        String s = row.getCell(col).getText();
+        return s == null ? "" : s.trim();
+    }
+
+    private URL urlSafe(String value) {
+        try {
+            // URI is stricter than the old URL(String): encode the spaces spreadsheet URLs often contain
+            return (value == null || value.isBlank()) ? null : URI.create(value.trim().replace(" ", "%20")).toURL();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Stream<Row> rows, ReadableWorkbook wb) {
+        if (rows != null) rows.close();
+        try {
+            if (wb != null) wb.close();
+        } catch (IOException ignored) {
+            // nothing useful to do on close
+        }
+    }
+}
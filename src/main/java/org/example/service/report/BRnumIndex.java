@@ -0,0 +1,435 @@
+package org.example.service.report;
+
+import org.example.domain.ReportEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * BRnumIndex is a persistent index of the BRnums in a report, so a run finds out which rows are done without
+ * parsing Report.xlsx: a sorted base file ("Report.xlsx.brnums.idx") plus a log of later appends. Both are
+ * stamped with the report state they describe and rebuilt from the report when it changed without them.
+ */
+
+final class BRnumIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BRnumIndex.class);
+
+    private static final int MAGIC = 0x42524958; // "BRIX"
+    private static final int VERSION = 1;
+
+    /**
+     * Delta entries beyond which a load folds the log into the base.
+     */
+    private static final int FOLD_THRESHOLD = 100_000;
+
+    /**
+     * Bytes read from the end of the log to find its last stamp.
+     */
+    private static final int TAIL_BYTES = 256;
+
+    private BRnumIndex() {
+    }
+
+    /**
+     * Report state an index describes.
+     *
+     * @param reportSize     size of Report.xlsx (-1 if missing)
+     * @param reportModified last modification of Report.xlsx in microseconds (-1 if missing)
+     * @param pendingSize    size of the sidecar of pending rows (-1 if none)
+     */
+    record Stamp(long reportSize, long reportModified, long pendingSize) {
+
+        static Stamp of(Path reportFile) throws IOException {
+            Path pending = SidecarReportRepository.pendingFile(reportFile);
+            return new Stamp(
+                    Files.exists(reportFile) ? Files.size(reportFile) : -1,
+                    Files.exists(reportFile) ? Files.getLastModifiedTime(reportFile).to(TimeUnit.MICROSECONDS) : -1,
+                    Files.exists(pending) ? Files.size(pending) : -1);
+        }
+
+        String toLine() {
+            return "#" + reportSize + " " + reportModified + " " + pendingSize;
+        }
+
+        /**
+         * @return the stamp of a "#..." line, or null if the line is not one
+         */
+        static Stamp parse(String line) {
+            if (!line.startsWith("#")) return null;
+            String[] parts = line.substring(1).trim().split(" ");
+            if (parts.length != 3) return null;
+            try {
+                return new Stamp(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    static Path indexFile(Path reportFile) {
+        return reportFile.resolveSibling(reportFile.getFileName() + ".brnums.idx");
+    }
+
+    static Path logFile(Path reportFile) {
+        return reportFile.resolveSibling(reportFile.getFileName() + ".brnums.log");
+    }
+
+    /**
+     * BRnums of the report and its pending rows, from the index if it is current, otherwise from a
+     * rebuild (which also writes a fresh index).
+     *
+     * @return read-only set
+     */
+    static Set<String> load(Path reportFile) {
+        return load(reportFile, SidecarReportRepository.rowsOf(reportFile));
+    }
+
+    /**
+     * Like {@link #load(Path)}, for a report kept in another format.
+     *
+     * @param rows the rows of the report, read only if the index has to be rebuilt
+     */
+    static Set<String> load(Path reportFile, ReportLayout.Rows rows) {
+        try {
+            Stamp now = Stamp.of(reportFile);
+            Snapshot current = open(reportFile, now);
+            return current != null ? current : rebuild(reportFile, now, rows);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load BRnums", e);
+        }
+    }
+
+    /**
+     * Records entries that were just appended to the report. Only extends an index that was current
+     * before the append; a stale one is dropped instead.
+     *
+     * @param before report state before the append ({@link Stamp#of})
+     */
+    static void appended(Path reportFile, Stamp before, List<ReportEntity> entries) {
+        if (!Files.exists(indexFile(reportFile))) return;
+        try {
+            if (!before.equals(indexedStamp(reportFile))) {
+                drop(reportFile, "report changed outside the index");
+                return;
+            }
+            // no fsync: if these lines are lost, the stamps no longer match and the index is rebuilt
+            try (BufferedWriter w = Files.newBufferedWriter(logFile(reportFile), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                for (ReportEntity e : entries) {
+                    String br = e.getBRnum();
+                    if (br == null || br.isBlank()) continue;
+                    w.write("+");
+                    w.write(br.trim());
+                    w.newLine();
+                }
+                w.write(Stamp.of(reportFile).toLine());
+                w.newLine();
+            }
+        } catch (IOException e) {
+            drop(reportFile, e.toString());
+        }
+    }
+
+    /**
+     * Folds the delta into a new base after the report was rewritten (compacted) with the same BRnums.
+     *
+     * @param before report state before the rewrite
+     */
+    static void rewritten(Path reportFile, Stamp before) {
+        if (!Files.exists(indexFile(reportFile))) return;
+        try {
+            Snapshot current = open(reportFile, before);
+            if (current == null) {
+                drop(reportFile, "stale before compaction");
+                return;
+            }
+            writeFolded(reportFile, current, Stamp.of(reportFile));
+        } catch (IOException e) {
+            drop(reportFile, e.toString());
+        }
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    /**
+     * @return the index as a set if it describes {@code now}, else null
+     */
+    private static Snapshot open(Path reportFile, Stamp now) throws IOException {
+        Base base = readBase(indexFile(reportFile));
+        if (base == null) return null;
+        Delta delta = readDelta(logFile(reportFile));
+
+        Stamp indexed = delta.stamp != null ? delta.stamp : base.stamp;
+        if (!indexed.equals(now)) {
+            log.info("[INDEX] BRnum index of {} is stale, rebuilding", reportFile.getFileName());
+            return null;
+        }
+
+        Set<String> added = new HashSet<>();
+        for (String br : delta.entries) {
+            if (!base.contains(br.getBytes(StandardCharsets.UTF_8))) added.add(br);
+        }
+        Snapshot snapshot = new Snapshot(base, added);
+        if (added.size() > FOLD_THRESHOLD) writeFolded(reportFile, snapshot, indexed);
+        return snapshot;
+    }
+
+    /**
+     * Scans the rows of the report and writes a new base.
+     */
+    private static Snapshot rebuild(Path reportFile, Stamp now, ReportLayout.Rows rows) throws IOException {
+        long startNs = System.nanoTime();
+        List<byte[]> all = new ArrayList<>();
+        Consumer<String[]> add = cells -> {
+            String br = cells[0];
+            if (br != null && !br.isBlank()) all.add(br.trim().getBytes(StandardCharsets.UTF_8));
+        };
+        rows.forEach(add);
+        all.sort(Arrays::compareUnsigned);
+
+        Base base = Base.of(now, all);
+        try {
+            writeBase(indexFile(reportFile), base);
+            Files.deleteIfExists(logFile(reportFile));
+        } catch (IOException e) {
+            log.warn("[INDEX] Could not write BRnum index for {} ({}); using it in memory only",
+                    reportFile.getFileName(), e.toString());
+        }
+        log.info("[INDEX] Rebuilt BRnum index of {}: {} BRnums in {} ms", reportFile.getFileName(), base.count(),
+                (System.nanoTime() - startNs) / 1_000_000);
+        return new Snapshot(base, Set.of());
+    }
+
+    private static void writeFolded(Path reportFile, Snapshot snapshot, Stamp stamp) throws IOException {
+        List<byte[]> all = new ArrayList<>(snapshot.size());
+        for (int i = 0; i < snapshot.base.count(); i++) all.add(snapshot.base.bytes(i));
+        for (String br : snapshot.added) all.add(br.getBytes(StandardCharsets.UTF_8));
+        all.sort(Arrays::compareUnsigned);
+        writeBase(indexFile(reportFile), Base.of(stamp, all));
+        Files.deleteIfExists(logFile(reportFile));
+    }
+
+    /**
+     * Stamp of the last batch in the log, or of the base if the log is empty or missing.
+     */
+    private static Stamp indexedStamp(Path reportFile) throws IOException {
+        Path logFile = logFile(reportFile);
+        if (Files.exists(logFile) && Files.size(logFile) > 0) {
+            try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.READ)) {
+                long start = Math.max(0, ch.size() - TAIL_BYTES);
+                ByteBuffer buf = ByteBuffer.allocate((int) (ch.size() - start));
+                while (buf.hasRemaining() && ch.read(buf, start + buf.position()) >= 0) {
+                    // until the buffer is full
+                }
+                String[] lines = new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8).split("\\R");
+                // the log ends with a newline, so the last element is the last complete line
+                return Stamp.parse(lines[lines.length - 1]);
+            }
+        }
+        Base base = readBase(indexFile(reportFile));
+        return base != null ? base.stamp : null;
+    }
+
+    private static void drop(Path reportFile, String why) {
+        log.warn("[INDEX] Dropping BRnum index of {} ({}); it is rebuilt on the next load", reportFile.getFileName(), why);
+        try {
+            Files.deleteIfExists(indexFile(reportFile));
+            Files.deleteIfExists(logFile(reportFile));
+        } catch (IOException e) {
+            log.warn("[INDEX] Could not delete BRnum index of {}: {}", reportFile.getFileName(), e.toString());
+        }
+    }
+
+    // ---------------------------------------------------------------- files
+
+    /**
+     * @return the base, or null if missing or unreadable
+     */
+    private static Base readBase(Path file) {
+        if (!Files.exists(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            Stamp stamp = new Stamp(in.readLong(), in.readLong(), in.readLong());
+            int count = in.readInt();
+            if (count < 0) return null;
+            int[] offsets = new int[count + 1];
+            for (int i = 0; i <= count; i++) offsets[i] = in.readInt();
+            if (offsets[0] != 0 || offsets[count] < 0) return null;
+            byte[] data = new byte[offsets[count]];
+            in.readFully(data);
+            if (in.read() != -1) return null;
+            return new Base(stamp, data, offsets);
+        } catch (IOException e) {
+            log.debug("Unreadable BRnum index {} ({})", file, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the base to a temp file and moves it into place, so a reader never sees half of it.
+     * The temp file is per process: the shards of a sharded run may rebuild the same index at once.
+     */
+    private static void writeBase(Path file, Base base) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(base.stamp.reportSize());
+            out.writeLong(base.stamp.reportModified());
+            out.writeLong(base.stamp.pendingSize());
+            out.writeInt(base.count());
+            for (int off : base.offsets) out.writeInt(off);
+            out.write(base.data);
+        }
+        SidecarReportRepository.moveIntoPlace(tmp, file);
+    }
+
+    /**
+     * Committed entries of the log and the stamp of its last batch; lines after the last stamp
+     * (a batch cut short) are ignored.
+     */
+    private static Delta readDelta(Path file) throws IOException {
+        Delta delta = new Delta();
+        if (!Files.exists(file)) return delta;
+        List<String> batch = new ArrayList<>();
+        // a reader that replaces bad bytes, since the last line may have been cut mid-character
+        try (InputStream is = Files.newInputStream(file);
+             BufferedReader r = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith("+")) {
+                    batch.add(line.substring(1));
+                } else {
+                    Stamp s = Stamp.parse(line);
+                    if (s == null) continue;
+                    delta.entries.addAll(batch);
+                    batch.clear();
+                    delta.stamp = s;
+                }
+            }
+        }
+        return delta;
+    }
+
+    private static final class Delta {
+        private final List<String> entries = new ArrayList<>();
+        private Stamp stamp;
+    }
+
+    /**
+     * Sorted, unique BRnums as one UTF-8 blob: entry i is {@code data[offsets[i] .. offsets[i + 1])}.
+     */
+    private record Base(Stamp stamp, byte[] data, int[] offsets) {
+
+        /**
+         * @param sorted BRnums sorted by {@link Arrays#compareUnsigned}; duplicates are dropped
+         */
+        static Base of(Stamp stamp, List<byte[]> sorted) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int[] offsets = new int[sorted.size() + 1];
+            int count = 0;
+            byte[] prev = null;
+            for (byte[] b : sorted) {
+                if (prev != null && Arrays.equals(prev, b)) continue;
+                data.writeBytes(b);
+                offsets[++count] = data.size();
+                prev = b;
+            }
+            return new Base(stamp, data.toByteArray(), Arrays.copyOf(offsets, count + 1));
+        }
+
+        int count() {
+            return offsets.length - 1;
+        }
+
+        byte[] bytes(int i) {
+            return Arrays.copyOfRange(data, offsets[i], offsets[i + 1]);
+        }
+
+        boolean contains(byte[] key) {
+            int lo = 0;
+            int hi = count() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = Arrays.compareUnsigned(data, offsets[mid], offsets[mid + 1], key, 0, key.length);
+                if (c < 0) lo = mid + 1;
+                else if (c > 0) hi = mid - 1;
+                else return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Read-only set view of an index: the base plus BRnums appended since (not already in the base).
+     */
+    private static final class Snapshot extends AbstractSet<String> {
+
+        private final Base base;
+        private final Set<String> added;
+
+        Snapshot(Base base, Set<String> added) {
+            this.base = base;
+            this.added = Collections.unmodifiableSet(added);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String s)) return false;
+            return added.contains(s) || base.contains(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int size() {
+            return base.count() + added.size();
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            Iterator<String> rest = added.iterator();
+            return new Iterator<>() {
+                private int i;
+
+                @Override
+                public boolean hasNext() {
+                    return i < base.count() || rest.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    if (i < base.count()) return new String(base.bytes(i++), StandardCharsets.UTF_8);
+                    if (rest.hasNext()) return rest.next();
+                    throw new NoSuchElementException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.service.report;
+
+import org.example.domain.ReportEntity;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CsvReportRepository keeps the report as CSV ("Report.csv", RFC 4180): a header line with the report
+ * columns, then one record per entry, each ended by CRLF.
+ * - Fields holding a comma, quote or line break are quoted (quotes doubled); such a record may span lines.
+ * Line breaks inside fields are written as a bare LF, so the last CRLF of the file always ends a whole record.
+ * - Columns are matched by the file's own header, so a file written with fewer or more columns stays readable.
+ * - Appends are fsynced and torn last records skipped ({@link LineReportRepository}); the styled workbook is
+ * produced on demand with {@link #exportXlsx}.
+ */
+
+public class CsvReportRepository extends LineReportRepository {
+
+    private static final String HEADER = line(ReportLayout.HEADERS);
+
+    // column mapping of the last header seen, as reading a report parses every record against the same one
+    private volatile Mapping mapping;
+
+    @Override
+    String header() {
+        return HEADER;
+    }
+
+    @Override
+    String terminator() {
+        return "\r\n";
+    }
+
+    @Override
+    String format(ReportEntity entry) {
+        return line(ReportLayout.toCells(entry));
+    }
+
+    /**
+     * Reads physical lines until the quotes are balanced, so a quoted line break stays in its field.
+     */
+    @Override
+    String nextRecord(BufferedReader r) throws IOException {
+        String line = r.readLine();
+        if (line == null || quotes(line) % 2 == 0) return line;
+        StringBuilder sb = new StringBuilder(line);
+        long open = quotes(line);
+        String more;
+        while (open % 2 != 0 && (more = r.readLine()) != null) {
+            sb.append('\n').append(more);
+            open += quotes(more);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    ReportEntity parse(String record, String header) {
+        Mapping m = mapping;
+        if (m == null || !m.header.equals(header)) {
+            m = new Mapping(header != null ? header : HEADER);
+            mapping = m;
+        }
+        List<String> fields = fields(record);
+        if (fields.size() != m.columns.length) {
+            throw new IllegalArgumentException(fields.size() + " fields instead of " + m.columns.length
+                    + " in \"" + (record.length() <= 80 ? record : record.substring(0, 77) + "...") + "\"");
+        }
+        String[] cells = new String[ReportLayout.HEADERS.length];
+        Arrays.fill(cells, "");
+        for (int f = 0; f < fields.size(); f++) {
+            if (m.columns[f] >= 0) cells[m.columns[f]] = fields.get(f);
+        }
+        return ReportLayout.fromCells(cells);
+    }
+
+    private static String line(String[] cells) {
+        StringBuilder sb = new StringBuilder(256);
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) sb.append(',');
+            String c = cells[i];
+            if (c.indexOf('\r') >= 0) c = c.replace("\r\n", "\n").replace('\r', '\n');
+            if (c.indexOf(',') < 0 && c.indexOf('"') < 0 && c.indexOf('\n') < 0) {
+                sb.append(c);
+            } else {
+                sb.append('"').append(c.replace("\"", "\"\"")).append('"');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Splits a record into its fields, undoing the quoting.
+     */
+    static List<String> fields(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char ch = record.charAt(i);
+            if (quoted) {
+                if (ch != '"') {
+                    sb.append(ch);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            } else if (ch != '\r') {
+                sb.append(ch);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quote");
+        fields.add(sb.toString());
+        return fields;
+    }
+
+    private static long quotes(String line) {
+        return line.chars().filter(ch -> ch == '"').count();
+    }
+
+    /**
+     * Report column of each field of a header line (-1 for unknown columns).
+     */
+    private static final class Mapping {
+        final String header;
+        final int[] columns;
+
+        Mapping(String header) {
+            this.header = header;
+            List<String> names = fields(header);
+            this.columns = new int[names.size()];
+            for (int f = 0; f < columns.length; f++) {
+                columns[f] = -1;
+                for (int c = 0; c < ReportLayout.HEADERS.length; c++) {
+                    if (ReportLayout.HEADERS[c].equals(names.get(f).strip())) columns[f] = c;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.example.service.report;
+
+import org.example.domain.ReportEntity;
+
+/**
+ * JsonLinesReportRepository keeps the report as JSON Lines ("Report.jsonl"): one JSON object per entry and line.
+ * - Keys follow the report columns ({@link #KEYS}); empty values are left out, so a typical success takes a
+ * few hundred bytes. Size and Retries are numbers, Cache is a boolean.
+ * - Keys it does not know are ignored, so files written by a later version with more columns stay readable.
+ * - Appends are fsynced and torn last lines skipped ({@link LineReportRepository}); the styled workbook is
+ * produced on demand with {@link #exportXlsx}.
+ */
+
+public class JsonLinesReportRepository extends LineReportRepository {
+
+    /**
+     * JSON key of each report column, in {@link ReportLayout#HEADERS} order.
+     */
+    static final String[] KEYS = {"BRnum", "url", "urlUsed", "status", "reason", "error", "cacheHit", "retries",
+            "breaker", "size", "sha256", "file"};
+
+    private static final int CACHE = 6;
+    private static final int RETRIES = 7;
+    private static final int SIZE = 9;
+
+    @Override
+    String header() {
+        return null;
+    }
+
+    @Override
+    String format(ReportEntity entry) {
+        String[] cells = ReportLayout.toCells(entry);
+        StringBuilder sb = new StringBuilder(256).append('{');
+        for (int i = 0; i < KEYS.length; i++) {
+            if (cells[i].isEmpty()) continue;
+            if (sb.length() > 1) sb.append(',');
+            quote(sb, KEYS[i]).append(':');
+            if (i == CACHE) sb.append("true");
+            else if (i == RETRIES || i == SIZE) sb.append(cells[i]);
+            else quote(sb, cells[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    ReportEntity parse(String record, String header) {
+        String[] cells = new String[KEYS.length];
+        new Parser(record).object(cells);
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == null) cells[i] = "";
+        }
+        if ("true".equals(cells[CACHE])) cells[CACHE] = "HIT";
+        return ReportLayout.fromCells(cells);
+    }
+
+    private static StringBuilder quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+                    else sb.append(ch);
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Reads one flat JSON object whose values are strings, numbers, booleans or null; the value of each
+     * known key goes to its column as text.
+     */
+    private static final class Parser {
+        private final String s;
+        private int i;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        void object(String[] cells) {
+            skipSpace();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                i++;
+            } else {
+                while (true) {
+                    skipSpace();
+                    String key = string();
+                    skipSpace();
+                    expect(':');
+                    skipSpace();
+                    String value = value();
+                    int col = column(key);
+                    if (col >= 0) cells[col] = value;
+                    skipSpace();
+                    char ch = next();
+                    if (ch == '}') break;
+                    if (ch != ',') throw error("',' or '}' expected");
+                }
+            }
+            skipSpace();
+            if (i < s.length()) throw error("trailing characters");
+        }
+
+        private String value() {
+            char ch = peek();
+            if (ch == '"') return string();
+            int start = i;
+            while (i < s.length() && ",} \t".indexOf(s.charAt(i)) < 0) i++;
+            String literal = s.substring(start, i);
+            if (literal.equals("null")) return null;
+            if (literal.equals("true") || literal.equals("false")) return literal;
+            if (!literal.isEmpty() && literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) return literal;
+            throw error("value expected");
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char ch = next();
+                if (ch == '"') return sb.toString();
+                if (ch != '\\') {
+                    sb.append(ch);
+                    continue;
+                }
+                char esc = next();
+                switch (esc) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (i + 4 > s.length()) throw error("bad \\u escape");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad \\u escape");
+                        }
+                        i += 4;
+                    }
+                    default -> sb.append(esc);
+                }
+            }
+        }
+
+        private static int column(String key) {
+            for (int c = 0; c < KEYS.length; c++) {
+                if (KEYS[c].equals(key)) return c;
+            }
+            return -1;
+        }
+
+        private void skipSpace() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        }
+
+        private char peek() {
+            if (i >= s.length()) throw error("unexpected end");
+            return s.charAt(i);
+        }
+
+        private char next() {
+            char ch = peek();
+            i++;
+            return ch;
+        }
+
+        private void expect(char ch) {
+            if (next() != ch) throw error("'" + ch + "' expected");
+        }
+
+        private IllegalArgumentException error(String what) {
+            return new IllegalArgumentException(what + " at " + i + " of \"" + abbreviate(s) + "\"");
+        }
+
+        private static String abbreviate(String s) {
+            return s.length() <= 80 ? s : s.substring(0, 77) + "...";
+        }
+    }
+}
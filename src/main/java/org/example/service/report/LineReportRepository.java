@@ -0,0 +1,215 @@
+package org.example.service.report;
+
+import org.example.domain.ReportEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * LineReportRepository is the base of the backends that keep the report as a text file with one record
+ * per entry, so appending never touches what is already there. A record cut short by a crash is skipped
+ * when the report is read and cut off before the next append.
+ */
+
+abstract class LineReportRepository implements ReportRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(LineReportRepository.class);
+
+    /**
+     * @return the first line of a new report, or null if the format has none
+     */
+    abstract String header();
+
+    /**
+     * @return the record of an entry, without line break
+     */
+    abstract String format(ReportEntity entry);
+
+    /**
+     * @return what ends a record: "\n", or "\r\n" for formats whose records may hold line breaks
+     */
+    String terminator() {
+        return "\n";
+    }
+
+    /**
+     * Reads one record (usually one line) from the report.
+     *
+     * @return the record, or null at end of file
+     */
+    String nextRecord(BufferedReader r) throws IOException {
+        return r.readLine();
+    }
+
+    /**
+     * Parses a record.
+     *
+     * @param header the report's first line if the format has one
+     * @throws IllegalArgumentException if the record is not readable
+     */
+    abstract ReportEntity parse(String record, String header);
+
+    @Override
+    public void ensureReport(Path reportFile) {
+        try {
+            if (reportFile.getParent() != null) Files.createDirectories(reportFile.getParent());
+            if (Files.exists(reportFile)) return;
+            String header = header();
+            Files.writeString(reportFile, header != null ? header + terminator() : "", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            // created in the meantime
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to ensure report file", e);
+        }
+    }
+
+    @Override
+    public Set<String> loadExistingBRnums(Path reportFile) {
+        return BRnumIndex.load(reportFile, action -> read(reportFile, e -> action.accept(ReportLayout.toCells(e))));
+    }
+
+    @Override
+    public void append(Path reportFile, List<ReportEntity> entries) {
+        if (entries.isEmpty()) return;
+
+        try {
+            BRnumIndex.Stamp before = BRnumIndex.Stamp.of(reportFile);
+            try (FileChannel ch = FileChannel.open(reportFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long end = completeLength(ch, terminator());
+                if (end < ch.size()) {
+                    log.warn("[REPORT] Dropping {} bytes of an entry cut short in {}", ch.size() - end,
+                            reportFile.getFileName());
+                    ch.truncate(end);
+                }
+                ch.position(end);
+                BufferedWriter w = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.UTF_8));
+                if (end == 0 && header() != null) {
+                    w.write(header());
+                    w.write(terminator());
+                }
+                for (ReportEntity entry : entries) {
+                    w.write(format(entry));
+                    w.write(terminator());
+                }
+                w.flush();
+                ch.force(false);
+            }
+            BRnumIndex.appended(reportFile, before, entries);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to report", e);
+        }
+    }
+
+    @Override
+    public void forEachEntry(Path reportFile, Consumer<ReportEntity> action) {
+        try {
+            read(reportFile, action);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read report " + reportFile, e);
+        }
+    }
+
+    // ---------------------------------------------------------------- internals
+
+    private void read(Path reportFile, Consumer<ReportEntity> action) throws IOException {
+        if (!Files.exists(reportFile)) return;
+        long complete;
+        try (FileChannel ch = FileChannel.open(reportFile, StandardOpenOption.READ)) {
+            complete = completeLength(ch, terminator());
+        }
+
+        long skipped = 0;
+        String firstUnreadable = null;
+        // only the complete part of the file: a torn last record may still parse as a shorter one
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                limited(Files.newInputStream(reportFile), complete), StandardCharsets.UTF_8))) {
+            String header = header() != null ? nextRecord(in) : null;
+            String record;
+            while ((record = nextRecord(in)) != null) {
+                if (record.isBlank()) continue;
+                ReportEntity entry;
+                try {
+                    entry = parse(record, header);
+                } catch (IllegalArgumentException e) {
+                    if (skipped++ == 0) firstUnreadable = e.getMessage();
+                    continue;
+                }
+                action.accept(entry);
+            }
+        }
+        if (skipped > 0) {
+            log.warn("[REPORT] Skipped {} unreadable entries in {} (first: {})", skipped, reportFile.getFileName(),
+                    firstUnreadable);
+        }
+    }
+
+    /**
+     * The first {@code limit} bytes of a stream.
+     */
+    static InputStream limited(InputStream in, long limit) {
+        return new FilterInputStream(in) {
+            private long left = limit;
+
+            @Override
+            public int read() throws IOException {
+                if (left <= 0) return -1;
+                int b = super.read();
+                if (b >= 0) left--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (left <= 0) return -1;
+                int n = super.read(b, off, (int) Math.min(len, left));
+                if (n > 0) left -= n;
+                return n;
+            }
+        };
+    }
+
+    /**
+     * @param terminator "\n" or "\r\n"
+     * @return length of the file up to and including its last record terminator (0 if it has none)
+     */
+    static long completeLength(FileChannel ch, String terminator) throws IOException {
+        boolean crlf = terminator.length() == 2;
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        // scanning backwards; whether the byte after the current one is '\n' (it may be in the chunk read before)
+        boolean lfAfter = false;
+        for (long end = ch.size(); end > 0; ) {
+            long start = Math.max(0, end - buf.capacity());
+            buf.clear().limit((int) (end - start));
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, start + buf.position()) < 0) break;
+            }
+            for (int i = buf.position() - 1; i >= 0; i--) {
+                byte b = buf.get(i);
+                if (!crlf && b == '\n') return start + i + 1;
+                if (crlf && b == '\r' && lfAfter) return start + i + 2;
+                lfAfter = b == '\n';
+            }
+            end = start;
+        }
+        return 0;
+    }
+}
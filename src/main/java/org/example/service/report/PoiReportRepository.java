@@ -9,13 +9,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * PoiReportRepository implements ReportRepository using Apache POI.
  * It handles creation of the report file, reading existing BRnums, and appending new report rows.
+ * Existing BRnums come from the {@link BRnumIndex} next to the report (kept current by append()),
+ * not from parsing the whole workbook.
  */
 
 public class PoiReportRepository implements ReportRepository {
@@ -27,39 +29,13 @@ public class PoiReportRepository implements ReportRepository {
             if (Files.exists(reportFile)) return;
 
             try (Workbook wb = new XSSFWorkbook()) {
-                Sheet sheet = wb.createSheet("Report");
+                Sheet sheet = wb.createSheet(ReportLayout.SHEET_NAME);
                 Row header = sheet.createRow(0);
 
-
-                // header font
-                Font headerFont = wb.createFont();
-                headerFont.setFontName("Arial");
-                headerFont.setFontHeightInPoints((short) 14);
-                headerFont.setBold(true);
-
-                // header styling
-                CellStyle headerStyle = wb.createCellStyle();
-                headerStyle.setFont(headerFont);
-
-                // header background
-                headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-                headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-                // header borders
-                headerStyle.setBorderBottom(BorderStyle.THIN);
-                headerStyle.setBorderTop(BorderStyle.THIN);
-                headerStyle.setBorderLeft(BorderStyle.THIN);
-                headerStyle.setBorderRight(BorderStyle.THIN);
-
-                String[] headers = {"BRnum", "URL", "URL Used", "Status", "Reason", "Error"};
-                for (int i = 0; i < headers.length; i++) {
-                    Cell cell = header.createCell(i);
-                    cell.setCellValue(headers[i]);
-                    cell.setCellStyle(headerStyle);
-                }
+                ReportLayout.writeHeader(header, ReportLayout.headerStyle(wb));
 
                 // auto-size kolonner
-                for (int i = 0; i < headers.length; i++) {
+                for (int i = 0; i < ReportLayout.HEADERS.length; i++) {
                     sheet.autoSizeColumn(i);
                 }
 
@@ -76,48 +52,34 @@ public class PoiReportRepository implements ReportRepository {
 
     @Override
     public Set<String> loadExistingBRnums(Path reportFile) {
-        Set<String> result = new HashSet<>();
-        if (!Files.exists(reportFile)) return result;
-
-        try (InputStream is = Files.newInputStream(reportFile);
-             Workbook wb = new XSSFWorkbook(is)) {
-            Sheet sheet = wb.getSheet("Report");
-            if (sheet == null) sheet = wb.getSheetAt(0);
-
-            for (int r = 1; r <= sheet.getLastRowNum(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
-                Cell c = row.getCell(0);
-                if (c == null) continue;
-                String br = c.getStringCellValue();
-                if (br != null && !br.isBlank()) result.add(br.trim());
-            }
-            return result;
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load BRnums", e);
-        }
+        return BRnumIndex.load(reportFile);
     }
 
     @Override
     public void append(Path reportFile, List<ReportEntity> entries) {
+        BRnumIndex.Stamp before;
+        try {
+            before = BRnumIndex.Stamp.of(reportFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to report", e);
+        }
+
         try (InputStream is = Files.newInputStream(reportFile);
              Workbook wb = new XSSFWorkbook(is)) {
 
-            Sheet sheet = wb.getSheet("Report");
+            Sheet sheet = wb.getSheet(ReportLayout.SHEET_NAME);
             if (sheet == null) sheet = wb.getSheetAt(0);
             int last = sheet.getLastRowNum();
 
             for (ReportEntity entry : entries) {
                 Row row = sheet.createRow(++last);
-                row.createCell(0).setCellValue(entry.getBRnum() != null ? entry.getBRnum() : "");
-                row.createCell(1).setCellValue(entry.getUrl() != null ? entry.getUrl().toString() : "");
-                row.createCell(2).setCellValue(entry.getUrlUsed() != null ? entry.getUrlUsed() : "");
-                row.createCell(3).setCellValue(entry.getStatus() != null ? entry.getStatus() : "");
-                row.createCell(4).setCellValue(entry.getReason() != null ? entry.getReason() : "");
-                row.createCell(5).setCellValue(entry.getErrorMessage() != null ? entry.getErrorMessage() : "");
+                String[] cells = ReportLayout.toCells(entry);
+                for (int c = 0; c < cells.length; c++) {
+                    row.createCell(c).setCellValue(cells[c]);
+                }
             }
 
-            for (int c = 0; c < 6; c++) {
+            for (int c = 0; c < ReportLayout.HEADERS.length; c++) {
                 sheet.autoSizeColumn(c);
             }
 
@@ -128,5 +90,16 @@ public class PoiReportRepository implements ReportRepository {
         } catch (IOException e) {
             throw new RuntimeException("Failed to append to report", e);
         }
+        BRnumIndex.appended(reportFile, before, entries);
+    }
+
+    @Override
+    public void forEachEntry(Path reportFile, Consumer<ReportEntity> action) {
+        if (!Files.exists(reportFile)) return;
+        try {
+            SidecarReportRepository.forEachReportRow(reportFile, cells -> action.accept(ReportLayout.fromCells(cells)));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read report " + reportFile, e);
+        }
     }
 }
@@ -0,0 +1,190 @@
+package org.example.service.report;
+
+import org.apache.poi.ss.usermodel.*;
+import org.example.domain.ReportEntity;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.function.Consumer;
+
+/**
+ * ReportLayout holds the column layout and header styling shared by the report backends,
+ * so every backend writes the same Report.xlsx shape.
+ */
+
+final class ReportLayout {
+
+    static final String SHEET_NAME = "Report";
+
+    static final String[] HEADERS = {"BRnum", "URL", "URL Used", "Status", "Reason", "Error", "Cache", "Retries", "Breaker", "Size", "SHA-256", "File"};
+
+    private ReportLayout() {
+    }
+
+    /**
+     * The rows of a report, one String[] of cells per entry, read each time they are asked for.
+     */
+    @FunctionalInterface
+    interface Rows {
+        void forEach(Consumer<String[]> action) throws IOException;
+    }
+
+    /**
+     * Builds the bold, grey, bordered header style used in the first row of the report.
+     */
+    static CellStyle headerStyle(Workbook wb) {
+        // header font
+        Font headerFont = wb.createFont();
+        headerFont.setFontName("Arial");
+        headerFont.setFontHeightInPoints((short) 14);
+        headerFont.setBold(true);
+
+        // header styling
+        CellStyle headerStyle = wb.createCellStyle();
+        headerStyle.setFont(headerFont);
+
+        // header background
+        headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+
+        // header borders
+        headerStyle.setBorderBottom(BorderStyle.THIN);
+        headerStyle.setBorderTop(BorderStyle.THIN);
+        headerStyle.setBorderLeft(BorderStyle.THIN);
+        headerStyle.setBorderRight(BorderStyle.THIN);
+        return headerStyle;
+    }
+
+    /**
+     * Writes the header cells into the given row.
+     */
+    static void writeHeader(Row header, CellStyle style) {
+        for (int i = 0; i < HEADERS.length; i++) {
+            Cell cell = header.createCell(i);
+            cell.setCellValue(HEADERS[i]);
+            cell.setCellStyle(style);
+        }
+    }
+
+    /**
+     * Flattens an entry into the report columns, with empty strings for missing values.
+     */
+    static String[] toCells(ReportEntity entry) {
+        return new String[]{
+                entry.getBRnum() != null ? entry.getBRnum() : "",
+                entry.getUrl() != null ? entry.getUrl().toString() : "",
+                entry.getUrlUsed() != null ? entry.getUrlUsed() : "",
+                entry.getStatus() != null ? entry.getStatus() : "",
+                entry.getReason() != null ? entry.getReason() : "",
+                entry.getErrorMessage() != null ? entry.getErrorMessage() : "",
+                entry.isCacheHit() ? "HIT" : "",
+                entry.getRetries() > 0 ? String.valueOf(entry.getRetries()) : "",
+                entry.getBreaker() != null ? entry.getBreaker() : "",
+                entry.getSize() != null ? String.valueOf(entry.getSize()) : "",
+                entry.getSha256() != null ? entry.getSha256() : "",
+                entry.getFile() != null ? entry.getFile() : ""
+        };
+    }
+
+    /**
+     * Joins cells with tabs, escaping backslash, tab and line breaks so one entry is one line.
+     */
+    static String toLine(String[] cells) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) sb.append('\t');
+            for (char ch : cells[i].toCharArray()) {
+                switch (ch) {
+                    case '\\' -> sb.append("\\\\");
+                    case '\t' -> sb.append("\\t");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    default -> sb.append(ch);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reverse of {@link #toLine(String[])}; missing trailing cells come back as empty strings.
+     */
+    static String[] fromLine(String line) {
+        String[] cells = new String[ReportLayout.HEADERS.length];
+        int col = 0;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '\t') {
+                if (col < cells.length) cells[col] = sb.toString();
+                col++;
+                sb.setLength(0);
+            } else if (ch == '\\' && i + 1 < line.length()) {
+                char esc = line.charAt(++i);
+                sb.append(switch (esc) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> esc;
+                });
+            } else {
+                sb.append(ch);
+            }
+        }
+        if (col < cells.length) cells[col] = sb.toString();
+        for (int c = 0; c < cells.length; c++) {
+            if (cells[c] == null) cells[c] = "";
+        }
+        return cells;
+    }
+
+    /**
+     * Rebuilds an entry from report columns (inverse of {@link #toCells(ReportEntity)}).
+     */
+    static ReportEntity fromCells(String[] cells) {
+        return ReportEntity.builder()
+                .BRnum(cells[0].isBlank() ? null : cells[0])
+                .url(urlSafe(cells[1]))
+                .urlUsed(emptyToNull(cells[2]))
+                .status(emptyToNull(cells[3]))
+                .reason(emptyToNull(cells[4]))
+                .errorMessage(emptyToNull(cells[5]))
+                .cacheHit("HIT".equals(cells[6]))
+                .retries(parseIntOrZero(cells[7]))
+                .breaker(emptyToNull(cells[8]))
+                .size(parseLongOrNull(cells[9]))
+                .sha256(emptyToNull(cells[10]))
+                .file(emptyToNull(cells[11]))
+                .build();
+    }
+
+    private static int parseIntOrZero(String s) {
+        try {
+            return s == null || s.isBlank() ? 0 : Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Long parseLongOrNull(String s) {
+        try {
+            return s == null || s.isBlank() ? null : Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    private static URL urlSafe(String value) {
+        try {
+            // URI is stricter than the old URL(String): encode the spaces input URLs often contain
+            return (value == null || value.isBlank()) ? null : URI.create(value.trim().replace(" ", "%20")).toURL();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.service.report;
+
+import org.example.domain.ReportEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ReportMerger combines the reports of the shards of a sharded run into one report, with one entry per
+ * BRnum (the first success, else the first entry). Merging again only adds what is new.
+ */
+
+public final class ReportMerger {
+
+    private static final int BATCH = 1_000;
+
+    private static final Logger log = LoggerFactory.getLogger(ReportMerger.class);
+
+    private ReportMerger() {
+    }
+
+    /**
+     * Counts of one merge.
+     *
+     * @param read       entries read from the shard reports
+     * @param appended   entries appended to the target
+     * @param duplicates entries dropped because their BRnum was merged already
+     */
+    public record Result(long read, long appended, long duplicates) {
+    }
+
+    /**
+     * @param shardReports reports to merge; missing ones are skipped
+     * @param target       report to merge into (created if missing)
+     * @param repository   backend of the target
+     */
+    public static Result merge(List<Path> shardReports, Path target, ReportRepository repository) {
+        long startNs = System.nanoTime();
+        repository.ensureReport(target);
+        Set<String> inTarget = repository.loadExistingBRnums(target);
+
+        // first pass: which BRnums succeeded somewhere, so an error entry never shadows a success
+        Set<String> succeeded = new HashSet<>();
+        for (Path report : shardReports) {
+            repository.forEachEntry(report, e -> {
+                if (e.getBRnum() != null && "success".equals(e.getStatus())) succeeded.add(e.getBRnum());
+            });
+        }
+
+        Set<String> merged = new HashSet<>();
+        List<ReportEntity> batch = new ArrayList<>(BATCH);
+        long[] counts = new long[3];
+        for (Path report : shardReports) {
+            repository.forEachEntry(report, e -> {
+                counts[0]++;
+                String br = e.getBRnum();
+                if (br != null) {
+                    boolean shadowed = succeeded.contains(br) && !"success".equals(e.getStatus());
+                    if (inTarget.contains(br) || shadowed || !merged.add(br)) {
+                        counts[2]++;
+                        return;
+                    }
+                }
+                batch.add(e);
+                if (batch.size() >= BATCH) {
+                    repository.append(target, List.copyOf(batch));
+                    counts[1] += batch.size();
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            repository.append(target, List.copyOf(batch));
+            counts[1] += batch.size();
+        }
+        repository.compactIfDue(target);
+
+        Result r = new Result(counts[0], counts[1], counts[2]);
+        log.info("[MERGE] Merged {} shard reports into {}: {} entries read, {} appended, {} duplicates dropped in {} ms",
+                shardReports.size(), target.getFileName(), r.read(), r.appended(), r.duplicates(),
+                (System.nanoTime() - startNs) / 1_000_000);
+        return r;
+    }
+}
@@ -5,10 +5,14 @@ import org.example.domain.ReportEntity;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
- * ReportRepository defines the responsiblity of managing the Excel report file.
- * It can ensure the report exists, load existing BRnums and append new entries.
+ * ReportRepository defines the responsiblity of managing the report file.
+ * It can ensure the report exists, load existing BRnums, append new entries and read them back.
+ * Backends: {@link PoiReportRepository} and {@link SidecarReportRepository} keep Report.xlsx itself;
+ * {@link JsonLinesReportRepository} and {@link CsvReportRepository} keep a plain text file and produce the
+ * workbook only on demand ({@link #exportXlsx}).
  */
 
 public interface ReportRepository {
@@ -18,4 +22,35 @@ public interface ReportRepository {
     Set<String> loadExistingBRnums(Path reportFile);
 
     void append(Path reportFile, List<ReportEntity> entries);
+
+    /**
+     * Folds any buffered/pending entries into the report file.
+     * Backends that write straight into the report have nothing to do here.
+     */
+    default void compact(Path reportFile) {
+    }
+
+    /**
+     * Folds pending entries into the report once there are enough of them for a rewrite to be worth it;
+     * used where more rows follow soon (shard reports, merges). The default compacts right away.
+     */
+    default void compactIfDue(Path reportFile) {
+        compact(reportFile);
+    }
+
+    /**
+     * Streams every entry of the report, pending ones included, in the order they were appended.
+     * A missing report has no entries.
+     */
+    void forEachEntry(Path reportFile, Consumer<ReportEntity> action);
+
+    /**
+     * Writes the report as a styled workbook in the Report.xlsx layout, however it is kept.
+     *
+     * @param xlsxFile workbook to write (replaced if it exists)
+     * @return number of entries exported
+     */
+    default long exportXlsx(Path reportFile, Path xlsxFile) {
+        return XlsxReportWriter.export(this, reportFile, xlsxFile);
+    }
 }
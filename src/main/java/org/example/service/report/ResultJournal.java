@@ -0,0 +1,156 @@
+package org.example.service.report;
+
+import org.example.domain.ReportEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ResultJournal is a durable write-ahead journal of finished report entries.
+ * - Entries are appended (one tab-separated line each) and fsynced as soon as a batch completes,
+ * so a crash loses at most the batch that was in flight. A line cut short by the crash is ignored when
+ * the journal is read and cut off before the next append.
+ * - BRnums in the journal count as "already processed" on the next run.
+ * - At the end of a run the journal is drained into the {@link ReportRepository} and deleted.
+ * The journal lives next to the report as "Report.xlsx.journal.tsv".
+ */
+
+public class ResultJournal {
+
+    /**
+     * Entries handed to {@link ReportRepository#append(Path, List)} per call while draining.
+     */
+    private static final int DRAIN_CHUNK = 50_000;
+
+    private static final Logger log = LoggerFactory.getLogger(ResultJournal.class);
+
+    private final Path journalFile;
+
+    public ResultJournal(Path reportFile) {
+        this.journalFile = reportFile.resolveSibling(reportFile.getFileName() + ".journal.tsv");
+    }
+
+    public Path path() {
+        return journalFile;
+    }
+
+    /**
+     * Appends a batch and forces it to disk before returning.
+     *
+     * @param entries finished entries
+     */
+    public synchronized void append(List<ReportEntity> entries) {
+        if (entries.isEmpty()) return;
+
+        try (FileChannel ch = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = LineReportRepository.completeLength(ch, "\n");
+            if (end < ch.size()) {
+                log.warn("Dropping {} bytes of an entry cut short in {}", ch.size() - end, journalFile.getFileName());
+                ch.truncate(end);
+            }
+            ch.position(end);
+            BufferedWriter w = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.UTF_8));
+            for (ReportEntity entry : entries) {
+                w.write(ReportLayout.toLine(ReportLayout.toCells(entry)));
+                w.newLine();
+            }
+            w.flush();
+            ch.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write result journal", e);
+        }
+    }
+
+    /**
+     * Loads the BRnums recorded in the journal (left over from an interrupted run).
+     *
+     * @return set of journaled BRnums, empty if there is no journal
+     */
+    public Set<String> loadBRnums() {
+        Set<String> result = new HashSet<>();
+        if (!Files.exists(journalFile)) return result;
+
+        try (BufferedReader r = openComplete()) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String br = ReportLayout.fromLine(line)[0];
+                if (!br.isBlank()) result.add(br.trim());
+            }
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read result journal", e);
+        }
+    }
+
+    /**
+     * Moves every journaled entry into the report and deletes the journal.
+     * Entries whose BRnum is already in the report are skipped, so re-draining after a crash
+     * between append and delete does not duplicate rows.
+     *
+     * @param repository  report backend
+     * @param reportFile  report path
+     * @param inReport    BRnums already present in the report
+     * @return number of entries appended
+     */
+    public synchronized int drainTo(ReportRepository repository, Path reportFile, Set<String> inReport) {
+        if (!Files.exists(journalFile)) return 0;
+
+        int appended = 0;
+        try (BufferedReader r = openComplete()) {
+            List<ReportEntity> chunk = new ArrayList<>();
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                ReportEntity e = ReportLayout.fromCells(ReportLayout.fromLine(line));
+                if (e.getBRnum() != null && inReport.contains(e.getBRnum())) continue;
+                chunk.add(e);
+                if (chunk.size() >= DRAIN_CHUNK) {
+                    repository.append(reportFile, chunk);
+                    appended += chunk.size();
+                    chunk = new ArrayList<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                repository.append(reportFile, chunk);
+                appended += chunk.size();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to drain result journal", e);
+        }
+
+        try {
+            Files.deleteIfExists(journalFile);
+        } catch (IOException e) {
+            log.warn("Could not delete drained journal {}: {}", journalFile, e.toString());
+        }
+        return appended;
+    }
+
+    /**
+     * Reader over the complete lines of the journal; a last line without line break was torn by a crash.
+     */
+    private BufferedReader openComplete() throws IOException {
+        long complete;
+        try (FileChannel ch = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            complete = LineReportRepository.completeLength(ch, "\n");
+        }
+        return new BufferedReader(new InputStreamReader(
+                LineReportRepository.limited(Files.newInputStream(journalFile), complete), StandardCharsets.UTF_8));
+    }
+}
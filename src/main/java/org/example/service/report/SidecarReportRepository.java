@@ -0,0 +1,238 @@
+package org.example.service.report;
+
+import org.dhatim.fastexcel.reader.ReadableWorkbook;
+import org.example.domain.ReportEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * SidecarReportRepository is an append-only ReportRepository.
+ * append() writes entries to a sidecar next to the report ("Report.xlsx.pending.tsv"); compact() folds the sidecar
+ * into Report.xlsx, and {@link #compactIfDue} does so only once the sidecar passes the threshold.
+ */
+
+public class SidecarReportRepository implements ReportRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(SidecarReportRepository.class);
+
+    /**
+     * Sidecar size from which {@link #compactIfDue} compacts the report.
+     */
+    public static final long DEFAULT_COMPACT_THRESHOLD = 16L * 1024 * 1024;
+
+    private final PoiReportRepository template = new PoiReportRepository();
+    private final long compactThreshold;
+
+    public SidecarReportRepository() {
+        this(DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * @param compactThreshold sidecar size in bytes from which {@link #compactIfDue} compacts (0 = always)
+     */
+    public SidecarReportRepository(long compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    @Override
+    public void ensureReport(Path reportFile) {
+        recover(reportFile);
+        // the empty styled report is tiny, so the DOM based backend is fine for creating it
+        template.ensureReport(reportFile);
+    }
+
+    @Override
+    public Set<String> loadExistingBRnums(Path reportFile) {
+        recover(reportFile);
+        return BRnumIndex.load(reportFile);
+    }
+
+    @Override
+    public void append(Path reportFile, List<ReportEntity> entries) {
+        if (entries.isEmpty()) return;
+
+        recover(reportFile);
+        try {
+            BRnumIndex.Stamp before = BRnumIndex.Stamp.of(reportFile);
+            try (FileChannel ch = FileChannel.open(pendingFile(reportFile),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                BufferedWriter w = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.UTF_8));
+                for (ReportEntity entry : entries) {
+                    w.write(ReportLayout.toLine(ReportLayout.toCells(entry)));
+                    w.newLine();
+                }
+                w.flush();
+                ch.force(false);
+            }
+            BRnumIndex.appended(reportFile, before, entries);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to report", e);
+        }
+    }
+
+    @Override
+    public void compactIfDue(Path reportFile) {
+        recover(reportFile);
+        Path pending = pendingFile(reportFile);
+        try {
+            if (!Files.exists(pending) || Files.size(pending) < compactThreshold) return;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + pending, e);
+        }
+        compact(reportFile);
+    }
+
+    @Override
+    public void compact(Path reportFile) {
+        recover(reportFile);
+        Path pending = pendingFile(reportFile);
+        if (!Files.exists(pending)) return;
+
+        long startNs = System.nanoTime();
+        Path tmp = tempFile(reportFile);
+        Path marker = markerFile(reportFile);
+        try {
+            BRnumIndex.Stamp before = BRnumIndex.Stamp.of(reportFile);
+            long rows = XlsxReportWriter.write(tmp, rowsOf(reportFile));
+            writeMarker(marker, tmp);
+            moveIntoPlace(tmp, reportFile);
+            Files.delete(pending);
+            Files.delete(marker);
+            BRnumIndex.rewritten(reportFile, before);
+            log.info("[REPORT] Compacted {} rows into {} in {} ms",
+                    rows, reportFile.getFileName(), (System.nanoTime() - startNs) / 1_000_000);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compact report", e);
+        }
+    }
+
+    @Override
+    public void forEachEntry(Path reportFile, Consumer<ReportEntity> action) {
+        recover(reportFile);
+        try {
+            rowsOf(reportFile).forEach(cells -> action.accept(ReportLayout.fromCells(cells)));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read report " + reportFile, e);
+        }
+    }
+
+    /**
+     * The rows of the report followed by those of its sidecar.
+     */
+    static ReportLayout.Rows rowsOf(Path reportFile) {
+        return action -> {
+            if (Files.exists(reportFile)) forEachReportRow(reportFile, action);
+            forEachPendingRow(reportFile, action);
+        };
+    }
+
+    /**
+     * Path of the append-only sidecar belonging to the given report.
+     */
+    static Path pendingFile(Path reportFile) {
+        return reportFile.resolveSibling(reportFile.getFileName() + ".pending.tsv");
+    }
+
+    /**
+     * Streams the data rows (header skipped) of the report sheet, one String[] per row.
+     */
+    static void forEachReportRow(Path reportFile, Consumer<String[]> action) throws IOException {
+        try (ReadableWorkbook wb = new ReadableWorkbook(reportFile.toFile())) {
+            var sheet = wb.findSheet(ReportLayout.SHEET_NAME).orElseGet(wb::getFirstSheet);
+            try (Stream<org.dhatim.fastexcel.reader.Row> rows = sheet.openStream()) {
+                rows.filter(r -> r.getRowNum() > 1).forEach(r -> {
+                    String[] cells = new String[ReportLayout.HEADERS.length];
+                    for (int c = 0; c < cells.length; c++) {
+                        cells[c] = r.hasCell(c) ? r.getCell(c).getText() : "";
+                        if (cells[c] == null) cells[c] = "";
+                    }
+                    action.accept(cells);
+                });
+            }
+        }
+    }
+
+    /**
+     * Streams the rows of the sidecar, if any, one String[] per line.
+     */
+    static void forEachPendingRow(Path reportFile, Consumer<String[]> action) throws IOException {
+        Path pending = pendingFile(reportFile);
+        if (!Files.exists(pending)) return;
+
+        try (BufferedReader r = Files.newBufferedReader(pending, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                action.accept(ReportLayout.fromLine(line));
+            }
+        }
+    }
+
+    /**
+     * Finishes or rolls back a compaction that was cut off: if the report is the one the marker describes,
+     * its rows include the sidecar's, so the sidecar is removed; otherwise the swap never happened and the
+     * sidecar stays. Either way the marker and the temp file go.
+     */
+    static void recover(Path reportFile) {
+        Path marker = markerFile(reportFile);
+        if (!Files.exists(marker)) return;
+        try {
+            if (Files.exists(reportFile) && stampOf(reportFile).equals(Files.readString(marker, StandardCharsets.UTF_8))) {
+                Files.deleteIfExists(pendingFile(reportFile));
+                log.info("[REPORT] Finished an interrupted compaction of {}", reportFile.getFileName());
+            }
+            Files.deleteIfExists(tempFile(reportFile));
+            Files.delete(marker);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to recover interrupted compaction of " + reportFile, e);
+        }
+    }
+
+    static Path markerFile(Path reportFile) {
+        return reportFile.resolveSibling(reportFile.getFileName() + ".compacting");
+    }
+
+    private static Path tempFile(Path reportFile) {
+        return reportFile.resolveSibling(reportFile.getFileName() + ".tmp");
+    }
+
+    /**
+     * Records size and modification time of the new report, both kept by the rename that swaps it in.
+     */
+    private static void writeMarker(Path marker, Path newReport) throws IOException {
+        try (FileChannel ch = FileChannel.open(marker,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(StandardCharsets.UTF_8.encode(stampOf(newReport)));
+            ch.force(false);
+        }
+    }
+
+    private static String stampOf(Path file) throws IOException {
+        return Files.size(file) + "\t" + Files.getLastModifiedTime(file).to(TimeUnit.MICROSECONDS);
+    }
+
+    static void moveIntoPlace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.service.report;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.example.domain.ReportEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * XlsxReportWriter writes report rows as the styled Report.xlsx layout ({@link ReportLayout}) through SXSSF,
+ * so memory stays bounded however many rows there are.
+ * - Column widths are estimated from the first {@link #WIDTH_SAMPLE_ROWS} rows instead of running
+ * autoSizeColumn over the whole sheet.
+ * - Used to compact the sidecar backend, and to export the report of any backend ({@link #export}).
+ */
+
+final class XlsxReportWriter {
+
+    /**
+     * Rows looked at when estimating column widths, and the widest column allowed (in characters).
+     */
+    private static final int WIDTH_SAMPLE_ROWS = 1_000;
+    private static final int MAX_COLUMN_CHARS = 80;
+
+    /**
+     * Rows kept in memory by SXSSF before flushing to its temp file.
+     */
+    private static final int SXSSF_WINDOW = 200;
+
+    private static final Logger log = LoggerFactory.getLogger(XlsxReportWriter.class);
+
+    private XlsxReportWriter() {
+    }
+
+    /**
+     * Writes a workbook with the header and the given rows to {@code target}, replacing it.
+     *
+     * @return number of rows written
+     */
+    static long write(Path target, ReportLayout.Rows rows) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(SXSSF_WINDOW)) {
+            Sheet sheet = wb.createSheet(ReportLayout.SHEET_NAME);
+            ReportLayout.writeHeader(sheet.createRow(0), ReportLayout.headerStyle(wb));
+
+            int[] widths = new int[ReportLayout.HEADERS.length];
+            for (int i = 0; i < widths.length; i++) widths[i] = ReportLayout.HEADERS[i].length() + 4;
+
+            int[] next = {1};
+            rows.forEach(cells -> {
+                int r = next[0]++;
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < cells.length && c < widths.length; c++) {
+                    row.createCell(c).setCellValue(cells[c]);
+                    if (r <= WIDTH_SAMPLE_ROWS) widths[c] = Math.max(widths[c], cells[c].length());
+                }
+            });
+
+            for (int c = 0; c < widths.length; c++) {
+                sheet.setColumnWidth(c, (Math.min(widths[c], MAX_COLUMN_CHARS) + 2) * 256);
+            }
+
+            try (OutputStream os = Files.newOutputStream(target)) {
+                wb.write(os);
+            }
+            return next[0] - 1;
+        }
+    }
+
+    /**
+     * Writes every entry of a report, in whatever backend it is kept, to a styled workbook. The workbook
+     * is written next to its final name and moved into place, so a reader never sees half of it.
+     *
+     * @return number of entries exported
+     */
+    static long export(ReportRepository repository, Path reportFile, Path xlsxFile) {
+        long startNs = System.nanoTime();
+        Path tmp = xlsxFile.resolveSibling(xlsxFile.getFileName() + ".tmp");
+        try {
+            if (xlsxFile.getParent() != null) Files.createDirectories(xlsxFile.getParent());
+            long n = write(tmp, action -> repository.forEachEntry(reportFile,
+                    (ReportEntity e) -> action.accept(ReportLayout.toCells(e))));
+            SidecarReportRepository.moveIntoPlace(tmp, xlsxFile);
+            log.info("[REPORT] Exported {} entries of {} to {} in {} ms", n, reportFile.getFileName(),
+                    xlsxFile.getFileName(), (System.nanoTime() - startNs) / 1_000_000);
+            return n;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export " + reportFile + " to " + xlsxFile, e);
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // best effort: a leftover .tmp is replaced by the next export
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.service.core;
+
+import org.example.domain.ReportEntity;
+import org.example.service.downloader.PdfDownloader;
+import org.example.service.reader.ExcelReader;
+import org.example.service.report.SidecarReportRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConverterServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void runLeavesItsRowsInTheReport() throws Exception {
+        Path report = dir.resolve("Report.xlsx");
+        SidecarReportRepository repo = new SidecarReportRepository();
+        List<ExcelReader.InputRow> rows = List.of(
+                new ExcelReader.InputRow(1, "B1", URI.create("http://example.invalid/1.pdf").toURL(), null),
+                new ExcelReader.InputRow(2, "B2", URI.create("http://example.invalid/2.pdf").toURL(), null));
+        PdfDownloader downloader = (brNum, primary, fallback, target) -> {
+            try {
+                Files.writeString(target, "%PDF-1.4\n" + brNum);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new PdfDownloader.DownloadResult(brNum, primary, true, null, null);
+        };
+        RunOptions options = RunOptions.builder().metricsLogInterval(Duration.ZERO).build();
+
+        new ConverterService(dir.resolve("input.xlsx"), report, dir, path -> rows, downloader, repo, options).execute();
+
+        assertFalse(Files.exists(dir.resolve("Report.xlsx.pending.tsv")));
+        List<String> done = new ArrayList<>();
+        repo.forEachEntry(report, e -> done.add(e.getBRnum() + " " + e.getStatus()));
+        assertEquals(List.of("B1 success", "B2 success"), done.stream().sorted().toList());
+    }
+
+    @Test
+    void withoutTheStoreTheReportHasTheHashButNoFile() throws Exception {
+        Path report = dir.resolve("Report.xlsx");
+        SidecarReportRepository repo = new SidecarReportRepository();
+        List<ExcelReader.InputRow> rows = List.of(
+                new ExcelReader.InputRow(1, "B1", URI.create("http://example.invalid/1.pdf").toURL(), null));
+        PdfDownloader downloader = (brNum, primary, fallback, target) ->
+                new PdfDownloader.DownloadResult(brNum, primary, true, null, null, false, List.of(), "ab12");
+        RunOptions options = RunOptions.builder().metricsLogInterval(Duration.ZERO).contentStore(false).build();
+
+        new ConverterService(dir.resolve("input.xlsx"), report, dir, path -> rows, downloader, repo, options).execute();
+
+        List<ReportEntity> entries = new ArrayList<>();
+        repo.forEachEntry(report, entries::add);
+        assertEquals(1, entries.size());
+        assertEquals("ab12", entries.get(0).getSha256());
+        assertNull(entries.get(0).getFile());
+    }
+}
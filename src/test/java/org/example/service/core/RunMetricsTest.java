@@ -0,0 +1,23 @@
+package org.example.service.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunMetricsTest {
+
+    @Test
+    void hostsPastTheCapShareOneHistogram() {
+        RunMetrics m = new RunMetrics();
+        int hosts = RunMetrics.MAX_TRACKED_HOSTS + 44;
+        for (int i = 0; i < hosts; i++) m.recordDownload("host" + i, 1_000_000, 100);
+        m.recordDownload("host0", 1_000_000, 100);
+
+        Map<String, String> latency = m.getHostLatency();
+        assertEquals(RunMetrics.MAX_TRACKED_HOSTS + 1, latency.size());
+        assertTrue(latency.get(RunMetrics.OTHER_HOSTS).startsWith("n=44 "), latency.get(RunMetrics.OTHER_HOSTS));
+        assertTrue(latency.get("host0").startsWith("n=2 "), latency.get("host0"));
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.service.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardLeasesTest {
+
+    private static final Duration LONG = Duration.ofHours(1);
+    private static final Duration SHORT = Duration.ofSeconds(1);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void liveLeaseIsNotClaimedTwice() {
+        ShardLeases a = new ShardLeases(root, 2, LONG);
+        ShardLeases b = new ShardLeases(root, 2, LONG);
+
+        try (ShardLeases.Lease first = a.claim(new Shard(0, 2))) {
+            assertNotNull(first);
+            assertNull(b.claim(new Shard(0, 2)));
+            try (ShardLeases.Lease next = b.claimNext()) {
+                assertEquals(new Shard(1, 2), next.shard());
+            }
+        }
+    }
+
+    @Test
+    void leaseWithoutHeartbeatIsTakenOver() throws IOException {
+        Path lease = root.resolve(new Shard(0, 1).name() + ".lease");
+        Files.writeString(lease, "dead-host-1-0000\n", StandardCharsets.UTF_8);
+        age(lease);
+
+        ShardLeases b = new ShardLeases(root, 1, SHORT);
+        try (ShardLeases.Lease taken = b.claim(new Shard(0, 1))) {
+            assertNotNull(taken);
+            assertEquals(b.owner(), owner(lease));
+        }
+        assertFalse(Files.exists(lease));
+        try (var left = Files.list(root)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void stalledOwnerDoesNotRemoveTheLeaseOfItsSuccessor() throws IOException {
+        ShardLeases a = new ShardLeases(root, 1, LONG);
+        ShardLeases b = new ShardLeases(root, 1, SHORT);
+        Shard shard = new Shard(0, 1);
+        Path lease = root.resolve(shard.name() + ".lease");
+
+        ShardLeases.Lease stalled = a.claim(shard);
+        age(lease);
+        try (ShardLeases.Lease taken = b.claim(shard)) {
+            assertNotNull(taken);
+            stalled.close();
+            assertEquals(b.owner(), owner(lease));
+        }
+    }
+
+    @Test
+    void doneShardIsNeverClaimedAgain() throws IOException {
+        ShardLeases a = new ShardLeases(root, 2, SHORT);
+        Shard shard = new Shard(0, 2);
+        try (ShardLeases.Lease lease = a.claim(shard)) {
+            lease.done("10 rows");
+        }
+
+        ShardLeases b = new ShardLeases(root, 2, SHORT);
+        assertTrue(b.isDone(shard));
+        assertNull(b.claim(shard));
+        assertEquals(List.of(new Shard(1, 2)), b.unfinished());
+        assertFalse(Files.exists(root.resolve(shard.name() + ".lease")));
+    }
+
+    @Test
+    void staleLeaseOfAFinishedShardIsNotClaimed() throws IOException {
+        Shard shard = new Shard(0, 1);
+        Path lease = root.resolve(shard.name() + ".lease");
+        Files.writeString(lease, "dead-host-1-0000\n", StandardCharsets.UTF_8);
+        age(lease);
+        Files.writeString(root.resolve(shard.name() + ".done"), "dead-host-1-0000\nok\n", StandardCharsets.UTF_8);
+
+        assertNull(new ShardLeases(root, 1, SHORT).claim(shard));
+    }
+
+    @Test
+    void leaseTakenOverJustAsTheShardFinishesIsRemoved() throws IOException {
+        Shard shard = new Shard(0, 1);
+        Path lease = root.resolve(shard.name() + ".lease");
+        Path done = root.resolve(shard.name() + ".done");
+        Files.writeString(lease, "dead-host-1-0000\n", StandardCharsets.UTF_8);
+        age(lease);
+        // the previous owner writes its done marker after the first check, while the lease is taken over
+        ShardLeases b = new ShardLeases(root, 1, SHORT) {
+            private int checks;
+
+            @Override
+            boolean isDone(Shard s) {
+                if (++checks == 2) {
+                    try {
+                        Files.writeString(done, "dead-host-1-0000\nok\n", StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return super.isDone(s);
+            }
+        };
+
+        assertNull(b.claim(shard));
+        assertFalse(Files.exists(lease));
+        try (var left = Files.list(root)) {
+            assertEquals(List.of(done), left.toList());
+        }
+    }
+
+    /**
+     * Backdates a lease as if its owner had stopped sending heartbeats a minute ago.
+     */
+    private static void age(Path lease) throws IOException {
+        Files.setLastModifiedTime(lease, FileTime.from(Instant.now().minusSeconds(60)));
+    }
+
+    private static String owner(Path lease) throws IOException {
+        return Files.readString(lease, StandardCharsets.UTF_8).strip();
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.service.downloader;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientPdfDownloaderTest {
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stall", ex -> {
+            ex.getResponseHeaders().add("Content-Type", "application/pdf");
+            ex.sendResponseHeaders(200, 100_000);
+            OutputStream os = ex.getResponseBody();
+            os.write("%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII));
+            os.flush();
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException ignored) {
+                // server stopped
+            }
+            ex.close();
+        });
+        server.createContext("/not-modified", ex -> {
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void stalledBodyFailsAfterIdleTimeout() {
+        HttpClientPdfDownloader downloader = new HttpClientPdfDownloader(Duration.ofSeconds(2), Duration.ofSeconds(1), 1);
+        Path target = dir.resolve("file_1.pdf");
+
+        PdfDownloader.DownloadResult res = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> downloader.download("B1", url("/stall"), null, target));
+
+        assertFalse(res.success());
+        assertTrue(res.retryable());
+        assertTrue(res.errorMessage().contains("No body data"), res.errorMessage());
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void notModifiedWithoutCachedCopyFails() {
+        HttpClientPdfDownloader downloader = new HttpClientPdfDownloader();
+        Path target = dir.resolve("file_1.pdf");
+
+        PdfDownloader.DownloadResult res = downloader.download("B1", url("/not-modified"), null, target);
+
+        assertFalse(res.success());
+        assertEquals("HTTP error 304", res.errorMessage());
+        assertFalse(Files.exists(target));
+    }
+
+    private URL url(String path) {
+        try {
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path).toURL();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
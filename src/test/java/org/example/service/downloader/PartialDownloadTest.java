@@ -0,0 +1,144 @@
+package org.example.service.downloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartialDownloadTest {
+
+    private static final int SIZE = 600 * 1024;
+    private static final int CUT = 300 * 1024;
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path dir;
+
+    private final byte[] body = pdf(SIZE);
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean cutNext = new AtomicBoolean(true);
+    private volatile String etag = ETAG;
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/doc.pdf", this::serve);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void parsesContentRange() {
+        assertArrayEquals(new long[]{100, 1000}, PartialDownload.parseContentRange("bytes 100-999/1000"));
+        assertArrayEquals(new long[]{0, -1}, PartialDownload.parseContentRange("bytes 0-99/*"));
+        assertNull(PartialDownload.parseContentRange(null));
+        assertNull(PartialDownload.parseContentRange("items 0-1/2"));
+        assertNull(PartialDownload.parseContentRange("bytes 5/10"));
+        assertNull(PartialDownload.parseContentRange("bytes a-b/c"));
+    }
+
+    @Test
+    void resumesACutOffDownloadWithARangeRequest() throws Exception {
+        Path target = dir.resolve("file_1.pdf");
+        SimplePdfDownloader downloader = new SimplePdfDownloader();
+
+        assertFalse(downloader.download("B1", url(), null, target).success());
+        assertFalse(Files.exists(target));
+
+        PdfDownloader.DownloadResult res = downloader.download("B1", url(), null, target);
+
+        assertTrue(res.success(), res.errorMessage());
+        assertEquals(List.of("", "bytes=" + CUT + "-|" + ETAG), ranges);
+        assertArrayEquals(body, Files.readAllBytes(target));
+        assertEquals(PdfFileWriter.sha256Of(target), res.sha256());
+        try (var left = Files.list(dir.resolve(".partial"))) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void changedResourceIsDownloadedAgainFromTheStart() throws Exception {
+        Path target = dir.resolve("file_1.pdf");
+        SimplePdfDownloader downloader = new SimplePdfDownloader();
+        assertFalse(downloader.download("B1", url(), null, target).success());
+
+        etag = "\"v2\"";
+        PdfDownloader.DownloadResult res = downloader.download("B1", url(), null, target);
+
+        assertTrue(res.success(), res.errorMessage());
+        assertEquals("bytes=" + CUT + "-|" + ETAG, ranges.get(1));
+        assertArrayEquals(body, Files.readAllBytes(target));
+        assertEquals(sha256(body), res.sha256());
+    }
+
+    /**
+     * Serves the body with a strong ETag and honours Range/If-Range; the first response is cut off after
+     * {@link #CUT} bytes.
+     */
+    private void serve(HttpExchange ex) throws IOException {
+        String range = ex.getRequestHeaders().getFirst("Range");
+        String ifRange = ex.getRequestHeaders().getFirst("If-Range");
+        ranges.add(range == null ? "" : range + "|" + ifRange);
+
+        ex.getResponseHeaders().add("Content-Type", "application/pdf");
+        ex.getResponseHeaders().add("ETag", etag);
+        ex.getResponseHeaders().add("Accept-Ranges", "bytes");
+        int from = 0;
+        if (range != null && etag.equals(ifRange)) {
+            from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            ex.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + (SIZE - 1) + "/" + SIZE);
+            ex.sendResponseHeaders(206, SIZE - from);
+        } else {
+            ex.sendResponseHeaders(200, SIZE);
+        }
+        OutputStream os = ex.getResponseBody();
+        if (cutNext.getAndSet(false)) {
+            os.write(body, 0, CUT);
+            os.flush();
+            // an exception escaping the handler makes the server drop the connection mid-body
+            throw new IOException("cut off");
+        }
+        os.write(body, from, SIZE - from);
+        ex.close();
+    }
+
+    private URL url() throws Exception {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/doc.pdf").toURL();
+    }
+
+    private static byte[] pdf(int size) {
+        byte[] b = new byte[size];
+        Arrays.fill(b, (byte) 'x');
+        byte[] head = "%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(head, 0, b, 0, head.length);
+        for (int i = head.length; i < size; i += 97) b[i] = (byte) ('a' + i % 26);
+        return b;
+    }
+
+    private static String sha256(byte[] b) {
+        return HexFormat.of().formatHex(PdfFileWriter.sha256().digest(b));
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.service.downloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfSnifferTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sniffReplaysTheWholeBodyOfAPdf() throws IOException {
+        byte[] body = bytes("%PDF-1.7\n1 0 obj\n<< /Type /Catalog >>\nendobj\n%%EOF\n");
+        try (InputStream in = PdfSniffer.sniff(new ByteArrayInputStream(body))) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void sniffAcceptsAHeaderAfterLeadingJunk() throws IOException {
+        byte[] body = concat(new byte[500], bytes("%PDF-1.4\n"));
+        try (InputStream in = PdfSniffer.sniff(new ByteArrayInputStream(body))) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void sniffRejectsHtml() {
+        byte[] body = bytes("\uFEFF  <!DOCTYPE html><html><body>Login required</body></html>");
+        PdfSniffer.NotPdfException e = assertThrows(PdfSniffer.NotPdfException.class,
+                () -> PdfSniffer.sniff(new ByteArrayInputStream(body)));
+        assertTrue(e.getMessage().contains("<!DOCTYPE html>"), e.getMessage());
+    }
+
+    @Test
+    void sniffRejectsAnEmptyBody() {
+        PdfSniffer.NotPdfException e = assertThrows(PdfSniffer.NotPdfException.class,
+                () -> PdfSniffer.sniff(new ByteArrayInputStream(new byte[0])));
+        assertEquals("Not a PDF (empty body)", e.getMessage());
+    }
+
+    @Test
+    void sniffRejectsABodyWithoutHeaderInTheFirstKilobyte() {
+        byte[] body = concat(new byte[PdfSniffer.SNIFF_BYTES], bytes("%PDF-1.4\n"));
+        assertThrows(PdfSniffer.NotPdfException.class, () -> PdfSniffer.sniff(new ByteArrayInputStream(body)));
+    }
+
+    @Test
+    void contentTypeCheckOnlyRejectsClearlyNonPdfTypes() throws IOException {
+        PdfSniffer.checkContentType(null);
+        PdfSniffer.checkContentType("application/pdf");
+        PdfSniffer.checkContentType("application/octet-stream");
+        assertThrows(PdfSniffer.NotPdfException.class, () -> PdfSniffer.checkContentType("text/html; charset=UTF-8"));
+        assertThrows(PdfSniffer.NotPdfException.class, () -> PdfSniffer.checkContentType("application/json"));
+    }
+
+    @Test
+    void plainPdfIsNotEncrypted() throws IOException {
+        Path file = write("plain.pdf", bytes("%PDF-1.4\n<< /Type /Catalog /EncryptMetadata false >>\n"
+                + "trailer\n<< /Root 1 0 R /Size 4 >>\n%%EOF\n"));
+        PdfSniffer.checkNotEncrypted(file);
+    }
+
+    @Test
+    void encryptEntryInASmallFileIsRejected() throws IOException {
+        Path file = write("small.pdf", bytes("%PDF-1.4\ntrailer\n<< /Root 1 0 R /Encrypt 5 0 R >>\n%%EOF\n"));
+        assertThrows(PdfSniffer.NotPdfException.class, () -> PdfSniffer.checkNotEncrypted(file));
+    }
+
+    @Test
+    void encryptEntryInTheTrailerOfALargeFileIsRejected() throws IOException {
+        byte[] filler = new byte[300 * 1024];
+        Arrays.fill(filler, (byte) 'x');
+        Path file = write("large.pdf", concat(bytes("%PDF-1.4\n"), filler,
+                bytes("trailer\n<< /Root 1 0 R /Encrypt << /Filter /Standard >> >>\n%%EOF\n")));
+        assertThrows(PdfSniffer.NotPdfException.class, () -> PdfSniffer.checkNotEncrypted(file));
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(dir.resolve(name), content);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int len = 0;
+        for (byte[] p : parts) len += p.length;
+        byte[] out = new byte[len];
+        int pos = 0;
+        for (byte[] p : parts) {
+            System.arraycopy(p, 0, out, pos, p.length);
+            pos += p.length;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.service.report;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+import static org.example.service.report.ReportFixtures.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BRnumIndexTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Times the report was scanned for a rebuild.
+     */
+    private int scans;
+
+    @Test
+    void missingIndexIsBuiltOnceAndThenUsed() throws IOException {
+        Path report = report("B2", "B1");
+
+        assertEquals(Set.of("B1", "B2"), load(report));
+        assertEquals(1, scans);
+        assertTrue(Files.exists(BRnumIndex.indexFile(report)));
+
+        assertEquals(Set.of("B1", "B2"), load(report));
+        assertEquals(1, scans);
+    }
+
+    @Test
+    void appendedEntriesExtendACurrentIndex() throws IOException {
+        Path report = report("B1");
+        load(report);
+
+        BRnumIndex.Stamp before = BRnumIndex.Stamp.of(report);
+        append(report, "B3");
+        BRnumIndex.appended(report, before, List.of(entry("B3")));
+
+        assertEquals(Set.of("B1", "B3"), load(report));
+        assertEquals(1, scans);
+    }
+
+    @Test
+    void reportChangedWithoutTheIndexIsRebuilt() throws IOException {
+        Path report = report("B1", "B2");
+        load(report);
+
+        append(report, "B9");
+
+        assertEquals(Set.of("B1", "B2", "B9"), load(report));
+        assertEquals(2, scans);
+    }
+
+    @Test
+    void appendAfterAnOutsideChangeDropsTheIndex() throws IOException {
+        Path report = report("B1");
+        load(report);
+        append(report, "B2");
+
+        BRnumIndex.Stamp stale = BRnumIndex.Stamp.of(report);
+        append(report, "B3");
+        BRnumIndex.appended(report, stale, List.of(entry("B3")));
+
+        assertFalse(Files.exists(BRnumIndex.indexFile(report)));
+        assertEquals(Set.of("B1", "B2", "B3"), load(report));
+        assertEquals(2, scans);
+    }
+
+    @Test
+    void unreadableIndexIsRebuilt() throws IOException {
+        Path report = report("B1", "B2");
+        load(report);
+
+        Files.writeString(BRnumIndex.indexFile(report), "garbage", StandardCharsets.UTF_8);
+
+        assertEquals(Set.of("B1", "B2"), load(report));
+        assertEquals(2, scans);
+        assertEquals(Set.of("B1", "B2"), load(report));
+        assertEquals(2, scans);
+    }
+
+    /**
+     * Loads the BRnums of a plain text report with one BRnum per line.
+     */
+    private Set<String> load(Path report) {
+        return BRnumIndex.load(report, action -> {
+            scans++;
+            for (String line : Files.readAllLines(report, StandardCharsets.UTF_8)) {
+                action.accept(new String[]{line});
+            }
+        });
+    }
+
+    private Path report(String... brNums) throws IOException {
+        Path report = dir.resolve("Report.txt");
+        Files.write(report, List.of(brNums), StandardCharsets.UTF_8);
+        return report;
+    }
+
+    private static void append(Path report, String brNum) throws IOException {
+        Files.writeString(report, brNum + "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.service.report;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.example.service.report.ReportFixtures.brNums;
+import static org.example.service.report.ReportFixtures.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineReportRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void completeLengthStopsAfterTheLastTerminator() throws IOException {
+        assertEquals(0, completeLength("", "\n"));
+        assertEquals(0, completeLength("{\"BRnum\":\"B1\"", "\n"));
+        assertEquals(3, completeLength("{}\n{\"BRnum\"", "\n"));
+        assertEquals(6, completeLength("{}\n{}\n", "\n"));
+    }
+
+    @Test
+    void completeLengthIgnoresLineBreaksInsideCsvRecords() throws IOException {
+        // a quoted field may hold a bare "\n"; only "\r\n" ends a record
+        assertEquals(7, completeLength("h1,h2\r\nB1,\"line\nbreak", "\r\n"));
+        assertEquals(0, completeLength("B1,\"a\nb\"", "\r\n"));
+    }
+
+    @Test
+    void completeLengthFindsACrlfSplitAcrossReadChunks() throws IOException {
+        // the scan reads 4096-byte chunks from the end: here '\r' ends one chunk and '\n' starts the next
+        assertEquals(3, completeLength("a\r\n" + "b".repeat(4095), "\r\n"));
+        assertEquals(3, completeLength("a\r\n" + "b".repeat(10_000), "\r\n"));
+    }
+
+    @Test
+    void tornJsonLineIsSkippedAndCutOffBeforeTheNextAppend() throws IOException {
+        tornRecordIsSkippedAndCutOff(new JsonLinesReportRepository(), "{\"BRnum\":\"B9\",\"status\":\"succ");
+    }
+
+    @Test
+    void tornCsvRecordIsSkippedAndCutOffBeforeTheNextAppend() throws IOException {
+        // without its "\r\n" the last record would still parse, with a shorter status
+        tornRecordIsSkippedAndCutOff(new CsvReportRepository(), "B9,,,succ");
+    }
+
+    private void tornRecordIsSkippedAndCutOff(LineReportRepository repo, String torn) throws IOException {
+        Path report = dir.resolve("Report");
+        repo.ensureReport(report);
+        repo.append(report, List.of(entry("B1"), entry("B2")));
+        long complete = Files.size(report);
+        Files.writeString(report, torn, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("B1", "B2"), brNums(repo, report));
+        assertFalse(repo.loadExistingBRnums(report).contains("B9"));
+
+        repo.append(report, List.of(entry("B3")));
+
+        assertEquals(List.of("B1", "B2", "B3"), brNums(repo, report));
+        assertFalse(Files.readString(report, StandardCharsets.UTF_8).contains("B9"));
+        assertTrue(Files.size(report) > complete);
+    }
+
+    private long completeLength(String content, String terminator) throws IOException {
+        Path file = Files.writeString(dir.resolve("report.txt"), content, StandardCharsets.UTF_8);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return LineReportRepository.completeLength(ch, terminator);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.service.report;
+
+import org.example.domain.ReportEntity;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rows and readers shared by the report tests.
+ */
+final class ReportFixtures {
+
+    private ReportFixtures() {
+    }
+
+    static ReportEntity entry(String brNum) {
+        return ReportEntity.builder().BRnum(brNum).status("success").build();
+    }
+
+    /**
+     * BR numbers of the report's rows, in the order the repository hands them out.
+     */
+    static List<String> brNums(ReportRepository repo, Path report) {
+        List<String> out = new ArrayList<>();
+        repo.forEachEntry(report, e -> out.add(e.getBRnum()));
+        return out;
+    }
+}
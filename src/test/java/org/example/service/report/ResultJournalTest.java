@@ -0,0 +1,90 @@
+package org.example.service.report;
+
+import org.example.domain.ReportEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.example.service.report.ReportFixtures.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void journaledBRnumsSurviveARestart() {
+        Path report = dir.resolve("Report.xlsx");
+        new ResultJournal(report).append(List.of(entry("B1"), entry("B2")));
+
+        assertEquals(Set.of("B1", "B2"), new ResultJournal(report).loadBRnums());
+    }
+
+    @Test
+    void tornLastLineIsIgnoredAndCutOffBeforeTheNextAppend() throws Exception {
+        Path report = dir.resolve("Report.xlsx");
+        ResultJournal journal = new ResultJournal(report);
+        journal.append(List.of(entry("B1")));
+        // a crash in the middle of writing the next batch
+        Files.writeString(journal.path(), "B2\thttp://exa", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        ResultJournal replayed = new ResultJournal(report);
+        assertEquals(Set.of("B1"), replayed.loadBRnums());
+
+        replayed.append(List.of(entry("B3")));
+        assertEquals(Set.of("B1", "B3"), replayed.loadBRnums());
+
+        Collecting repo = new Collecting();
+        assertEquals(2, replayed.drainTo(repo, report, Set.of()));
+        assertEquals(List.of("B1", "B3"), repo.brNums);
+        assertEquals("success", repo.entries.get(1).getStatus());
+    }
+
+    @Test
+    void drainSkipsBRnumsAlreadyInTheReportAndDeletesTheJournal() {
+        Path report = dir.resolve("Report.xlsx");
+        ResultJournal journal = new ResultJournal(report);
+        journal.append(List.of(entry("B1"), entry("B2")));
+
+        Collecting repo = new Collecting();
+        assertEquals(1, journal.drainTo(repo, report, Set.of("B1")));
+
+        assertEquals(List.of("B2"), repo.brNums);
+        assertFalse(Files.exists(journal.path()));
+        assertEquals(0, journal.drainTo(repo, report, Set.of()));
+    }
+
+    private static final class Collecting implements ReportRepository {
+        final List<ReportEntity> entries = new ArrayList<>();
+        final List<String> brNums = new ArrayList<>();
+
+        @Override
+        public void ensureReport(Path reportFile) {
+        }
+
+        @Override
+        public Set<String> loadExistingBRnums(Path reportFile) {
+            return Set.copyOf(brNums);
+        }
+
+        @Override
+        public void append(Path reportFile, List<ReportEntity> batch) {
+            entries.addAll(batch);
+            batch.forEach(e -> brNums.add(e.getBRnum()));
+        }
+
+        @Override
+        public void forEachEntry(Path reportFile, Consumer<ReportEntity> action) {
+            entries.forEach(action);
+        }
+    }
+}
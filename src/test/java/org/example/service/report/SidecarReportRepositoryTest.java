@@ -0,0 +1,74 @@
+package org.example.service.report;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.example.service.report.ReportFixtures.brNums;
+import static org.example.service.report.ReportFixtures.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SidecarReportRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void runCompactsOnlyPastTheThreshold() {
+        Path report = dir.resolve("Report.xlsx");
+        SidecarReportRepository repo = new SidecarReportRepository(Long.MAX_VALUE);
+        repo.ensureReport(report);
+        repo.append(report, List.of(entry("B1"), entry("B2")));
+
+        repo.compactIfDue(report);
+        assertTrue(Files.exists(SidecarReportRepository.pendingFile(report)));
+        assertEquals(List.of("B1", "B2"), brNums(repo, report));
+
+        repo.compact(report);
+        assertFalse(Files.exists(SidecarReportRepository.pendingFile(report)));
+        assertEquals(List.of("B1", "B2"), brNums(repo, report));
+    }
+
+    @Test
+    void crashAfterSwapDoesNotFoldRowsTwice() throws Exception {
+        Path report = dir.resolve("Report.xlsx");
+        SidecarReportRepository repo = new SidecarReportRepository();
+        repo.ensureReport(report);
+        repo.append(report, List.of(entry("B1"), entry("B2")));
+        Path pending = SidecarReportRepository.pendingFile(report);
+        byte[] sidecar = Files.readAllBytes(pending);
+
+        repo.compact(report);
+        // state of a crash between swapping the report in and removing the sidecar
+        Files.write(pending, sidecar);
+        Files.writeString(SidecarReportRepository.markerFile(report), stampOf(report), StandardCharsets.UTF_8);
+
+        assertEquals(List.of("B1", "B2"), brNums(repo, report));
+        assertFalse(Files.exists(pending));
+        assertFalse(Files.exists(SidecarReportRepository.markerFile(report)));
+        assertEquals(2, repo.loadExistingBRnums(report).size());
+    }
+
+    @Test
+    void crashBeforeSwapKeepsTheSidecar() throws Exception {
+        Path report = dir.resolve("Report.xlsx");
+        SidecarReportRepository repo = new SidecarReportRepository();
+        repo.ensureReport(report);
+        repo.append(report, List.of(entry("B1")));
+        Files.writeString(SidecarReportRepository.markerFile(report), "1\t2", StandardCharsets.UTF_8);
+
+        repo.append(report, List.of(entry("B2")));
+
+        assertFalse(Files.exists(SidecarReportRepository.markerFile(report)));
+        assertEquals(List.of("B1", "B2"), brNums(repo, report));
+    }
+
+    private static String stampOf(Path file) throws Exception {
+        return Files.size(file) + "\t" + Files.getLastModifiedTime(file).to(TimeUnit.MICROSECONDS);
+    }
+}